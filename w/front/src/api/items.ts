@@ -9,7 +9,9 @@ export interface Item {
 export interface PageResp<T> { records: T[]; total: number; current: number; size: number }
 
 export const getItemsPages = (payload: ItemsSelectionDTO) => post('/items/pages', payload)
+export const getItemById = (id: number) => get(`/items/${id}`)
 export const createItem = (item: Item) => post('/items', item)
 export const updateItem = (item: Item) => put('/items', item)
 export const deleteItem = (id: number) => deleteRequest(`/items/${id}`)
 export const getItemTypeCount = () => get('/items/itemTypeCount')
+export const getItemStats = (dimension: 'type'|'status'|'place' = 'type') => get(`/items/stats?dimension=${dimension}`)
@@ -3,9 +3,11 @@ package com.tests.campuslostandfoundsystem;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.tests.campuslostandfoundsystem.dao")
+@EnableScheduling
 public class CampusLostAndFoundSystemApplication {
 
     public static void main(String[] args) {
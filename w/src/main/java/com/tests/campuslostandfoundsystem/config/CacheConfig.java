@@ -0,0 +1,82 @@
+package com.tests.campuslostandfoundsystem.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.tests.campuslostandfoundsystem.utils.RedisLease;
+import com.tests.campuslostandfoundsystem.utils.cache.CacheNames;
+import com.tests.campuslostandfoundsystem.utils.cache.CurrentUserKeyGenerator;
+import com.tests.campuslostandfoundsystem.utils.cache.QueryKeyGenerator;
+import com.tests.campuslostandfoundsystem.utils.cache.TwoLevelCacheManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    @Value("${cache.default.local-max-size:1000}")
+    private int defaultLocalMaxSize;
+    @Value("${cache.default.local-ttl-seconds:30}")
+    private long defaultLocalTtlSeconds;
+    @Value("${cache.default.redis-ttl-seconds:300}")
+    private long defaultRedisTtlSeconds;
+    //  跨节点合并加载:持有租约的节点查库的时间上限,以及其他节点最多等多久
+    @Value("${cache.load-lease-millis:3000}")
+    private long loadLeaseMillis;
+    @Value("${cache.load-wait-millis:1000}")
+    private long loadWaitMillis;
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                                             RedisMessageListenerContainer listenerContainer, RedisLease redisLease) {
+//      L2的值序列化:沿用全局的时间格式等配置,再带上类型信息以还原Page、List里的元素
+        ObjectMapper cacheMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        cacheMapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.tests.campuslostandfoundsystem.")
+                        .allowIfSubType("com.baomidou.mybatisplus.")
+                        .allowIfSubType("java.util.")
+                        .allowIfSubType("java.time.")
+                        .build(),
+                ObjectMapper.DefaultTyping.NON_FINAL);
+
+//      列表页写入频繁,L1很短,主要挡住同一时刻的大量刷新;个人信息很少变,可以放久一些
+        Map<String, TwoLevelCacheManager.Spec> specs = Map.of(
+                CacheNames.ITEM_PAGES, spec(2000, 10, 60),
+                CacheNames.NOTICE_PAGES, spec(2000, 10, 60),
+                CacheNames.ITEM_TYPE_COUNT, spec(16, 30, 120),
+                CacheNames.STUDENT_INFO, spec(10000, 300, 1800),
+                CacheNames.ADMIN_INFO, spec(1000, 300, 1800),
+                CacheNames.ITEM_ADMIN_INFO, spec(1000, 300, 1800));
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(stringRedisTemplate, cacheMapper, specs,
+                spec(defaultLocalMaxSize, defaultLocalTtlSeconds, defaultRedisTtlSeconds),
+                redisLease, Duration.ofMillis(loadLeaseMillis), Duration.ofMillis(loadWaitMillis));
+        listenerContainer.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.CHANNEL));
+        return cacheManager;
+    }
+
+    @Bean
+    public QueryKeyGenerator queryKeyGenerator() {
+        return new QueryKeyGenerator();
+    }
+
+    @Bean
+    public CurrentUserKeyGenerator currentUserKeyGenerator() {
+        return new CurrentUserKeyGenerator();
+    }
+
+    private static TwoLevelCacheManager.Spec spec(int localMaxSize, long localTtlSeconds, long redisTtlSeconds) {
+        return new TwoLevelCacheManager.Spec(localMaxSize, Duration.ofSeconds(localTtlSeconds),
+                Duration.ofSeconds(redisTtlSeconds));
+    }
+}
@@ -1,14 +1,22 @@
 package com.tests.campuslostandfoundsystem.config;
 
+import com.tests.campuslostandfoundsystem.utils.BoundedPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class PasswodEncodeConfig {
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    //  BCrypt在独立的有界线程池里执行;strength调高后,旧哈希在下次登录成功时自动升级
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${auth.password.bcrypt-strength:10}") int strength,
+            @Value("${auth.password.hash-threads:0}") int threads,
+            @Value("${auth.password.hash-queue-capacity:64}") int queueCapacity,
+            @Value("${auth.password.hash-timeout-millis:3000}") long timeoutMillis) {
+//      默认线程数等于CPU核数,BCrypt是纯CPU计算,再多也不会更快
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity, timeoutMillis);
     }
 }
@@ -2,6 +2,8 @@ package com.tests.campuslostandfoundsystem.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import com.tests.campuslostandfoundsystem.utils.SessionRecordRedisSerializer;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +11,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
@@ -36,6 +39,24 @@ public class RedisConfig {
        return redisTemplate;
    }
 
+   //  会话记录专用:紧凑的字符串布局,不带json引号和类型信息
+   @Bean
+   public RedisTemplate<String, SessionRecord> sessionRedisTemplate(RedisConnectionFactory factory) {
+       RedisTemplate<String, SessionRecord> sessionRedisTemplate = new RedisTemplate<>();
+       sessionRedisTemplate.setConnectionFactory(factory);
+       sessionRedisTemplate.setKeySerializer(RedisSerializer.string());
+       sessionRedisTemplate.setValueSerializer(SessionRecordRedisSerializer.INSTANCE);
+       sessionRedisTemplate.afterPropertiesSet();
+       return sessionRedisTemplate;
+   }
+
+   @Bean
+   public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory) {
+       RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+       container.setConnectionFactory(factory);
+       return container;
+   }
+
    @Bean
    public LettuceConnectionFactory redisConnectionFactory(RedisProperties redisProperties) {
        RedisStandaloneConfiguration  config = new RedisStandaloneConfiguration();
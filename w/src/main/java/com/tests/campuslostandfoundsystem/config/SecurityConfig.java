@@ -1,9 +1,15 @@
 package com.tests.campuslostandfoundsystem.config;
 
 import com.tests.campuslostandfoundsystem.filter.JwtFilter;
+import com.tests.campuslostandfoundsystem.service.security.AuthorityResolver;
+import com.tests.campuslostandfoundsystem.service.security.BitsetMethodSecurityExpressionHandler;
+import com.tests.campuslostandfoundsystem.service.security.PermissionRegistry;
+import com.tests.campuslostandfoundsystem.utils.CaptchaUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -47,12 +53,20 @@ public class SecurityConfig {
         corsConfiguration.setAllowCredentials(true);
         corsConfiguration.addAllowedHeader("*");
         corsConfiguration.addExposedHeader("Authorization");
+        corsConfiguration.addExposedHeader(CaptchaUtils.CAPTCHA_KEY_HEADER);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", corsConfiguration);
         return source;
     }
 
+    //  @PreAuthorize的hasAuthority/hasAnyAuthority按权限位图判断;static避免提前初始化本配置类
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(ObjectProvider<AuthorityResolver> authorityResolver,
+                                                                           ObjectProvider<PermissionRegistry> permissionRegistry) {
+        return new BitsetMethodSecurityExpressionHandler(authorityResolver, permissionRegistry);
+    }
+
     @Bean
     public AuthenticationManager authentication(AuthenticationConfiguration  authenticationConfiguration) throws Exception {
         return authenticationConfiguration.getAuthenticationManager();
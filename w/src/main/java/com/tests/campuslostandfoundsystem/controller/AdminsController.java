@@ -3,8 +3,13 @@ import com.tests.campuslostandfoundsystem.entity.R;
 import com.tests.campuslostandfoundsystem.entity.admins.ItemsAdminsInfoDTO;
 import com.tests.campuslostandfoundsystem.entity.admins.ChangeAdminsDTO;
 import com.tests.campuslostandfoundsystem.entity.admins.ItemTypeCountDTO;
+import com.tests.campuslostandfoundsystem.entity.admins.UserSelectionDTO;
+import com.tests.campuslostandfoundsystem.entity.user.Users;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 import com.tests.campuslostandfoundsystem.service.admin.AdminsService;
+import com.tests.campuslostandfoundsystem.service.auth.AuthService;
 import com.tests.campuslostandfoundsystem.service.items.ItemsService;
+import com.tests.campuslostandfoundsystem.service.user.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +26,8 @@ import org.springframework.web.bind.annotation.*;
 public class AdminsController {
     private final AdminsService adminsService;
     private final ItemsService itemsService;
+    private final AuthService authService;
+    private final UserService userService;
 
     @GetMapping("/me")
     public R<ItemsAdminsInfoDTO> getAdminInfo(){
@@ -37,4 +44,23 @@ public class AdminsController {
     public R<ItemTypeCountDTO> getItemTypeCount(){
         return R.success(itemsService.getItemTypeCount());
     }
+
+    @GetMapping("/users/seek")
+    public R<CursorPage<Users>> getUsersBySeek(UserSelectionDTO dto,
+                                               @RequestParam(value = "cursor", required = false) String cursor,
+                                               @RequestParam(value = "order", required = false) String order){
+        return R.success(userService.getUsersBySeek(dto, cursor, order));
+    }
+
+    @PostMapping("/users/{userId}/revokeSessions")
+    public R<Void> revokeUserSessions(@PathVariable("userId") Long userId){
+        authService.revokeUserSessions(userId);
+        return R.success(null);
+    }
+
+    @PostMapping("/revokeAllSessions")
+    public R<Void> revokeAllSessions(){
+        authService.revokeAllSessions();
+        return R.success(null);
+    }
 }
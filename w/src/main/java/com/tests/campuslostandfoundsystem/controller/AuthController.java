@@ -6,6 +6,7 @@ import com.tests.campuslostandfoundsystem.entity.auth.*;
 import com.tests.campuslostandfoundsystem.entity.utils.GraphCaptcha;
 import com.tests.campuslostandfoundsystem.service.auth.AuthService;
 import com.tests.campuslostandfoundsystem.utils.CaptchaUtils;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
@@ -42,4 +43,10 @@ public class AuthController {
     public R<GraphCaptcha> generateGraphCaptcha(){
         return R.success(authService.generateCaptcha());
     }
+
+    //  图片字节直接写入响应,key在Captcha-Key响应头里;旧客户端继续用上面的JSON接口
+    @GetMapping("/GraphCaptcha/image")
+    public void generateGraphCaptchaImage(HttpServletResponse response){
+        authService.writeCaptchaImage(response);
+    }
 }
@@ -3,11 +3,17 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tests.campuslostandfoundsystem.entity.R;
 import com.tests.campuslostandfoundsystem.entity.admins.ItemTypeCountDTO;
 import com.tests.campuslostandfoundsystem.entity.items.Items;
+import com.tests.campuslostandfoundsystem.entity.items.ItemSummary;
 import com.tests.campuslostandfoundsystem.entity.items.ItemsSelectionDTO;
+import com.tests.campuslostandfoundsystem.entity.stats.StatCount;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 import com.tests.campuslostandfoundsystem.service.items.ItemsService;
+import com.tests.campuslostandfoundsystem.service.stats.ItemStatsService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
 * 失物信息表(items)表控制层
 *
@@ -18,10 +24,23 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/items")
 public class ItemsController {
    private final ItemsService itemsService;
+   private final ItemStatsService itemStatsService;
 
     @GetMapping("/")
-    public R<Page<Items>> getAllItemsPages(ItemsSelectionDTO dto){
-        return R.success(itemsService.getAllItemsPages(dto));
+    public R<Page<ItemSummary>> getAllItemsPages(ItemsSelectionDTO dto,
+                                                 @RequestParam(value = "fields", required = false) String fields,
+                                                 @RequestParam(value = "estimateTotal", defaultValue = "true") boolean estimateTotal){
+        return R.success(itemsService.getItemSummaries(dto, fields, estimateTotal));
+    }
+    @GetMapping("/{id}")
+    public R<Items> getItem(@PathVariable("id") Long id){
+        return R.success(itemsService.getItemDetail(id));
+    }
+    @GetMapping("/seek")
+    public R<CursorPage<Items>> getItemsBySeek(ItemsSelectionDTO dto,
+                                               @RequestParam(value = "cursor", required = false) String cursor,
+                                               @RequestParam(value = "order", required = false) String order){
+        return R.success(itemsService.getItemsBySeek(dto, cursor, order));
     }
     @PostMapping("/")
     public R<Void> insertItem(Items items){
@@ -42,5 +61,9 @@ public class ItemsController {
     public  R<ItemTypeCountDTO> getItemTypeCount(){
         return R.success(itemsService.getItemTypeCount());
     }
+    @GetMapping("/stats")
+    public R<List<StatCount>> getItemStats(@RequestParam(value = "dimension", defaultValue = "type") String dimension){
+        return R.success(itemStatsService.getCounts(dimension));
+    }
 
 }
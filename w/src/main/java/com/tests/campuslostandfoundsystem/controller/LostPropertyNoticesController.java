@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tests.campuslostandfoundsystem.entity.R;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNotices;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNoticesSelectionDTO;
+import com.tests.campuslostandfoundsystem.entity.notice.NoticeSummary;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 import com.tests.campuslostandfoundsystem.service.lostPropertyNotices.LostPropertyNoticesService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -14,8 +16,19 @@ import org.springframework.web.bind.annotation.*;
 public class LostPropertyNoticesController {
     private final LostPropertyNoticesService lostPropertyNoticesService;
     @GetMapping("/")
-    public R<Page<LostPropertyNotices>> getAllLostPropertyNoticesPages(LostPropertyNoticesSelectionDTO dto){
-        return R.success(lostPropertyNoticesService.getAllLostPropertyNoticesPages(dto));
+    public R<Page<NoticeSummary>> getAllLostPropertyNoticesPages(LostPropertyNoticesSelectionDTO dto,
+                                                                 @RequestParam(value = "fields", required = false) String fields){
+        return R.success(lostPropertyNoticesService.getNoticeSummaries(dto, fields));
+    }
+    @GetMapping("/{id}")
+    public R<LostPropertyNotices> getLostPropertyNotice(@PathVariable("id") Long id){
+        return R.success(lostPropertyNoticesService.getNoticeDetail(id));
+    }
+    @GetMapping("/seek")
+    public R<CursorPage<LostPropertyNotices>> getLostPropertyNoticesBySeek(LostPropertyNoticesSelectionDTO dto,
+                                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                                          @RequestParam(value = "order", required = false) String order){
+        return R.success(lostPropertyNoticesService.getLostPropertyNoticesBySeek(dto, cursor, order));
     }
     @PostMapping("/")
     public R<Void> insertLostPropertyNotices(LostPropertyNotices lostPropertyNotices){
@@ -0,0 +1,30 @@
+package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.entity.match.MatchCandidates;
+import com.tests.campuslostandfoundsystem.service.match.MatchingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+* 失物与寻物启事的候选匹配(match_candidates)控制层
+*
+* @author xxxxx
+*/
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/matches")
+public class MatchController {
+    private final MatchingService matchingService;
+
+    @GetMapping("/items/{itemId}")
+    public R<List<MatchCandidates>> getItemMatches(@PathVariable("itemId") Long itemId){
+        return R.success(matchingService.getItemMatches(itemId));
+    }
+
+    @GetMapping("/lost/{noticeId}")
+    public R<List<MatchCandidates>> getNoticeMatches(@PathVariable("noticeId") Long noticeId){
+        return R.success(matchingService.getNoticeMatches(noticeId));
+    }
+}
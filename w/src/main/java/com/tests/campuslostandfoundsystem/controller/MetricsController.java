@@ -0,0 +1,118 @@
+package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.service.match.MatchingService;
+import com.tests.campuslostandfoundsystem.service.search.SearchService;
+import com.tests.campuslostandfoundsystem.service.security.AuthorityResolver;
+import com.tests.campuslostandfoundsystem.service.security.UsernameExistenceFilter;
+import com.tests.campuslostandfoundsystem.service.stats.ItemStatsService;
+import com.tests.campuslostandfoundsystem.service.stats.RollupService;
+import com.tests.campuslostandfoundsystem.utils.BoundedPasswordEncoder;
+import com.tests.campuslostandfoundsystem.utils.CaptchaPool;
+import com.tests.campuslostandfoundsystem.utils.LoginThrottle;
+import com.tests.campuslostandfoundsystem.utils.RedisStoreTokenUtils;
+import com.tests.campuslostandfoundsystem.utils.RevocationNearCache;
+import com.tests.campuslostandfoundsystem.utils.cache.PageCountCache;
+import com.tests.campuslostandfoundsystem.utils.cache.TwoLevelCacheManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+* 运行指标控制层
+*
+* @author xxxxx
+*/
+@RestController
+@RequiredArgsConstructor
+@PreAuthorize("hasAuthority('ADMIN')")
+@RequestMapping("/metrics")
+public class MetricsController {
+    private final RedisStoreTokenUtils redisStoreTokenUtils;
+    //  local存储下没有吊销视图
+    private final ObjectProvider<RevocationNearCache> revocationNearCache;
+    private final AuthorityResolver authorityResolver;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final CaptchaPool captchaPool;
+    private final LoginThrottle loginThrottle;
+    private final UsernameExistenceFilter usernameExistenceFilter;
+    private final PageCountCache pageCountCache;
+    private final SearchService searchService;
+    private final MatchingService matchingService;
+    private final ItemStatsService itemStatsService;
+    private final RollupService rollupService;
+    private final TwoLevelCacheManager cacheManager;
+
+    @GetMapping("/tokenVerdicts")
+    public R<Map<String, Long>> getTokenVerdicts(){
+        return R.success(redisStoreTokenUtils.getVerdictStats());
+    }
+
+    @GetMapping("/revocationNearCache")
+    public R<Map<String, Long>> getRevocationNearCacheStats(){
+        RevocationNearCache nearCache = revocationNearCache.getIfAvailable();
+        return R.success(nearCache == null ? Map.of() : nearCache.getStats());
+    }
+
+    @GetMapping("/sessionMemory")
+    public R<Map<String, Long>> getSessionMemoryReport(@RequestParam(value = "sampleSize", defaultValue = "100") Integer sampleSize){
+        return R.success(redisStoreTokenUtils.getSessionMemoryReport(sampleSize));
+    }
+
+    @GetMapping("/authorityCache")
+    public R<Map<String, Long>> getAuthorityCacheStats(){
+        return R.success(authorityResolver.getStats());
+    }
+
+    @GetMapping("/passwordHashing")
+    public R<Map<String, Long>> getPasswordHashingStats(){
+        return R.success(passwordEncoder.getStats());
+    }
+
+    @GetMapping("/captchaPool")
+    public R<Map<String, Long>> getCaptchaPoolStats(){
+        return R.success(captchaPool.getStats());
+    }
+
+    @GetMapping("/loginThrottle")
+    public R<Map<String, Long>> getLoginThrottleStats(){
+        return R.success(loginThrottle.getStats());
+    }
+
+    @GetMapping("/usernameFilter")
+    public R<Map<String, Long>> getUsernameFilterStats(){
+        return R.success(usernameExistenceFilter.getStats());
+    }
+
+    @GetMapping("/pageCounts")
+    public R<Map<String, Long>> getPageCountStats(){
+        return R.success(pageCountCache.getStats());
+    }
+
+    @GetMapping("/search")
+    public R<Map<String, Long>> getSearchStats(){
+        return R.success(searchService.getStats());
+    }
+
+    @GetMapping("/matching")
+    public R<Map<String, Long>> getMatchingStats(){
+        return R.success(matchingService.getStats());
+    }
+
+    @GetMapping("/itemStats")
+    public R<Map<String, Long>> getItemStatsStats(){
+        return R.success(itemStatsService.getStats());
+    }
+
+    @GetMapping("/rollup")
+    public R<Map<String, Long>> getRollupStats(){
+        return R.success(rollupService.getStats());
+    }
+
+    @GetMapping("/caches")
+    public R<Map<String, Map<String, Long>>> getCacheStats(){
+        return R.success(cacheManager.getStats());
+    }
+}
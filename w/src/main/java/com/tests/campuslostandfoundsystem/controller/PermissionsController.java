@@ -1,14 +1,44 @@
 package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.entity.permission.Permissions;
+import com.tests.campuslostandfoundsystem.service.permissions.PermissionsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
 * 权限信息表(permissions)表控制层
 *
 * @author xxxxx
 */
 @RestController
+@RequiredArgsConstructor
+@PreAuthorize("hasAuthority('ADMIN')")
 @RequestMapping("/permissions")
 public class PermissionsController {
+    private final PermissionsService permissionsService;
+
+    @GetMapping("/")
+    public R<List<Permissions>> getAllPermissions(){
+        return R.success(permissionsService.list());
+    }
+
+    @GetMapping("/roles/{roleId}")
+    public R<List<Permissions>> getRolePermissions(@PathVariable("roleId") Long roleId){
+        return R.success(permissionsService.getDirectPermissions(roleId));
+    }
 
+    @PostMapping("/{id}/roles/{roleId}")
+    public R<Void> grantToRole(@PathVariable("id") Long id, @PathVariable("roleId") Long roleId){
+        permissionsService.grantToRole(roleId, id);
+        return R.success(null);
+    }
 
+    @DeleteMapping("/{id}/roles/{roleId}")
+    public R<Void> revokeFromRole(@PathVariable("id") Long id, @PathVariable("roleId") Long roleId){
+        permissionsService.revokeFromRole(roleId, id);
+        return R.success(null);
+    }
 }
@@ -1,14 +1,50 @@
 package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.entity.roles.Roles;
+import com.tests.campuslostandfoundsystem.service.roles.RolesService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Set;
+
 /**
 * 角色信息表(roles)表控制层
 *
 * @author xxxxx
 */
 @RestController
+@RequiredArgsConstructor
+@PreAuthorize("hasAuthority('ADMIN')")
 @RequestMapping("/roles")
 public class RolesController {
+    private final RolesService rolesService;
+
+    @GetMapping("/")
+    public R<List<Roles>> getAllRoles(){
+        return R.success(rolesService.list());
+    }
+
+    @PostMapping("/{parentId}/children/{childId}")
+    public R<Void> addInheritance(@PathVariable("parentId") Long parentId, @PathVariable("childId") Long childId){
+        rolesService.addInheritance(parentId, childId);
+        return R.success(null);
+    }
+
+    @DeleteMapping("/{parentId}/children/{childId}")
+    public R<Void> removeInheritance(@PathVariable("parentId") Long parentId, @PathVariable("childId") Long childId){
+        rolesService.removeInheritance(parentId, childId);
+        return R.success(null);
+    }
 
+    @GetMapping("/{id}/effectiveRoles")
+    public R<Set<String>> getEffectiveRoles(@PathVariable("id") Long id){
+        return R.success(rolesService.getEffectiveRoles(id));
+    }
 
+    @GetMapping("/{id}/effectivePermissions")
+    public R<Set<String>> getEffectivePermissions(@PathVariable("id") Long id){
+        return R.success(rolesService.getEffectivePermissions(id));
+    }
 }
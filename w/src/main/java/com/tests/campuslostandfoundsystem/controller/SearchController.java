@@ -0,0 +1,35 @@
+package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.entity.search.SearchHit;
+import com.tests.campuslostandfoundsystem.service.search.SearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+* 失物、寻物启事全文检索
+*
+* @author xxxxx
+*/
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/search")
+public class SearchController {
+    private final SearchService searchService;
+
+    @GetMapping("/")
+    public R<List<SearchHit>> search(@RequestParam("q") String q,
+                                     @RequestParam(value = "type", required = false) String type,
+                                     @RequestParam(value = "limit", required = false) Integer limit){
+        return R.success(searchService.search(q, type, limit));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/rebuild")
+    public R<Void> rebuild(){
+        searchService.rebuild();
+        return R.success(null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.entity.stats.RollupPoint;
+import com.tests.campuslostandfoundsystem.service.stats.RollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+* 趋势统计(stats_rollup)控制层
+*
+* @author xxxxx
+*/
+@RestController
+@RequiredArgsConstructor
+@PreAuthorize("hasAuthority('ADMIN')")
+@RequestMapping("/stats")
+public class StatsController {
+    private final RollupService rollupService;
+
+    @GetMapping("/trend")
+    public R<List<RollupPoint>> getTrend(@RequestParam(value = "source", defaultValue = "item") String source,
+                                         @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+                                         @RequestParam(value = "dimension", defaultValue = "all") String dimension,
+                                         @RequestParam(value = "from", required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                         @RequestParam(value = "to", required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to){
+        return R.success(rollupService.getTrend(source, granularity, dimension, from, to));
+    }
+
+    @PostMapping("/rollup/refresh")
+    public R<Void> refreshRollup(){
+        rollupService.refresh();
+        return R.success(null);
+    }
+}
@@ -1,5 +1,11 @@
 package com.tests.campuslostandfoundsystem.controller;
+import com.tests.campuslostandfoundsystem.entity.R;
+import com.tests.campuslostandfoundsystem.entity.student.StudentImportJob;
+import com.tests.campuslostandfoundsystem.service.students.StudentImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
 * 学生信息表(students)表控制层
@@ -7,8 +13,26 @@ import org.springframework.web.bind.annotation.*;
 * @author xxxxx
 */
 @RestController
+@RequiredArgsConstructor
 @RequestMapping("/students")
 public class StudentsController {
+    private final StudentImportService studentImportService;
 
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/import")
+    public R<StudentImportJob> startImport(@RequestParam("file") MultipartFile file){
+        return R.success(studentImportService.startImport(file));
+    }
 
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("/import/{jobId}")
+    public R<StudentImportJob> getImportJob(@PathVariable("jobId") String jobId){
+        return R.success(studentImportService.getJob(jobId));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/import/{jobId}/resume")
+    public R<StudentImportJob> resumeImport(@PathVariable("jobId") String jobId){
+        return R.success(studentImportService.resumeImport(jobId));
+    }
 }
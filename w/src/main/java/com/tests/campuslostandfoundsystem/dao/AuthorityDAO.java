@@ -0,0 +1,31 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.tests.campuslostandfoundsystem.entity.user.UserAuthorityRow;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 用户权限的联表查询
+ * 用户的身份类型(user_profiles.profile_type)即直接角色;继承的角色和权限由 RoleClosure 展开
+ */
+public interface AuthorityDAO {
+
+    @Select("SELECT u.id AS user_id, u.username, u.password, " +
+            "       up.profile_id, up.profile_type, r.role_name " +
+            "FROM users u " +
+            "LEFT JOIN user_profiles up ON up.user_id = u.id " +
+            "LEFT JOIN roles r ON r.role_name = up.profile_type AND r.is_deleted = 0 " +
+            "WHERE u.id = #{userId} AND u.is_deleted = 0")
+    List<UserAuthorityRow> selectUserAuthorities(@Param("userId") String userId);
+
+    //  登录时按用户名查,查到的结果同样按userId缓存,认证时不再查库
+    @Select("SELECT u.id AS user_id, u.username, u.password, " +
+            "       up.profile_id, up.profile_type, r.role_name " +
+            "FROM users u " +
+            "LEFT JOIN user_profiles up ON up.user_id = u.id " +
+            "LEFT JOIN roles r ON r.role_name = up.profile_type AND r.is_deleted = 0 " +
+            "WHERE u.username = #{username} AND u.is_deleted = 0")
+    List<UserAuthorityRow> selectUserAuthoritiesByUsername(@Param("username") String username);
+}
@@ -0,0 +1,36 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tests.campuslostandfoundsystem.entity.stats.ItemStats;
+import com.tests.campuslostandfoundsystem.entity.stats.StatCount;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 失物计数
+ * 写路径只做单行的加减,读路径按维度取出所有行;GROUP BY 全表聚合只在对账时使用
+ */
+public interface ItemStatsDAO extends BaseMapper<ItemStats> {
+
+    @Insert("INSERT INTO item_stats (dimension, dim_value, item_count) VALUES (#{dimension}, #{value}, #{delta}) " +
+            "ON DUPLICATE KEY UPDATE item_count = item_count + #{delta}")
+    int increment(@Param("dimension") String dimension, @Param("value") String value, @Param("delta") long delta);
+
+    @Select("SELECT dim_value AS name, item_count AS count FROM item_stats WHERE dimension = #{dimension}")
+    List<StatCount> selectCounts(@Param("dimension") String dimension);
+
+    @Select("SELECT COALESCE(type, '') AS name, COUNT(*) AS count FROM items " +
+            "WHERE is_deleted = 0 GROUP BY COALESCE(type, '')")
+    List<StatCount> countByType();
+
+    @Select("SELECT COALESCE(CAST(status AS CHAR), '') AS name, COUNT(*) AS count FROM items " +
+            "WHERE is_deleted = 0 GROUP BY COALESCE(CAST(status AS CHAR), '')")
+    List<StatCount> countByStatus();
+
+    @Select("SELECT COALESCE(CAST(place_id AS CHAR), '') AS name, COUNT(*) AS count FROM items " +
+            "WHERE is_deleted = 0 GROUP BY COALESCE(CAST(place_id AS CHAR), '')")
+    List<StatCount> countByPlace();
+}
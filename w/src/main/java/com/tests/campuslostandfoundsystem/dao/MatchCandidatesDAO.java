@@ -0,0 +1,22 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tests.campuslostandfoundsystem.entity.match.MatchCandidates;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+public interface MatchCandidatesDAO extends BaseMapper<MatchCandidates> {
+
+    //  同一侧对同一对失物和启事重算时以最后一次为准
+    @Insert("<script>" +
+            "INSERT INTO match_candidates (item_id, notice_id, side, score, text_score, place_score, time_score, create_time) VALUES " +
+            "<foreach collection='candidates' item='c' separator=','>" +
+            "(#{c.itemId}, #{c.noticeId}, #{c.side}, #{c.score}, #{c.textScore}, #{c.placeScore}, #{c.timeScore}, NOW())" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE score = VALUES(score), text_score = VALUES(text_score), " +
+            "place_score = VALUES(place_score), time_score = VALUES(time_score), create_time = VALUES(create_time)" +
+            "</script>")
+    int upsertBatch(@Param("candidates") List<MatchCandidates> candidates);
+}
@@ -0,0 +1,57 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.tests.campuslostandfoundsystem.entity.match.MatchRecord;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 匹配引擎的查询
+ * 分块查询按 地点 + 时间窗口 走 (place_id, create_time) 索引做范围扫描,扫描量只和这个块的大小有关,与整表大小无关。
+ * 只有未认领的失物和未处理的启事参与匹配(status = 1 为已认领/已处理),已关闭的记录按不存在处理
+ */
+public interface MatchDAO {
+
+    @Select("SELECT id, title, description, place_id, create_time AS event_time " +
+            "FROM items WHERE id = #{id} AND is_deleted = 0 " +
+            "AND (status IS NULL OR status <> 1)")
+    MatchRecord selectItem(@Param("id") Long id);
+
+    @Select("SELECT id, title, description, place_id, create_time AS event_time " +
+            "FROM lost_property_notices WHERE id = #{id} AND is_deleted = 0 " +
+            "AND (status IS NULL OR status <> 1)")
+    MatchRecord selectNotice(@Param("id") Long id);
+
+    @Select("SELECT id, title, description, place_id, create_time AS event_time " +
+            "FROM items WHERE is_deleted = 0 AND place_id = #{placeId} " +
+            "AND (status IS NULL OR status <> 1) " +
+            "AND create_time >= #{from} AND create_time < #{to} " +
+            "ORDER BY create_time DESC LIMIT #{limit}")
+    List<MatchRecord> selectItemsInBlock(@Param("placeId") Long placeId, @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to, @Param("limit") int limit);
+
+    @Select("SELECT id, title, description, place_id, create_time AS event_time " +
+            "FROM lost_property_notices WHERE is_deleted = 0 AND place_id = #{placeId} " +
+            "AND (status IS NULL OR status <> 1) " +
+            "AND create_time >= #{from} AND create_time < #{to} " +
+            "ORDER BY create_time DESC LIMIT #{limit}")
+    List<MatchRecord> selectNoticesInBlock(@Param("placeId") Long placeId, @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to, @Param("limit") int limit);
+
+    @Select("<script>" +
+            "SELECT id, title, description, place_id, create_time AS event_time " +
+            "FROM items WHERE is_deleted = 0 AND (status IS NULL OR status <> 1) AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<MatchRecord> selectItemsByIds(@Param("ids") Collection<Long> ids);
+
+    @Select("<script>" +
+            "SELECT id, title, description, place_id, create_time AS event_time " +
+            "FROM lost_property_notices WHERE is_deleted = 0 AND (status IS NULL OR status <> 1) AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<MatchRecord> selectNoticesByIds(@Param("ids") Collection<Long> ids);
+}
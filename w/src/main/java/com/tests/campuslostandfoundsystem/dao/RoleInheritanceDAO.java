@@ -0,0 +1,18 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tests.campuslostandfoundsystem.entity.roles.RoleInheritance;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+public interface RoleInheritanceDAO extends BaseMapper<RoleInheritance> {
+
+    //  锁住全部角色行,串行化继承关系的新增;按id顺序加锁避免死锁
+    @Select("SELECT id FROM roles ORDER BY id FOR UPDATE")
+    List<Long> lockRoles();
+
+    //  加锁读,读到的是已提交的最新边,不受事务快照影响
+    @Select("SELECT id, parent_role_id, child_role_id FROM role_inheritance FOR UPDATE")
+    List<RoleInheritance> selectAllForUpdate();
+}
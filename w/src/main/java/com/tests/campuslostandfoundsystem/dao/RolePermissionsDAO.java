@@ -0,0 +1,7 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tests.campuslostandfoundsystem.entity.permission.RolePermissions;
+
+public interface RolePermissionsDAO extends BaseMapper<RolePermissions> {
+}
@@ -0,0 +1,69 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.tests.campuslostandfoundsystem.entity.stats.RollupPoint;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 趋势汇总表(stats_rollup)及其水位线(stats_rollup_watermark)
+ * 主键 (granularity, source, dimension, dim_value, bucket_start);granularity 为 hour / day,source 为 item / notice。
+ * ${table}、${column} 只接受 RollupServiceImpl 里的常量,不接收外部输入
+ */
+public interface StatsRollupDAO {
+
+    @Select("SELECT watermark FROM stats_rollup_watermark WHERE source = #{source} FOR UPDATE")
+    LocalDateTime selectWatermark(@Param("source") String source);
+
+    @Insert("INSERT INTO stats_rollup_watermark (source, watermark) VALUES (#{source}, #{watermark}) " +
+            "ON DUPLICATE KEY UPDATE watermark = VALUES(watermark)")
+    int upsertWatermark(@Param("source") String source, @Param("watermark") LocalDateTime watermark);
+
+    //  (from, to] 之间新增或修改过的记录落在哪些小时桶;逻辑删除也会更新update_time,所以不过滤is_deleted
+    @Select("SELECT DISTINCT CAST(DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00') AS DATETIME) FROM ${table} " +
+            "WHERE (update_time > #{from} AND update_time <= #{to}) " +
+            "OR (create_time > #{from} AND create_time <= #{to})")
+    List<LocalDateTime> selectChangedHours(@Param("table") String table, @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to);
+
+    @Delete("DELETE FROM stats_rollup WHERE granularity = #{granularity} AND source = #{source} " +
+            "AND bucket_start >= #{from} AND bucket_start < #{to}")
+    int deleteBuckets(@Param("granularity") String granularity, @Param("source") String source,
+                      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    //  从原始表重算一个时间段的小时桶,column 为 '' 时是不分维度的总数
+    @Insert("INSERT INTO stats_rollup (granularity, source, dimension, dim_value, bucket_start, " +
+            "created_count, claimed_count, turnaround_seconds) " +
+            "SELECT 'hour', #{source}, #{dimension}, COALESCE(CAST(${column} AS CHAR), ''), " +
+            "DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00'), COUNT(*), " +
+            "SUM(CASE WHEN status = #{claimedStatus} THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN status = #{claimedStatus} THEN TIMESTAMPDIFF(SECOND, create_time, update_time) ELSE 0 END) " +
+            "FROM ${table} WHERE is_deleted = 0 AND create_time >= #{from} AND create_time < #{to} " +
+            "GROUP BY COALESCE(CAST(${column} AS CHAR), ''), DATE_FORMAT(create_time, '%Y-%m-%d %H:00:00')")
+    int insertHourly(@Param("table") String table, @Param("source") String source,
+                     @Param("dimension") String dimension, @Param("column") String column,
+                     @Param("claimedStatus") Integer claimedStatus,
+                     @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    //  天桶由小时桶汇总,不再回原始表
+    @Insert("INSERT INTO stats_rollup (granularity, source, dimension, dim_value, bucket_start, " +
+            "created_count, claimed_count, turnaround_seconds) " +
+            "SELECT 'day', source, dimension, dim_value, DATE(bucket_start), " +
+            "SUM(created_count), SUM(claimed_count), SUM(turnaround_seconds) " +
+            "FROM stats_rollup WHERE granularity = 'hour' AND source = #{source} " +
+            "AND bucket_start >= #{from} AND bucket_start < #{to} " +
+            "GROUP BY source, dimension, dim_value, DATE(bucket_start)")
+    int insertDailyFromHourly(@Param("source") String source, @Param("from") LocalDateTime from,
+                              @Param("to") LocalDateTime to);
+
+    @Select("SELECT bucket_start, dim_value, created_count, claimed_count, turnaround_seconds FROM stats_rollup " +
+            "WHERE granularity = #{granularity} AND source = #{source} AND dimension = #{dimension} " +
+            "AND bucket_start >= #{from} AND bucket_start < #{to} ORDER BY bucket_start, dim_value")
+    List<RollupPoint> selectRange(@Param("granularity") String granularity, @Param("source") String source,
+                                  @Param("dimension") String dimension, @Param("from") LocalDateTime from,
+                                  @Param("to") LocalDateTime to);
+}
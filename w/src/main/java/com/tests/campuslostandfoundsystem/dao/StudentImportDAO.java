@@ -0,0 +1,22 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import com.tests.campuslostandfoundsystem.entity.user.UserProfiles;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 学生批量导入用的多行插入
+ * students、users需要回填主键,走MyBatis-Plus的saveBatch;user_profiles不需要,直接拼成一条多行INSERT
+ */
+public interface StudentImportDAO {
+
+    @Insert("<script>" +
+            "INSERT INTO user_profiles (user_id, profile_id, profile_type) VALUES " +
+            "<foreach collection='profiles' item='p' separator=','>" +
+            "(#{p.userId}, #{p.profileId}, #{p.profileType})" +
+            "</foreach>" +
+            "</script>")
+    int insertUserProfiles(@Param("profiles") List<UserProfiles> profiles);
+}
@@ -0,0 +1,15 @@
+package com.tests.campuslostandfoundsystem.dao;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 表统计信息
+ * InnoDB的TABLE_ROWS是采样估算值,包含逻辑删除的行,只能用于不要求精确的总数
+ */
+public interface TableStatsDAO {
+
+    @Select("SELECT TABLE_ROWS FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{tableName}")
+    Long selectEstimatedRows(@Param("tableName") String tableName);
+}
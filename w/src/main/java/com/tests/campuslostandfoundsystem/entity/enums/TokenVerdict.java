@@ -0,0 +1,30 @@
+package com.tests.campuslostandfoundsystem.entity.enums;
+
+/**
+ * 一次token校验的结论
+ */
+public enum TokenVerdict {
+    //  会话存在、未拉黑、用户存在
+    VALID,
+    //  会话已被拉黑
+    REVOKED,
+    //  redis中没有该会话(已登出、被顶号或已过期)
+    MISSING,
+    //  用户已被删除
+    USER_GONE,
+    //  签名错误、格式错误或已过期,不需要查redis
+    INVALID;
+
+    //  脚本返回值 -> 结论,顺序与脚本中的返回码一致
+    public static TokenVerdict ofScriptCode(Long code) {
+        if (code == null) {
+            return MISSING;
+        }
+        return switch (code.intValue()) {
+            case 0 -> VALID;
+            case 1 -> REVOKED;
+            case 3 -> USER_GONE;
+            default -> MISSING;
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package com.tests.campuslostandfoundsystem.entity.items;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 失物列表行:只含列表展示需要的字段,描述只取开头一段,没查询的字段不输出;完整信息走详情接口
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemSummary {
+    private Long id;
+    private String title;
+    //  描述的开头,截断长度见 SUMMARY_FIELDS
+    private String description;
+    private String type;
+    private Integer status;
+    private Long placeId;
+    private String imageUrl;
+    private LocalDateTime createTime;
+
+    public static ItemSummary from(Items item) {
+        return ItemSummary.builder()
+                .id(item.getId())
+                .title(item.getTitle())
+                .description(item.getDescription())
+                .type(item.getType())
+                .status(item.getStatus())
+                .placeId(item.getPlaceId())
+                .imageUrl(item.getImageUrl())
+                .createTime(item.getCreateTime())
+                .build();
+    }
+}
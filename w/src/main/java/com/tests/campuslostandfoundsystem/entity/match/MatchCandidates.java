@@ -0,0 +1,34 @@
+package com.tests.campuslostandfoundsystem.entity.match;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 失物与寻物启事的候选匹配表(match_candidates)
+ * (item_id, notice_id, side) 唯一;side 表示这一行属于哪一侧的前N(item / notice),两侧各自维护、互不覆盖。
+ * score为总分,另外三列是文本、地点、时间三项分量,便于前端解释匹配原因
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("match_candidates")
+public class MatchCandidates {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private Long itemId;
+    private Long noticeId;
+    private String side;
+    private Double score;
+    private Double textScore;
+    private Double placeScore;
+    private Double timeScore;
+    private LocalDateTime createTime;
+}
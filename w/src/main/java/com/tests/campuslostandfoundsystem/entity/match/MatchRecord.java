@@ -0,0 +1,18 @@
+package com.tests.campuslostandfoundsystem.entity.match;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 参与匹配的一条失物或寻物启事,只取打分需要的列
+ * eventTime取发布时间
+ */
+@Data
+public class MatchRecord {
+    private Long id;
+    private String title;
+    private String description;
+    private Long placeId;
+    private LocalDateTime eventTime;
+}
@@ -0,0 +1,38 @@
+package com.tests.campuslostandfoundsystem.entity.notice;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 寻物启事列表行:只含列表展示需要的字段,正文只取开头一段,没查询的字段不输出;完整正文、联系方式走详情接口
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NoticeSummary {
+    private Long id;
+    private String title;
+    //  正文的开头,截断长度见 SUMMARY_FIELDS
+    private String description;
+    private Long placeId;
+    private Integer status;
+    private LocalDateTime createTime;
+
+    public static NoticeSummary from(LostPropertyNotices notice) {
+        return NoticeSummary.builder()
+                .id(notice.getId())
+                .title(notice.getTitle())
+                .description(notice.getDescription())
+                .placeId(notice.getPlaceId())
+                .status(notice.getStatus())
+                .createTime(notice.getCreateTime())
+                .build();
+    }
+}
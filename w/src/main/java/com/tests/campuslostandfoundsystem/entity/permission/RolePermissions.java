@@ -0,0 +1,24 @@
+package com.tests.campuslostandfoundsystem.entity.permission;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 角色授权表(role_permissions)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("role_permissions")
+public class RolePermissions {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private Long roleId;
+    private Long permissionId;
+}
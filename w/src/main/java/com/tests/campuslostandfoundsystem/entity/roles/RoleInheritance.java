@@ -0,0 +1,25 @@
+package com.tests.campuslostandfoundsystem.entity.roles;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 角色继承关系表(role_inheritance)
+ * 父角色拥有子角色的全部角色和权限,例如 ADMIN -> ITEM_ADMIN -> STUDENT
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("role_inheritance")
+public class RoleInheritance {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private Long parentRoleId;
+    private Long childRoleId;
+}
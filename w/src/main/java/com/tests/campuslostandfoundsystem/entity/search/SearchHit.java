@@ -0,0 +1,21 @@
+package com.tests.campuslostandfoundsystem.entity.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一条搜索结果,高亮字段已做HTML转义,命中词用<em>包裹
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    //  item / notice
+    private String type;
+    private Long id;
+    private double score;
+    private String title;
+    private String highlightedTitle;
+    private String highlightedDescription;
+}
@@ -0,0 +1,22 @@
+package com.tests.campuslostandfoundsystem.entity.stats;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 失物计数表(item_stats)
+ * (dimension, dim_value) 为主键;dimension 取 type / status / place,dim_value 为对应的类型、状态、地点id,为空时存''
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("item_stats")
+public class ItemStats {
+    private String dimension;
+    private String dimValue;
+    private Long itemCount;
+}
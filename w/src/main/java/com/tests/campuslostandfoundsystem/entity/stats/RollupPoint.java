@@ -0,0 +1,25 @@
+package com.tests.campuslostandfoundsystem.entity.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 趋势图上的一个点:一个时间桶内、一个维度值下的新增数、已认领(已解决)数和认领耗时
+ * 按新增时间归桶,avgTurnaroundSeconds 是这批记录里已认领的平均耗时
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupPoint {
+    private LocalDateTime bucketStart;
+    private String dimValue;
+    private Long createdCount;
+    private Long claimedCount;
+    private Long turnaroundSeconds;
+    private Double avgTurnaroundSeconds;
+}
@@ -0,0 +1,16 @@
+package com.tests.campuslostandfoundsystem.entity.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一个维度值的计数,仪表盘按 name / count 展示
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatCount {
+    private String name;
+    private Long count;
+}
@@ -0,0 +1,17 @@
+package com.tests.campuslostandfoundsystem.entity.student;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 导入失败的一行,rowNumber从1开始,不含表头和空行
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentImportError {
+    private Long rowNumber;
+    private String username;
+    private String message;
+}
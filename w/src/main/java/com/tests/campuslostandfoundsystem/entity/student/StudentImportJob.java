@@ -0,0 +1,25 @@
+package com.tests.campuslostandfoundsystem.entity.student;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 学生批量导入任务的进度
+ * processedRows是已提交的数据行数(不含表头和空行),续传时从这一行之后继续
+ */
+@Data
+public class StudentImportJob {
+    private String jobId;
+    private String fileName;
+    //  PENDING / RUNNING / COMPLETED / FAILED
+    private String status;
+    private Long totalRows;
+    private Long processedRows;
+    private Long importedRows;
+    private Long failedRows;
+    private String message;
+    private String createTime;
+    private String updateTime;
+    private List<StudentImportError> errors;
+}
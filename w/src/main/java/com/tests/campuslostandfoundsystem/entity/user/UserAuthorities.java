@@ -0,0 +1,20 @@
+package com.tests.campuslostandfoundsystem.entity.user;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 一个用户解析后的账号、角色、权限和身份,只读
+ */
+@Value
+public class UserAuthorities {
+    String userId;
+    String username;
+    String password;
+    List<String> roles;
+    List<String> permissions;
+    List<Profiles> profiles;
+    //  角色和权限按 PermissionRegistry 编译成的位图
+    long[] authorityBits;
+}
@@ -0,0 +1,17 @@
+package com.tests.campuslostandfoundsystem.entity.user;
+
+import lombok.Data;
+
+/**
+ * 用户、身份、角色联表查询的一行
+ * 一个用户有几个身份就有几行,没有身份时身份和角色列为null
+ */
+@Data
+public class UserAuthorityRow {
+    private Long userId;
+    private String username;
+    private String password;
+    private Long profileId;
+    private String profileType;
+    private String roleName;
+}
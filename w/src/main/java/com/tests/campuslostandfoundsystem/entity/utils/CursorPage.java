@@ -0,0 +1,21 @@
+package com.tests.campuslostandfoundsystem.entity.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页的一页
+ * 不查总数;nextCursor原样传回即可取下一页,没有下一页时为null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> records;
+    private String nextCursor;
+    private boolean hasMore;
+    private long size;
+}
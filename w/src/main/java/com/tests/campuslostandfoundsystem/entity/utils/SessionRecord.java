@@ -0,0 +1,22 @@
+package com.tests.campuslostandfoundsystem.entity.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * redis中保存的会话记录
+ * 只保存AT/RT的jti指纹、用户、纪元和过期时间,不保存完整的JWT
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionRecord {
+    private String userId;
+    //  AT/RT jti的指纹
+    private String accessTokenFingerprint;
+    private String refreshTokenFingerprint;
+    private long userEpoch;
+    //  RT过期时间戳(毫秒)
+    private long expiresAt;
+}
@@ -0,0 +1,34 @@
+package com.tests.campuslostandfoundsystem.entity.utils;
+
+import lombok.Value;
+
+/**
+ * 一次验签后得到的token信息(不可变)
+ * 同一个请求内的过滤器、service、RedisStoreTokenUtils都复用它,不再重复解析token
+ */
+@Value
+public class TokenClaims {
+    String userId;
+    String sessionId;
+    String jti;
+    String tokenKind;
+    long issuedAt;
+    long expiration;
+    //  签发时该用户的吊销纪元和全局吊销纪元,与当前纪元不一致即视为已吊销
+    long userEpoch;
+    long globalEpoch;
+    boolean expired;
+
+    public boolean isAccessToken() {
+        return "accessToken".equals(tokenKind);
+    }
+
+    public boolean isRefreshToken() {
+        return "refreshToken".equals(tokenKind);
+    }
+
+    //  距离过期的剩余毫秒数,已过期返回0
+    public long remainingMillis() {
+        return Math.max(0L, expiration - System.currentTimeMillis());
+    }
+}
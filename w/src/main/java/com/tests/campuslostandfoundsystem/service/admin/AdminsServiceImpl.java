@@ -6,9 +6,12 @@ import com.tests.campuslostandfoundsystem.entity.CustomsUserDetail;
 import com.tests.campuslostandfoundsystem.entity.admins.ItemsAdminsInfoDTO;
 import com.tests.campuslostandfoundsystem.entity.admins.ChangeAdminsDTO;
 import com.tests.campuslostandfoundsystem.service.user.UserService;
+import com.tests.campuslostandfoundsystem.utils.cache.CacheNames;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.dao.AdminsDAO;
@@ -22,6 +25,7 @@ public class AdminsServiceImpl extends ServiceImpl<AdminsDAO, Admins> implements
     private final String profileType = "ADMIN";
 
     @Operation(summary = "获取管理员信息")
+    @Cacheable(cacheNames = CacheNames.ADMIN_INFO, keyGenerator = "currentUserKeyGenerator")
     @Override
     public ItemsAdminsInfoDTO getAdminInfo() {
         // 获取当前登录用户信息
@@ -36,6 +40,7 @@ public class AdminsServiceImpl extends ServiceImpl<AdminsDAO, Admins> implements
     }
 
     @Operation(summary = "修改管理员信息")
+    @CacheEvict(cacheNames = CacheNames.ADMIN_INFO, keyGenerator = "currentUserKeyGenerator")
     @Override
     public void changeAdminInfo(ChangeAdminsDTO changeAdminsDTO) {
         CustomsUserDetail userInfo = userService.getUserInfo();
@@ -2,6 +2,7 @@ package com.tests.campuslostandfoundsystem.service.auth;
 
 import com.tests.campuslostandfoundsystem.entity.auth.*;
 import com.tests.campuslostandfoundsystem.entity.utils.GraphCaptcha;
+import jakarta.servlet.http.HttpServletResponse;
 
 public interface AuthService {
     public void register(RegisterDTO user);
@@ -9,4 +10,7 @@ public interface AuthService {
     public void logout(RefreshTokenInfoDTO dto);
     public RefreshTokenSuccessDTO refreshToken(RefreshTokenInfoDTO dto);
     public GraphCaptcha generateCaptcha();
+    public void writeCaptchaImage(HttpServletResponse response);
+    public void revokeUserSessions(Long userId);
+    public void revokeAllSessions();
 }
@@ -7,28 +7,37 @@ import com.tests.campuslostandfoundsystem.entity.CustomsUserDetail;
 import com.tests.campuslostandfoundsystem.entity.auth.*;
 import com.tests.campuslostandfoundsystem.entity.enums.exception.AuthResultCodes;
 import com.tests.campuslostandfoundsystem.entity.student.Students;
+import com.tests.campuslostandfoundsystem.entity.user.UserAuthorities;
 import com.tests.campuslostandfoundsystem.entity.user.UserProfiles;
 import com.tests.campuslostandfoundsystem.entity.user.Users;
 import com.tests.campuslostandfoundsystem.entity.utils.GraphCaptcha;
+import com.tests.campuslostandfoundsystem.entity.utils.RedisTokenInfo;
+import com.tests.campuslostandfoundsystem.entity.utils.TokenClaims;
 import com.tests.campuslostandfoundsystem.exception.AuthException;
 import com.tests.campuslostandfoundsystem.exception.UtilsException;
 import com.tests.campuslostandfoundsystem.service.auth.AuthService;
+import com.tests.campuslostandfoundsystem.service.security.AuthorityResolver;
+import com.tests.campuslostandfoundsystem.service.security.UsernameExistenceFilter;
 import com.tests.campuslostandfoundsystem.service.user.UserService;
+import com.tests.campuslostandfoundsystem.service.user.impl.UserServiceImpl;
 import com.tests.campuslostandfoundsystem.utils.CaptchaUtils;
 import com.tests.campuslostandfoundsystem.utils.JwtUtils;
+import com.tests.campuslostandfoundsystem.utils.LoginThrottle;
 import com.tests.campuslostandfoundsystem.utils.RedisStoreTokenUtils;
+import com.tests.campuslostandfoundsystem.utils.cache.PageCountCache;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-
-import java.util.UUID;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 @RequiredArgsConstructor
@@ -41,6 +50,10 @@ public class AuthServiceImpl implements AuthService {
     private final RedisStoreTokenUtils  redisStoreTokenUtils;
     private final StudentsDAO  studentsDAO;
     private final UserService userService;
+    private final LoginThrottle loginThrottle;
+    private final UsernameExistenceFilter usernameExistenceFilter;
+    private final AuthorityResolver authorityResolver;
+    private final PageCountCache pageCountCache;
     @Operation(summary = "用户注册")
     @Transactional(rollbackFor = Exception.class)
     @Override
@@ -54,6 +67,15 @@ public class AuthServiceImpl implements AuthService {
             if(StringUtils.isBlank(user.getPassword())){
                 throw new AuthException(AuthResultCodes.AUTHENTICATING_EMPTY, "密码不能为空");
             }
+//         用户名重复时在哈希密码之前返回;过滤器健康时判定一定不存在的用户名不查库
+            if(usernameExistenceFilter.mightExist(user.getUsername())){
+                QueryWrapper<Users> qw = new QueryWrapper<>();
+                qw.eq("username", user.getUsername())
+                        .eq("is_deleted", 0);
+                if(userDAO.selectCount(qw) > 0){
+                    throw new AuthException(AuthResultCodes.REGISTER_FAILED, "用户名已存在");
+                }
+            }
 //         加密密码
             user.setPassword(passwordEncoder.encode(user.getPassword()));
 //          默认注册为学生
@@ -77,6 +99,12 @@ public class AuthServiceImpl implements AuthService {
                             .profileId(stUser.getId())
                             .profileType("STUDENT")
                     .build());
+//          提交前写入用户名过滤器的变更日志,写入失败时注册回滚
+            usernameExistenceFilter.added(user.getUsername());
+            pageCountCache.invalidate(UserServiceImpl.TABLE);
+        }catch(ResponseStatusException e){
+//          哈希线程池满,直接返回503,不包装成注册失败
+            throw e;
         }catch(Exception e){
             throw new AuthException(AuthResultCodes.REGISTER_FAILED, e.getMessage(), e);
         }
@@ -94,6 +122,8 @@ public class AuthServiceImpl implements AuthService {
            if(StringUtils.isBlank(dto.getPassword())){
                throw new AuthException(AuthResultCodes.AUTHENTICATING_EMPTY, "密码不能为空");
            }
+//         登录限流,超限直接返回429,不查库也不做密码哈希
+           loginThrottle.check(dto.getUsername());
 //         图形验证码是否为空
            if(StringUtils.isBlank(dto.getGraphCaptchaCode())){
                throw new AuthException(AuthResultCodes.AUTHENTICATING_EMPTY, "验证码不能为空");
@@ -102,29 +132,36 @@ public class AuthServiceImpl implements AuthService {
            if(!captchaUtils.validateGraphCaptcha( dto.getGraphCaptchaKey(),dto.getGraphCaptchaCode())){
                throw new AuthException(AuthResultCodes.AUTHENTICATING_CAPTCHA_ERROR, "验证码错误");
            }
-//         检查是否在数据库中是否存在该用户
-           QueryWrapper<Users> qw = new QueryWrapper<>();
-           qw.eq("username", dto.getUsername())
-                        .eq("is_deleted", 0);
-           Users user=userDAO.selectOne(qw);
+//         检查是否在数据库中是否存在该用户;过滤器健康时判定一定不存在的用户名不查库
+           UserAuthorities user = usernameExistenceFilter.mightExist(dto.getUsername())
+                   ? authorityResolver.resolveByUsername(dto.getUsername())
+                   : null;
            if(user==null){
+               loginThrottle.recordFailure(dto.getUsername());
                throw new AuthException(AuthResultCodes.AUTHENTICATING_USER_NOT_EXIST, "用户不存在");
            }
-//         SecurityContextHolder处理
-           Authentication authentication= authenticationManager.authenticate(
-                        new UsernamePasswordAuthenticationToken(dto.getUsername(), dto.getPassword())
-           );
+//         SecurityContextHolder处理;上面按用户名查到的结果已按userId缓存,认证时加载用户不再查库
+           Authentication authentication;
+           try{
+               authentication= authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(user.getUserId(), dto.getPassword())
+               );
+           }catch(AuthenticationException e){
+//             密码错误计入失败窗口
+               loginThrottle.recordFailure(dto.getUsername());
+               throw e;
+           }
            if(authentication==null){
                throw new AuthException(AuthResultCodes.AUTHENTICATING_EMPTY, "authentication为空");
            }
            SecurityContextHolder.getContext().setAuthentication(authentication);
-//            生成token
-           String sid= UUID.randomUUID().toString();
-           String AT = jwtUtils.generateAccessToken(user.getId().toString(),sid);
-           String RT = jwtUtils.generateRefreshToken(user.getId().toString(),sid);
-//         保存token到redis
-           redisStoreTokenUtils.saveTokens(user.getId().toString(), AT, RT);
-           return new  LoginSuccessDTO(AT,RT);
+           loginThrottle.recordSuccess(dto.getUsername());
+//         生成token并保存到redis(新会话的吊销纪元+1,同时顶掉旧会话)
+           RedisTokenInfo tokens = redisStoreTokenUtils.createSession(user.getUserId());
+           return new  LoginSuccessDTO(tokens.getAccessToken(), tokens.getRefreshToken());
+       }catch(ResponseStatusException e){
+//         限流429、哈希线程池满503,直接返回,不包装成登录失败
+           throw e;
        }catch(Exception e){
            throw new AuthException(AuthResultCodes.LOGIN_ERROR, e.getMessage(), e);
        }
@@ -134,19 +171,20 @@ public class AuthServiceImpl implements AuthService {
     @Override
     public void logout(RefreshTokenInfoDTO dto) {
         try{
-//         验证RT是否有效
-           if(!jwtUtils.validateToken(dto.getRefreshToken())){
+//         验证RT是否有效(只验签一次)
+           TokenClaims rtClaims = jwtUtils.resolveToken(dto.getRefreshToken());
+           if(rtClaims == null){
                throw  new UtilsException(AuthResultCodes.TOKEN_INVALID, "RT无效");
            }
 //         验证RT是否对应用户
             CustomsUserDetail nowUserInfo = userService.getUserInfo();
-            if(!nowUserInfo.getUserId().equals(jwtUtils.getUserId(dto.getRefreshToken()))){
+            if(!nowUserInfo.getUserId().equals(rtClaims.getUserId())){
                throw  new UtilsException(AuthResultCodes.TOKEN_INVALID, "RT与用户不对应");
            }
+//         吊销该用户的会话(纪元+1)
+            redisStoreTokenUtils.revokeUser(rtClaims.getUserId());
 //         从redis中删除AT、RT
-            redisStoreTokenUtils.deleteTokenByUserId(dto.getUserId());
-//         拉黑AT
-            redisStoreTokenUtils.addBlackListBySid(jwtUtils.getSessionId(dto.getRefreshToken()));
+            redisStoreTokenUtils.deleteTokenByUserId(rtClaims.getUserId());
         }catch(Exception e){
            throw new AuthException(AuthResultCodes.LOGOUT_ERROR, e.getMessage(), e);
         }
@@ -156,31 +194,55 @@ public class AuthServiceImpl implements AuthService {
     @Override
     public RefreshTokenSuccessDTO refreshToken(RefreshTokenInfoDTO dto) {
       try{
-          // 验证RT是否有效
-          if(!jwtUtils.validateToken(dto.getRefreshToken())){
+          // 验证RT是否有效(只验签一次)
+          TokenClaims rtClaims = jwtUtils.resolveToken(dto.getRefreshToken());
+          if(rtClaims == null){
               throw  new UtilsException(AuthResultCodes.TOKEN_INVALID, "RT无效");
           }
 //        验证RT是否对应用户
           CustomsUserDetail nowUserInfo = userService.getUserInfo();
-          if(!nowUserInfo.getUserId().equals(jwtUtils.getUserId(dto.getRefreshToken()))){
+          if(!nowUserInfo.getUserId().equals(rtClaims.getUserId())){
               throw  new UtilsException(AuthResultCodes.TOKEN_INVALID, "RT与用户不对应");
           }
-//        检查是否在黑名单中
-          if(redisStoreTokenUtils.isBlackListBySid(jwtUtils.getSessionId(dto.getRefreshToken()))){
-              throw  new AuthException(AuthResultCodes.TOKEN_INVALID, "RT已在黑名单中");
+//        检查RT是否已吊销、会话是否还在
+          if(!redisStoreTokenUtils.isRefreshTokenValid(rtClaims)){
+              throw  new AuthException(AuthResultCodes.TOKEN_INVALID, "RT已被吊销");
+          }
+//        生成并返回AT,沿用RT的会话和纪元
+          String AT=jwtUtils.generateAccessToken(rtClaims.getUserId(),rtClaims.getSessionId(),
+                  rtClaims.getUserEpoch(),rtClaims.getGlobalEpoch());
+//        会话记录里换成新AT的指纹
+          if(!redisStoreTokenUtils.rotateAccessToken(rtClaims, AT)){
+              throw  new AuthException(AuthResultCodes.TOKEN_INVALID, "会话不存在");
           }
-//        生成并返回AT
-          String AT=jwtUtils.generateAccessToken(dto.getUserId(),jwtUtils.getSessionId(dto.getRefreshToken()));
           return new RefreshTokenSuccessDTO(AT);
       }catch(Exception e){
          throw new AuthException(AuthResultCodes.REFRESH_TOKEN_ERROR, e.getMessage(), e);
       }
     }
 
+    @Operation(summary = "吊销某个用户的所有会话")
+    @Override
+    public void revokeUserSessions(Long userId) {
+        redisStoreTokenUtils.revokeUser(userId.toString());
+    }
+
+    @Operation(summary = "吊销所有用户的所有会话")
+    @Override
+    public void revokeAllSessions() {
+        redisStoreTokenUtils.revokeAll();
+    }
+
     @Override
     public GraphCaptcha generateCaptcha() {
         GraphCaptcha graphCaptcha = captchaUtils.generateCaptcha();
         graphCaptcha.setCaptchaCode("");
         return graphCaptcha;
     }
+
+    @Operation(summary = "生成二进制图形验证码")
+    @Override
+    public void writeCaptchaImage(HttpServletResponse response) {
+        captchaUtils.writeCaptchaImage(response);
+    }
 }
@@ -2,11 +2,17 @@ package com.tests.campuslostandfoundsystem.service.items;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tests.campuslostandfoundsystem.entity.admins.ItemTypeCountDTO;
+import com.tests.campuslostandfoundsystem.entity.items.ItemSummary;
 import com.tests.campuslostandfoundsystem.entity.items.ItemsSelectionDTO;
 import com.tests.campuslostandfoundsystem.entity.items.Items;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 import com.baomidou.mybatisplus.extension.service.IService;
 public interface ItemsService extends IService<Items>{
     Page<Items> getAllItemsPages(ItemsSelectionDTO dto);
+    Page<Items> getAllItemsPages(ItemsSelectionDTO dto, boolean estimateTotal);
+    Page<ItemSummary> getItemSummaries(ItemsSelectionDTO dto, String fields, boolean estimateTotal);
+    Items getItemDetail(Long id);
+    CursorPage<Items> getItemsBySeek(ItemsSelectionDTO dto, String cursor, String order);
     void insertItem(Items items);
     void updateItem(Items items);
     void deleteItem(Long id);
@@ -3,33 +3,98 @@ package com.tests.campuslostandfoundsystem.service.items;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tests.campuslostandfoundsystem.entity.admins.ItemTypeCountDTO;
+import com.tests.campuslostandfoundsystem.entity.items.ItemSummary;
 import com.tests.campuslostandfoundsystem.entity.items.ItemsSelectionDTO;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
+import com.tests.campuslostandfoundsystem.service.match.MatchingService;
+import com.tests.campuslostandfoundsystem.service.search.SearchService;
+import com.tests.campuslostandfoundsystem.service.stats.ItemStatsService;
+import com.tests.campuslostandfoundsystem.utils.FieldProjection;
+import com.tests.campuslostandfoundsystem.utils.KeysetPager;
+import com.tests.campuslostandfoundsystem.utils.cache.CacheNames;
+import com.tests.campuslostandfoundsystem.utils.cache.PageCountCache;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.entity.items.Items;
 import com.tests.campuslostandfoundsystem.dao.ItemsDAO;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 @RequiredArgsConstructor
 public class ItemsServiceImpl extends ServiceImpl<ItemsDAO, Items> implements ItemsService{
     private final ItemsDAO itemsDAO;
+    private final PageCountCache pageCountCache;
+    private final SearchService searchService;
+    private final MatchingService matchingService;
+    private final ItemStatsService itemStatsService;
+    private static final String TABLE = "items";
+    private static final KeysetPager<Items> SEEK_PAGER = KeysetPager.<Items>of(Items::getId, "createTime")
+            .sortKey("createTime", "create_time", Items::getCreateTime);
+    //  列表行只查这些列,描述只取开头,完整描述、联系方式、审计字段留给详情
+    private static final FieldProjection SUMMARY_FIELDS = FieldProjection.of()
+            .field("title", "title")
+            .field("description", "LEFT(description, 60) AS description")
+            .field("type", "type")
+            .field("status", "status")
+            .field("placeId", "place_id")
+            .field("imageUrl", "image_url")
+            .field("createTime", "create_time");
 
     @Operation(summary = "获取失物pages")
+    @Cacheable(cacheNames = CacheNames.ITEM_PAGES, sync = true, keyGenerator = "queryKeyGenerator")
     @Override
     public Page<Items> getAllItemsPages(ItemsSelectionDTO dto) {
-        //      查询条件
-        QueryWrapper<Items> qw = new QueryWrapper<>();
-        qw.eq("is_deleted", 0)
-                .like(StringUtils.isNotBlank(dto.getName()), "title", dto.getName())
-                .like(dto.getStatus()!= null, "status", dto.getStatus());
+        return getAllItemsPages(dto, false);
+    }
+
+    @Operation(summary = "获取失物pages,总数走缓存,可选估算")
+    @Cacheable(cacheNames = CacheNames.ITEM_PAGES, sync = true, keyGenerator = "queryKeyGenerator")
+    @Override
+    public Page<Items> getAllItemsPages(ItemsSelectionDTO dto, boolean estimateTotal) {
+        return selectPage(dto, orderedQuery(dto), estimateTotal);
+    }
+
+    @Operation(summary = "获取失物列表摘要,只查列表需要的列")
+    @Cacheable(cacheNames = CacheNames.ITEM_PAGES, sync = true, keyGenerator = "queryKeyGenerator")
+    @Override
+    public Page<ItemSummary> getItemSummaries(ItemsSelectionDTO dto, String fields, boolean estimateTotal) {
+        QueryWrapper<Items> qw = orderedQuery(dto);
+        qw.select(SUMMARY_FIELDS.columns(fields));
+        Page<Items> page = selectPage(dto, qw, estimateTotal);
+        Page<ItemSummary> summaries = Page.of(page.getCurrent(), page.getSize(), page.getTotal());
+        summaries.setRecords(page.getRecords().stream().map(ItemSummary::from).toList());
+        return summaries;
+    }
+
+    @Operation(summary = "获取失物详情")
+    @Override
+    public Items getItemDetail(Long id) {
+        Items item = itemsDAO.selectById(id);
+        if (item == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "失物不存在");
+        }
+        return item;
+    }
+
+    private Page<Items> selectPage(ItemsSelectionDTO dto, QueryWrapper<Items> qw, boolean estimateTotal) {
 //      处理分页
         Long pageNumber = dto.getPageNumber() == null||dto.getPageNumber()<=0 ? 1L : dto.getPageNumber();
         Long pageSize = dto.getPageSize() == null||dto.getPageSize()<=0 ? 10L : dto.getPageSize();
         Page<Items> page = Page.of(pageNumber, pageSize);
+        return pageCountCache.selectPage(itemsDAO, page, qw, () -> selectionQuery(dto), TABLE,
+                PageCountCache.filterKey(dto.getName(), dto.getStatus()), estimateTotal);
+    }
+
+    //  查询条件 + 排序
+    private static QueryWrapper<Items> orderedQuery(ItemsSelectionDTO dto) {
+        QueryWrapper<Items> qw = selectionQuery(dto);
         if(StringUtils.isNotBlank(dto.getSortBy())){
             String columnName= com.baomidou.mybatisplus.core.toolkit.StringUtils.camelToUnderline(dto.getSortBy());
             boolean isAsc = "asc".equalsIgnoreCase(columnName);
@@ -37,31 +102,79 @@ public class ItemsServiceImpl extends ServiceImpl<ItemsDAO, Items> implements It
         }else{
             qw.orderByDesc("create_time");
         }
-        return itemsDAO.selectPage(page, qw);
+        return qw;
+    }
+
+    @Operation(summary = "游标分页获取失物,不查总数")
+    @Cacheable(cacheNames = CacheNames.ITEM_PAGES, sync = true, keyGenerator = "queryKeyGenerator", condition = "#cursor == null")
+    @Override
+    public CursorPage<Items> getItemsBySeek(ItemsSelectionDTO dto, String cursor, String order) {
+        return SEEK_PAGER.seek(itemsDAO, selectionQuery(dto), dto.getSortBy(), order, cursor, dto.getPageSize());
+    }
+
+    //  文本条件去掉首尾空白再查,和 PageCountCache.filterKey 的规范化一致,同一个总数缓存键对应同一条查询
+    private static QueryWrapper<Items> selectionQuery(ItemsSelectionDTO dto) {
+        QueryWrapper<Items> qw = new QueryWrapper<>();
+        qw.eq("is_deleted", 0)
+                .like(StringUtils.isNotBlank(dto.getName()), "title", StringUtils.trim(dto.getName()))
+                .like(dto.getStatus()!= null, "status", dto.getStatus());
+        return qw;
     }
     @Operation(summary = "根据id删除失物信息")
     @Transactional
+    @CacheEvict(cacheNames = {CacheNames.ITEM_PAGES, CacheNames.ITEM_TYPE_COUNT}, allEntries = true)
     @Override
     public void deleteItem(Long id) {
+//      先锁住原记录再删,计数按删除前的值扣减
+        Items before = selectForUpdate(id);
         itemsDAO.deleteById(id);
+        itemStatsService.itemDeleted(before);
+        pageCountCache.invalidate(TABLE);
+        searchService.itemChanged(id);
+        matchingService.itemChanged(id);
     }
 
     @Operation(summary = "查询失物信息")
     @Transactional
+    @CacheEvict(cacheNames = {CacheNames.ITEM_PAGES, CacheNames.ITEM_TYPE_COUNT}, allEntries = true)
     @Override
     public void updateItem(Items items) {
+   Items before = selectForUpdate(items.getId());
    itemsDAO.updateById(items);
+//   updateById只改非空字段,改后的值回表读一次
+   itemStatsService.itemUpdated(before, before == null ? null : itemsDAO.selectById(items.getId()));
+   pageCountCache.invalidate(TABLE);
+   searchService.itemChanged(items.getId());
+   matchingService.itemChanged(items.getId());
     }
 
     @Operation(summary = "新增失物信息")
     @Transactional
+    @CacheEvict(cacheNames = {CacheNames.ITEM_PAGES, CacheNames.ITEM_TYPE_COUNT}, allEntries = true)
     @Override
     public void insertItem(Items items) {
    itemsDAO.insert(items);
+//   未传的字段可能取了数据库默认值,按落库后的记录计数
+   itemStatsService.itemInserted(itemsDAO.selectById(items.getId()));
+   pageCountCache.invalidate(TABLE);
+   searchService.itemChanged(items.getId());
+   matchingService.itemChanged(items.getId());
     }
 
+    @Cacheable(cacheNames = CacheNames.ITEM_TYPE_COUNT, sync = true, key = "'all'")
     @Override
     public ItemTypeCountDTO getItemTypeCount() {
         return itemsDAO.getItemTypeCount();
     }
+
+    private Items selectForUpdate(Long id) {
+        if (id == null) {
+            return null;
+        }
+        QueryWrapper<Items> qw = new QueryWrapper<>();
+        qw.eq("id", id)
+                .eq("is_deleted", 0)
+                .last("FOR UPDATE");
+        return itemsDAO.selectOne(qw);
+    }
 }
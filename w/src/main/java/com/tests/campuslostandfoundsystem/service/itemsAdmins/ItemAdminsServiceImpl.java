@@ -10,9 +10,12 @@ import com.tests.campuslostandfoundsystem.entity.itemAdmins.*;
 import com.tests.campuslostandfoundsystem.entity.items.Items;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNotices;
 import com.tests.campuslostandfoundsystem.service.user.UserService;
+import com.tests.campuslostandfoundsystem.utils.cache.CacheNames;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.dao.ItemAdminsDAO;
@@ -27,6 +30,7 @@ public class ItemAdminsServiceImpl extends ServiceImpl<ItemAdminsDAO, ItemAdmins
     private final String profileType = "ITEM_ADMIN";
 
     @Operation(summary = "获取物品管理员信息")
+    @Cacheable(cacheNames = CacheNames.ITEM_ADMIN_INFO, keyGenerator = "currentUserKeyGenerator")
     @Override
     public ItemAdminsInfoDTO getItemAdminInfo() {
         // 获取当前登录用户信息
@@ -41,6 +45,7 @@ public class ItemAdminsServiceImpl extends ServiceImpl<ItemAdminsDAO, ItemAdmins
     }
 
     @Operation(summary = "修改物品管理员信息")
+    @CacheEvict(cacheNames = CacheNames.ITEM_ADMIN_INFO, keyGenerator = "currentUserKeyGenerator")
     @Override
     public void changeItemAdminInfo(ChangeItemAdminsDTO changeItemAdminsDTO) {
         CustomsUserDetail userInfo = userService.getUserInfo();
@@ -4,9 +4,14 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNoticesSelectionDTO;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNotices;
+import com.tests.campuslostandfoundsystem.entity.notice.NoticeSummary;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 
 public interface LostPropertyNoticesService extends IService<LostPropertyNotices> {
     Page<LostPropertyNotices> getAllLostPropertyNoticesPages(LostPropertyNoticesSelectionDTO dto);
+    Page<NoticeSummary> getNoticeSummaries(LostPropertyNoticesSelectionDTO dto, String fields);
+    LostPropertyNotices getNoticeDetail(Long id);
+    CursorPage<LostPropertyNotices> getLostPropertyNoticesBySeek(LostPropertyNoticesSelectionDTO dto, String cursor, String order);
     void insertLostPropertyNotices(LostPropertyNotices lostPropertyNotices);
     void updateLostPropertyNotices(LostPropertyNotices lostPropertyNotices);
     void deleteLostPropertyNotices(Long id);
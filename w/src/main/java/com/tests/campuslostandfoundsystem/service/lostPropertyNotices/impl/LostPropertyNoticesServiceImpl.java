@@ -6,49 +6,115 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.dao.LostPropertyNoticesDAO;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNoticesSelectionDTO;
 import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNotices;
+import com.tests.campuslostandfoundsystem.entity.notice.NoticeSummary;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 import com.tests.campuslostandfoundsystem.service.lostPropertyNotices.LostPropertyNoticesService;
+import com.tests.campuslostandfoundsystem.service.match.MatchingService;
+import com.tests.campuslostandfoundsystem.service.search.SearchService;
+import com.tests.campuslostandfoundsystem.utils.FieldProjection;
+import com.tests.campuslostandfoundsystem.utils.KeysetPager;
+import com.tests.campuslostandfoundsystem.utils.cache.CacheNames;
+import com.tests.campuslostandfoundsystem.utils.cache.PageCountCache;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 @RequiredArgsConstructor
 public class LostPropertyNoticesServiceImpl extends ServiceImpl<LostPropertyNoticesDAO, LostPropertyNotices> implements LostPropertyNoticesService {
     private final LostPropertyNoticesDAO lostPropertyNoticesDAO;
+    private final PageCountCache pageCountCache;
+    private final SearchService searchService;
+    private final MatchingService matchingService;
+    private static final String TABLE = "lost_property_notices";
+    private static final KeysetPager<LostPropertyNotices> SEEK_PAGER =
+            KeysetPager.<LostPropertyNotices>of(LostPropertyNotices::getId, "createTime")
+                    .sortKey("createTime", "create_time", LostPropertyNotices::getCreateTime);
+    //  列表行只查这些列,正文只取开头,完整正文、联系方式、审计字段留给详情
+    private static final FieldProjection SUMMARY_FIELDS = FieldProjection.of()
+            .field("title", "title")
+            .field("description", "LEFT(description, 60) AS description")
+            .field("placeId", "place_id")
+            .field("status", "status")
+            .field("createTime", "create_time");
 
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.NOTICE_PAGES, allEntries = true)
     @Override
     public void deleteLostPropertyNotices(Long id) {
         lostPropertyNoticesDAO.deleteById(id);
+        pageCountCache.invalidate(TABLE);
+        searchService.noticeChanged(id);
+        matchingService.noticeChanged(id);
     }
 
     @Transactional(rollbackFor = Exception.class)
+    @CacheEvict(cacheNames = CacheNames.NOTICE_PAGES, allEntries = true)
     @Override
     public void updateLostPropertyNotices(LostPropertyNotices lostPropertyNotices) {
         lostPropertyNoticesDAO.updateById(lostPropertyNotices);
+        pageCountCache.invalidate(TABLE);
+        searchService.noticeChanged(lostPropertyNotices.getId());
+        matchingService.noticeChanged(lostPropertyNotices.getId());
     }
 
     @Transactional(rollbackFor = Exception.class)
+    @CacheEvict(cacheNames = CacheNames.NOTICE_PAGES, allEntries = true)
     @Override
     public void insertLostPropertyNotices(LostPropertyNotices lostPropertyNotices) {
         lostPropertyNoticesDAO.insert(lostPropertyNotices);
+        pageCountCache.invalidate(TABLE);
+        searchService.noticeChanged(lostPropertyNotices.getId());
+        matchingService.noticeChanged(lostPropertyNotices.getId());
     }
 
     @Operation(summary = "获取待审核寻物物品列表")
+    @Cacheable(cacheNames = CacheNames.NOTICE_PAGES, sync = true, keyGenerator = "queryKeyGenerator")
     @Override
     public Page<LostPropertyNotices> getAllLostPropertyNoticesPages(LostPropertyNoticesSelectionDTO dto) {
-//      查询条件
-        QueryWrapper<LostPropertyNotices> qw = new QueryWrapper<>();
-        qw.eq("is_deleted", 0)
-                .like(StringUtils.isNotBlank(dto.getTitle()), "title", dto.getTitle())
-                .like(StringUtils.isNotBlank(dto.getDescription()), "description", dto.getDescription())
-                .like(dto.getAuditStatus()!= null, "audit_status", dto.getAuditStatus());
+        return selectPage(dto, orderedQuery(dto));
+    }
+
+    @Operation(summary = "获取寻物启事列表摘要,只查列表需要的列")
+    @Cacheable(cacheNames = CacheNames.NOTICE_PAGES, sync = true, keyGenerator = "queryKeyGenerator")
+    @Override
+    public Page<NoticeSummary> getNoticeSummaries(LostPropertyNoticesSelectionDTO dto, String fields) {
+        QueryWrapper<LostPropertyNotices> qw = orderedQuery(dto);
+        qw.select(SUMMARY_FIELDS.columns(fields));
+        Page<LostPropertyNotices> page = selectPage(dto, qw);
+        Page<NoticeSummary> summaries = Page.of(page.getCurrent(), page.getSize(), page.getTotal());
+        summaries.setRecords(page.getRecords().stream().map(NoticeSummary::from).toList());
+        return summaries;
+    }
+
+    @Operation(summary = "获取寻物启事详情")
+    @Override
+    public LostPropertyNotices getNoticeDetail(Long id) {
+        LostPropertyNotices notice = lostPropertyNoticesDAO.selectById(id);
+        if (notice == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "寻物启事不存在");
+        }
+        return notice;
+    }
+
+    private Page<LostPropertyNotices> selectPage(LostPropertyNoticesSelectionDTO dto, QueryWrapper<LostPropertyNotices> qw) {
 //      处理分页
         Long pageNumber = dto.getPageNumber() == null||dto.getPageNumber()<=0 ? 1L : dto.getPageNumber();
         Long pageSize = dto.getPageSize() == null||dto.getPageSize()<=0 ? 10L : dto.getPageSize();
         Page<LostPropertyNotices> page = Page.of(pageNumber, pageSize);
+        return pageCountCache.selectPage(lostPropertyNoticesDAO, page, qw, () -> selectionQuery(dto), TABLE,
+                PageCountCache.filterKey(dto.getTitle(), dto.getDescription(), dto.getAuditStatus()), false);
+    }
+
+    //  查询条件 + 排序
+    private static QueryWrapper<LostPropertyNotices> orderedQuery(LostPropertyNoticesSelectionDTO dto) {
+        QueryWrapper<LostPropertyNotices> qw = selectionQuery(dto);
         if(StringUtils.isNotBlank(dto.getSortBy())){
             String columnName= com.baomidou.mybatisplus.core.toolkit.StringUtils.camelToUnderline(dto.getSortBy());
             boolean isAsc = "asc".equalsIgnoreCase(columnName);
@@ -56,6 +122,23 @@ public class LostPropertyNoticesServiceImpl extends ServiceImpl<LostPropertyNoti
         }else{
             qw.orderByDesc("create_time");
         }
-        return lostPropertyNoticesDAO.selectPage(page, qw);
+        return qw;
+    }
+
+    @Operation(summary = "游标分页获取寻物启事,不查总数")
+    @Cacheable(cacheNames = CacheNames.NOTICE_PAGES, sync = true, keyGenerator = "queryKeyGenerator", condition = "#cursor == null")
+    @Override
+    public CursorPage<LostPropertyNotices> getLostPropertyNoticesBySeek(LostPropertyNoticesSelectionDTO dto, String cursor, String order) {
+        return SEEK_PAGER.seek(lostPropertyNoticesDAO, selectionQuery(dto), dto.getSortBy(), order, cursor, dto.getPageSize());
+    }
+
+    //  文本条件去掉首尾空白再查,和 PageCountCache.filterKey 的规范化一致,同一个总数缓存键对应同一条查询
+    private static QueryWrapper<LostPropertyNotices> selectionQuery(LostPropertyNoticesSelectionDTO dto) {
+        QueryWrapper<LostPropertyNotices> qw = new QueryWrapper<>();
+        qw.eq("is_deleted", 0)
+                .like(StringUtils.isNotBlank(dto.getTitle()), "title", StringUtils.trim(dto.getTitle()))
+                .like(StringUtils.isNotBlank(dto.getDescription()), "description", StringUtils.trim(dto.getDescription()))
+                .like(dto.getAuditStatus()!= null, "audit_status", dto.getAuditStatus());
+        return qw;
     }
 }
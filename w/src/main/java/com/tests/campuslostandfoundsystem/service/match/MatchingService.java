@@ -0,0 +1,14 @@
+package com.tests.campuslostandfoundsystem.service.match;
+
+import com.tests.campuslostandfoundsystem.entity.match.MatchCandidates;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MatchingService {
+    public void itemChanged(Long itemId);
+    public void noticeChanged(Long noticeId);
+    public List<MatchCandidates> getItemMatches(Long itemId);
+    public List<MatchCandidates> getNoticeMatches(Long noticeId);
+    public Map<String, Long> getStats();
+}
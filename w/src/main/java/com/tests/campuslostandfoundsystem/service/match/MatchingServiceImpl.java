@@ -0,0 +1,303 @@
+package com.tests.campuslostandfoundsystem.service.match;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.MatchCandidatesDAO;
+import com.tests.campuslostandfoundsystem.dao.MatchDAO;
+import com.tests.campuslostandfoundsystem.entity.match.MatchCandidates;
+import com.tests.campuslostandfoundsystem.entity.match.MatchRecord;
+import com.tests.campuslostandfoundsystem.entity.search.SearchHit;
+import com.tests.campuslostandfoundsystem.service.search.SearchService;
+import com.tests.campuslostandfoundsystem.utils.search.CjkBigramTokenizer;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 失物 <-> 寻物启事增量匹配
+ * 每次写入提交后把这条记录放进异步队列,后台线程只给这一条记录找候选:
+ * 候选来自两个块——同一地点、时间窗口内的记录(走索引范围扫描),以及检索索引里文本最相近的若干条(再按时间窗口过滤),
+ * 两块都有上限,匹配开销与表大小无关。候选按 文本相似度 + 地点 + 时间 加权打分,每条记录保留前N个写入match_candidates。
+ * 每行带side标明是哪一侧算出的前N,重算只替换本侧的行,不会删掉对方作为自己前N写进来的配对;
+ * 查询时两侧的行合并去重。记录被删除、认领或处理后,所有含它的配对一并清掉。
+ * 同一条记录在队列里只排一次;队列满时丢弃并计数,下一次写入会重新匹配
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MatchingServiceImpl implements MatchingService {
+    private static final String ITEM = "item";
+    private static final String NOTICE = "notice";
+
+    private final MatchDAO matchDAO;
+    private final MatchCandidatesDAO matchCandidatesDAO;
+    private final SearchService searchService;
+
+    @Value("${match.window-days:14}")
+    private long windowDays;
+    @Value("${match.block-limit:200}")
+    private int blockLimit;
+    @Value("${match.text-candidates:50}")
+    private int textCandidates;
+    @Value("${match.top-n:5}")
+    private int topN;
+    @Value("${match.min-score:0.3}")
+    private double minScore;
+    @Value("${match.queue-capacity:1000}")
+    private int queueCapacity;
+    @Value("${match.weight.text:0.6}")
+    private double textWeight;
+    @Value("${match.weight.place:0.25}")
+    private double placeWeight;
+    @Value("${match.weight.time:0.15}")
+    private double timeWeight;
+
+    private ThreadPoolExecutor executor;
+    //  已在队列里、还没开始处理的记录
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder candidatesScored = new LongAdder();
+    private final LongAdder matchesWritten = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "match-engine");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void itemChanged(Long itemId) {
+        afterCommit(() -> enqueue(ITEM, itemId));
+    }
+
+    @Override
+    public void noticeChanged(Long noticeId) {
+        afterCommit(() -> enqueue(NOTICE, noticeId));
+    }
+
+    @Operation(summary = "失物的候选寻物启事")
+    @Override
+    public List<MatchCandidates> getItemMatches(Long itemId) {
+        return matches("item_id", itemId, MatchCandidates::getNoticeId);
+    }
+
+    @Operation(summary = "寻物启事的候选失物")
+    @Override
+    public List<MatchCandidates> getNoticeMatches(Long noticeId) {
+        return matches("notice_id", noticeId, MatchCandidates::getItemId);
+    }
+
+    //  同一对可能两侧各有一行,分数相同,按对方id去重
+    private List<MatchCandidates> matches(String column, Long id, Function<MatchCandidates, Long> counterpart) {
+        QueryWrapper<MatchCandidates> qw = new QueryWrapper<>();
+        qw.eq(column, id)
+                .orderByDesc("score")
+                .last("LIMIT " + (topN * 2));
+        Map<Long, MatchCandidates> unique = new LinkedHashMap<>();
+        matchCandidatesDAO.selectList(qw).forEach(match -> unique.putIfAbsent(counterpart.apply(match), match));
+        return unique.values().stream().limit(topN).toList();
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", (long) executor.getQueue().size());
+        stats.put("processed", processed.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("candidatesScored", candidatesScored.sum());
+        stats.put("matchesWritten", matchesWritten.sum());
+        return stats;
+    }
+
+    private void enqueue(String type, Long id) {
+        if (id == null) {
+            return;
+        }
+        String key = type + ":" + id;
+        if (!queued.add(key)) {
+            coalesced.increment();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+//              先出队再处理,处理期间的新写入会重新排队
+                queued.remove(key);
+                try {
+                    process(type, id);
+                    processed.increment();
+                } catch (Exception e) {
+                    log.warn("匹配{}失败: {}", key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(key);
+            dropped.increment();
+        }
+    }
+
+    private void process(String type, Long id) {
+        boolean isItem = ITEM.equals(type);
+        String column = isItem ? "item_id" : "notice_id";
+        MatchRecord record = isItem ? matchDAO.selectItem(id) : matchDAO.selectNotice(id);
+//      已删除、已认领或已处理:含它的配对两侧都不该再出现
+        if (record == null) {
+            QueryWrapper<MatchCandidates> qw = new QueryWrapper<>();
+            qw.eq(column, id);
+            matchCandidatesDAO.delete(qw);
+            return;
+        }
+        List<MatchRecord> candidates = candidates(record, isItem);
+        candidatesScored.add(candidates.size());
+        Set<String> recordTerms = terms(record);
+        List<MatchCandidates> matches = new ArrayList<>();
+        for (MatchRecord candidate : candidates) {
+            double text = dice(recordTerms, terms(candidate));
+            double place = placeScore(record.getPlaceId(), candidate.getPlaceId());
+            double time = timeScore(record.getEventTime(), candidate.getEventTime());
+            double score = textWeight * text + placeWeight * place + timeWeight * time;
+            if (score < minScore) {
+                continue;
+            }
+            matches.add(MatchCandidates.builder()
+                    .itemId(isItem ? record.getId() : candidate.getId())
+                    .noticeId(isItem ? candidate.getId() : record.getId())
+                    .side(type)
+                    .score(score)
+                    .textScore(text)
+                    .placeScore(place)
+                    .timeScore(time)
+                    .build());
+        }
+        matches.sort(Comparator.comparingDouble(MatchCandidates::getScore).reversed());
+        List<MatchCandidates> top = matches.subList(0, Math.min(topN, matches.size()));
+//      只删本侧这次没再入选的配对,对方侧写入的行留给对方重算时维护
+        QueryWrapper<MatchCandidates> qw = new QueryWrapper<>();
+        qw.eq(column, id).eq("side", type);
+        if (!top.isEmpty()) {
+            qw.notIn(isItem ? "notice_id" : "item_id",
+                    top.stream().map(isItem ? MatchCandidates::getNoticeId : MatchCandidates::getItemId).toList());
+        }
+        matchCandidatesDAO.delete(qw);
+        if (!top.isEmpty()) {
+            matchCandidatesDAO.upsertBatch(top);
+            matchesWritten.add(top.size());
+        }
+    }
+
+    //  地点块 + 文本块,按id去重
+    private List<MatchRecord> candidates(MatchRecord record, boolean isItem) {
+        Map<Long, MatchRecord> candidates = new LinkedHashMap<>();
+        LocalDateTime anchor = record.getEventTime() == null ? LocalDateTime.now() : record.getEventTime();
+        LocalDateTime from = anchor.minusDays(windowDays);
+        LocalDateTime to = anchor.plusDays(windowDays);
+        if (record.getPlaceId() != null) {
+            List<MatchRecord> block = isItem
+                    ? matchDAO.selectNoticesInBlock(record.getPlaceId(), from, to, blockLimit)
+                    : matchDAO.selectItemsInBlock(record.getPlaceId(), from, to, blockLimit);
+            block.forEach(candidate -> candidates.putIfAbsent(candidate.getId(), candidate));
+        }
+        String query = StringUtils.joinWith(" ", StringUtils.defaultString(record.getTitle()),
+                StringUtils.defaultString(record.getDescription()));
+        List<Long> textIds = searchService.search(query, isItem ? NOTICE : ITEM, textCandidates).stream()
+                .map(SearchHit::getId)
+                .filter(candidateId -> !candidates.containsKey(candidateId))
+                .toList();
+        if (!textIds.isEmpty()) {
+            List<MatchRecord> block = isItem ? matchDAO.selectNoticesByIds(textIds) : matchDAO.selectItemsByIds(textIds);
+            block.stream()
+                    .filter(candidate -> candidate.getEventTime() == null
+                            || (!candidate.getEventTime().isBefore(from) && candidate.getEventTime().isBefore(to)))
+                    .forEach(candidate -> candidates.putIfAbsent(candidate.getId(), candidate));
+        }
+        return new ArrayList<>(candidates.values());
+    }
+
+    private static Set<String> terms(MatchRecord record) {
+        Set<String> terms = new HashSet<>();
+        CjkBigramTokenizer.tokenize(record.getTitle()).forEach(token -> terms.add(token.term()));
+        CjkBigramTokenizer.tokenize(record.getDescription()).forEach(token -> terms.add(token.term()));
+        return terms;
+    }
+
+    //  Dice系数 2|A∩B| / (|A|+|B|)
+    private static double dice(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int common = 0;
+        for (String term : a) {
+            if (b.contains(term)) {
+                common++;
+            }
+        }
+        return 2.0 * common / (a.size() + b.size());
+    }
+
+    //  同一地点1分,不同地点0分,有一方没填地点时不确定,给0.5
+    private static double placeScore(Long a, Long b) {
+        if (a == null || b == null) {
+            return 0.5;
+        }
+        return a.equals(b) ? 1 : 0;
+    }
+
+    //  时间差在窗口内线性衰减
+    private double timeScore(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return 0.5;
+        }
+        double hours = Math.abs(Duration.between(a, b).toHours());
+        return Math.max(0, 1 - hours / (windowDays * 24.0));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
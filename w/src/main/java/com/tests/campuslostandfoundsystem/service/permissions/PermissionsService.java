@@ -2,7 +2,15 @@ package com.tests.campuslostandfoundsystem.service.permissions;
 
 import com.tests.campuslostandfoundsystem.entity.permission.Permissions;
 import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.List;
+
 public interface PermissionsService extends IService<Permissions>{
+//  给角色授予权限,继承该角色的角色同时获得
+    void grantToRole(Long roleId, Long permissionId);
 
+    void revokeFromRole(Long roleId, Long permissionId);
 
+//  直接授予该角色的权限(不含继承)
+    List<Permissions> getDirectPermissions(Long roleId);
 }
@@ -1,11 +1,96 @@
 package com.tests.campuslostandfoundsystem.service.permissions;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.RolePermissionsDAO;
+import com.tests.campuslostandfoundsystem.dao.RolesDAO;
+import com.tests.campuslostandfoundsystem.entity.permission.RolePermissions;
+import com.tests.campuslostandfoundsystem.service.security.AuthorityResolver;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.dao.PermissionsDAO;
 import com.tests.campuslostandfoundsystem.entity.permission.Permissions;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.Serializable;
+import java.util.List;
 
 @Service
+@RequiredArgsConstructor
 public class PermissionsServiceImpl extends ServiceImpl<PermissionsDAO, Permissions> implements PermissionsService{
+    private final AuthorityResolver authorityResolver;
+    private final RolePermissionsDAO rolePermissionsDAO;
+    private final RolesDAO rolesDAO;
+
+//  变更后重建角色闭包,所有用户的权限缓存作废
+    @Override
+    public boolean save(Permissions entity) {
+        boolean saved = super.save(entity);
+        authorityResolver.invalidateAll();
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(Permissions entity) {
+        boolean updated = super.updateById(entity);
+        authorityResolver.invalidateAll();
+        return updated;
+    }
+
+//  连同该权限的授权一起删除
+    @Transactional
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        rolePermissionsDAO.delete(new QueryWrapper<RolePermissions>().eq("permission_id", id));
+        authorityResolver.invalidateAll();
+        return removed;
+    }
+
+    @Operation(summary = "给角色授予权限")
+    @Transactional
+    @Override
+    public void grantToRole(Long roleId, Long permissionId) {
+        if (rolesDAO.selectById(roleId) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "角色不存在: " + roleId);
+        }
+        if (this.getById(permissionId) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "权限不存在: " + permissionId);
+        }
+        QueryWrapper<RolePermissions> qw = new QueryWrapper<>();
+        qw.eq("role_id", roleId).eq("permission_id", permissionId);
+        if (rolePermissionsDAO.selectCount(qw) > 0) {
+            return;
+        }
+        rolePermissionsDAO.insert(RolePermissions.builder()
+                .roleId(roleId)
+                .permissionId(permissionId)
+                .build());
+        authorityResolver.invalidateAll();
+    }
+
+    @Operation(summary = "收回角色的权限")
+    @Transactional
+    @Override
+    public void revokeFromRole(Long roleId, Long permissionId) {
+        QueryWrapper<RolePermissions> qw = new QueryWrapper<>();
+        qw.eq("role_id", roleId).eq("permission_id", permissionId);
+        if (rolePermissionsDAO.delete(qw) > 0) {
+            authorityResolver.invalidateAll();
+        }
+    }
 
+    @Operation(summary = "角色直接拥有的权限")
+    @Override
+    public List<Permissions> getDirectPermissions(Long roleId) {
+        List<Object> permissionIds = rolePermissionsDAO.selectObjs(new QueryWrapper<RolePermissions>()
+                .eq("role_id", roleId).select("permission_id"));
+        if (permissionIds.isEmpty()) {
+            return List.of();
+        }
+        return this.list(new QueryWrapper<Permissions>().in("id", permissionIds).eq("is_deleted", 0));
+    }
 }
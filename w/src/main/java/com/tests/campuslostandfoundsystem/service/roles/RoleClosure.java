@@ -0,0 +1,109 @@
+package com.tests.campuslostandfoundsystem.service.roles;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 角色继承的传递闭包,构建后只读
+ * 每个角色预先算好它包含的全部角色(含自身)和全部权限,解析时只查表不遍历图
+ */
+public final class RoleClosure {
+    public static final RoleClosure EMPTY = new RoleClosure(Map.of(), Map.of(), Map.of());
+
+    //  角色名 -> 包含的全部角色名(含自身)
+    private final Map<String, Set<String>> effectiveRoles;
+    //  角色名 -> 全部权限名(含继承的)
+    private final Map<String, Set<String>> effectivePermissions;
+    //  角色名 -> 角色id
+    private final Map<String, Long> roleIds;
+
+    private RoleClosure(Map<String, Set<String>> effectiveRoles,
+                        Map<String, Set<String>> effectivePermissions,
+                        Map<String, Long> roleIds) {
+        this.effectiveRoles = effectiveRoles;
+        this.effectivePermissions = effectivePermissions;
+        this.roleIds = roleIds;
+    }
+
+    /**
+     * @param roleNames   角色id -> 角色名
+     * @param children    父角色id -> 直接子角色id
+     * @param permissions 角色id -> 直接授予的权限名
+     */
+    public static RoleClosure build(Map<Long, String> roleNames,
+                                    Map<Long, List<Long>> children,
+                                    Map<Long, List<String>> permissions) {
+        Map<String, Set<String>> effectiveRoles = new HashMap<>();
+        Map<String, Set<String>> effectivePermissions = new HashMap<>();
+        Map<String, Long> roleIds = new HashMap<>();
+        for (Map.Entry<Long, String> role : roleNames.entrySet()) {
+            Set<String> roles = new LinkedHashSet<>();
+            Set<String> granted = new LinkedHashSet<>();
+//          迭代DFS,visited保证数据里即使有环也能结束
+            Set<Long> visited = new LinkedHashSet<>();
+            Deque<Long> stack = new ArrayDeque<>();
+            stack.push(role.getKey());
+            while (!stack.isEmpty()) {
+                Long roleId = stack.pop();
+                String name = roleNames.get(roleId);
+                if (name == null || !visited.add(roleId)) {
+                    continue;
+                }
+                roles.add(name);
+                granted.addAll(permissions.getOrDefault(roleId, List.of()));
+                for (Long child : children.getOrDefault(roleId, List.of())) {
+                    stack.push(child);
+                }
+            }
+            effectiveRoles.put(role.getValue(), Set.copyOf(roles));
+            effectivePermissions.put(role.getValue(), Set.copyOf(granted));
+            roleIds.put(role.getValue(), role.getKey());
+        }
+        return new RoleClosure(Map.copyOf(effectiveRoles), Map.copyOf(effectivePermissions), Map.copyOf(roleIds));
+    }
+
+    //  一组直接角色展开后的全部角色名
+    public Set<String> expandRoles(Collection<String> directRoles) {
+        Set<String> roles = new LinkedHashSet<>();
+        for (String role : directRoles) {
+            roles.addAll(effectiveRoles.getOrDefault(role, Set.of(role)));
+        }
+        return roles;
+    }
+
+    //  一组直接角色拥有的全部权限名
+    public Set<String> expandPermissions(Collection<String> directRoles) {
+        Set<String> granted = new LinkedHashSet<>();
+        for (String role : directRoles) {
+            granted.addAll(effectivePermissions.getOrDefault(role, Set.of()));
+        }
+        return granted;
+    }
+
+    //  parent是否(直接或间接)包含child,parent等于child时也返回true
+    public boolean includes(String parent, String child) {
+        return effectiveRoles.getOrDefault(parent, Set.of(parent)).contains(child);
+    }
+
+    public Set<String> getEffectiveRoles(String role) {
+        return effectiveRoles.getOrDefault(role, Set.of());
+    }
+
+    public Set<String> getEffectivePermissions(String role) {
+        return effectivePermissions.getOrDefault(role, Set.of());
+    }
+
+    public Long getRoleId(String role) {
+        return roleIds.get(role);
+    }
+
+    public int size() {
+        return effectiveRoles.size();
+    }
+}
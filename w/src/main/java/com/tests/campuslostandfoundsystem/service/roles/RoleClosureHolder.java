@@ -0,0 +1,76 @@
+package com.tests.campuslostandfoundsystem.service.roles;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.PermissionsDAO;
+import com.tests.campuslostandfoundsystem.dao.RoleInheritanceDAO;
+import com.tests.campuslostandfoundsystem.dao.RolePermissionsDAO;
+import com.tests.campuslostandfoundsystem.dao.RolesDAO;
+import com.tests.campuslostandfoundsystem.entity.permission.Permissions;
+import com.tests.campuslostandfoundsystem.entity.permission.RolePermissions;
+import com.tests.campuslostandfoundsystem.entity.roles.RoleInheritance;
+import com.tests.campuslostandfoundsystem.entity.roles.Roles;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 持有当前的角色闭包快照
+ * 角色、继承关系或授权变更后整体重建,构建完成后原子替换,读取方永远看到完整的一份
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoleClosureHolder {
+    private final RolesDAO rolesDAO;
+    private final PermissionsDAO permissionsDAO;
+    private final RoleInheritanceDAO roleInheritanceDAO;
+    private final RolePermissionsDAO rolePermissionsDAO;
+
+    private final AtomicReference<RoleClosure> current = new AtomicReference<>(RoleClosure.EMPTY);
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("角色闭包加载失败,暂按无继承处理: {}", e.getMessage());
+        }
+    }
+
+    public RoleClosure get() {
+        return current.get();
+    }
+
+    //  从库里读取角色、继承关系和授权,重建快照;四次全表查询,只在变更时执行
+    public synchronized RoleClosure reload() {
+        Map<Long, String> roleNames = new HashMap<>();
+        for (Roles role : rolesDAO.selectList(new QueryWrapper<Roles>().eq("is_deleted", 0))) {
+            roleNames.put(role.getId(), role.getRoleName());
+        }
+        Map<Long, String> permissionNames = new HashMap<>();
+        for (Permissions permission : permissionsDAO.selectList(new QueryWrapper<Permissions>().eq("is_deleted", 0))) {
+            permissionNames.put(permission.getId(), permission.getPermissionName());
+        }
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (RoleInheritance edge : roleInheritanceDAO.selectList(null)) {
+            children.computeIfAbsent(edge.getParentRoleId(), id -> new ArrayList<>()).add(edge.getChildRoleId());
+        }
+        Map<Long, List<String>> permissions = new HashMap<>();
+        for (RolePermissions grant : rolePermissionsDAO.selectList(null)) {
+            String name = permissionNames.get(grant.getPermissionId());
+            if (name != null) {
+                permissions.computeIfAbsent(grant.getRoleId(), id -> new ArrayList<>()).add(name);
+            }
+        }
+        RoleClosure closure = RoleClosure.build(roleNames, children, permissions);
+        current.set(closure);
+        return closure;
+    }
+}
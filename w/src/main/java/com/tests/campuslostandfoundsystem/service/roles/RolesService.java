@@ -2,7 +2,18 @@ package com.tests.campuslostandfoundsystem.service.roles;
 
 import com.tests.campuslostandfoundsystem.entity.roles.Roles;
 import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.Set;
+
 public interface RolesService extends IService<Roles>{
+//  parent继承child的全部角色和权限;会形成环时拒绝
+    void addInheritance(Long parentRoleId, Long childRoleId);
+
+    void removeInheritance(Long parentRoleId, Long childRoleId);
 
+//  展开继承后该角色包含的全部角色(含自身)
+    Set<String> getEffectiveRoles(Long roleId);
 
+//  展开继承后该角色拥有的全部权限
+    Set<String> getEffectivePermissions(Long roleId);
 }
@@ -1,11 +1,142 @@
 package com.tests.campuslostandfoundsystem.service.roles;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.RoleInheritanceDAO;
+import com.tests.campuslostandfoundsystem.dao.RolePermissionsDAO;
+import com.tests.campuslostandfoundsystem.entity.permission.RolePermissions;
+import com.tests.campuslostandfoundsystem.entity.roles.RoleInheritance;
+import com.tests.campuslostandfoundsystem.service.security.AuthorityResolver;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.dao.RolesDAO;
 import com.tests.campuslostandfoundsystem.entity.roles.Roles;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
+@RequiredArgsConstructor
 public class RolesServiceImpl extends ServiceImpl<RolesDAO, Roles> implements RolesService{
+    private final AuthorityResolver authorityResolver;
+    private final RoleClosureHolder roleClosureHolder;
+    private final RoleInheritanceDAO roleInheritanceDAO;
+    private final RolePermissionsDAO rolePermissionsDAO;
+
+//  变更后重建角色闭包,所有用户的权限缓存作废
+    @Override
+    public boolean save(Roles entity) {
+        boolean saved = super.save(entity);
+        authorityResolver.invalidateAll();
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(Roles entity) {
+        boolean updated = super.updateById(entity);
+        authorityResolver.invalidateAll();
+        return updated;
+    }
+
+//  连同该角色的继承关系和授权一起删除
+    @Transactional
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        roleInheritanceDAO.delete(new QueryWrapper<RoleInheritance>()
+                .eq("parent_role_id", id).or().eq("child_role_id", id));
+        rolePermissionsDAO.delete(new QueryWrapper<RolePermissions>().eq("role_id", id));
+        authorityResolver.invalidateAll();
+        return removed;
+    }
+
+    @Operation(summary = "添加角色继承关系")
+    @Transactional
+    @Override
+    public void addInheritance(Long parentRoleId, Long childRoleId) {
+//      先在库里加锁再检查:闭包快照提交后才重建,并发的 A->B 和 B->A 靠它挡不住
+        roleInheritanceDAO.lockRoles();
+        Roles parent = requireRole(parentRoleId);
+        Roles child = requireRole(childRoleId);
+//      child已经包含parent时再让parent包含child就成环了(含parent等于child)
+        if (reachable(roleInheritanceDAO.selectAllForUpdate(), childRoleId, parentRoleId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "角色继承会形成环: " + parent.getRoleName() + " -> " + child.getRoleName());
+        }
+        QueryWrapper<RoleInheritance> qw = new QueryWrapper<>();
+        qw.eq("parent_role_id", parentRoleId).eq("child_role_id", childRoleId);
+        if (roleInheritanceDAO.selectCount(qw) > 0) {
+            return;
+        }
+        roleInheritanceDAO.insert(RoleInheritance.builder()
+                .parentRoleId(parentRoleId)
+                .childRoleId(childRoleId)
+                .build());
+        authorityResolver.invalidateAll();
+    }
+
+    @Operation(summary = "删除角色继承关系")
+    @Transactional
+    @Override
+    public void removeInheritance(Long parentRoleId, Long childRoleId) {
+//      和addInheritance用同一把库锁,删除不会和并发的环检查交错,多节点部署时同样有效
+        roleInheritanceDAO.lockRoles();
+        QueryWrapper<RoleInheritance> qw = new QueryWrapper<>();
+        qw.eq("parent_role_id", parentRoleId).eq("child_role_id", childRoleId);
+        if (roleInheritanceDAO.delete(qw) > 0) {
+            authorityResolver.invalidateAll();
+        }
+    }
+
+    @Operation(summary = "角色展开后的全部角色")
+    @Override
+    public Set<String> getEffectiveRoles(Long roleId) {
+        return roleClosureHolder.get().getEffectiveRoles(requireRole(roleId).getRoleName());
+    }
+
+    @Operation(summary = "角色展开后的全部权限")
+    @Override
+    public Set<String> getEffectivePermissions(Long roleId) {
+        return roleClosureHolder.get().getEffectivePermissions(requireRole(roleId).getRoleName());
+    }
+
+    //  沿 父 -> 子 方向从from出发能否走到to
+    private static boolean reachable(List<RoleInheritance> edges, Long from, Long to) {
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (RoleInheritance edge : edges) {
+            children.computeIfAbsent(edge.getParentRoleId(), k -> new ArrayList<>()).add(edge.getChildRoleId());
+        }
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            Long current = queue.poll();
+            if (current.equals(to)) {
+                return true;
+            }
+            if (visited.add(current)) {
+                queue.addAll(children.getOrDefault(current, List.of()));
+            }
+        }
+        return false;
+    }
 
+    private Roles requireRole(Long roleId) {
+        Roles role = this.getById(roleId);
+        if (role == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "角色不存在: " + roleId);
+        }
+        return role;
+    }
 }
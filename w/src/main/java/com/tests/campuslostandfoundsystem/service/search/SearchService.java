@@ -0,0 +1,14 @@
+package com.tests.campuslostandfoundsystem.service.search;
+
+import com.tests.campuslostandfoundsystem.entity.search.SearchHit;
+
+import java.util.List;
+import java.util.Map;
+
+public interface SearchService {
+    public List<SearchHit> search(String query, String type, Integer limit);
+    public void itemChanged(Long id);
+    public void noticeChanged(Long id);
+    public void rebuild();
+    public Map<String, Long> getStats();
+}
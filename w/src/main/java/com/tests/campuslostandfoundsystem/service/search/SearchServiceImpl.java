@@ -0,0 +1,319 @@
+package com.tests.campuslostandfoundsystem.service.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.ItemsDAO;
+import com.tests.campuslostandfoundsystem.dao.LostPropertyNoticesDAO;
+import com.tests.campuslostandfoundsystem.entity.items.Items;
+import com.tests.campuslostandfoundsystem.entity.notice.LostPropertyNotices;
+import com.tests.campuslostandfoundsystem.entity.search.SearchHit;
+import com.tests.campuslostandfoundsystem.utils.search.CjkBigramTokenizer;
+import com.tests.campuslostandfoundsystem.utils.search.Highlighter;
+import com.tests.campuslostandfoundsystem.utils.search.InvertedIndex;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 失物、寻物启事的全文检索
+ * 两类文档放在同一个进程内倒排索引里(键为 item:id / notice:id),标题、正文原文一起存,查询和高亮都不回MySQL;
+ * 写入提交后按id回表读一次最新数据更新索引,并广播给其他节点各自更新;查不到(已删除)时从索引移除。
+ * 启动时在后台全量构建,首次构建完成前查询返回503;也可以手动触发重建,重建期间沿用旧索引,变更记下来,换上新索引前补上
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchServiceImpl implements SearchService, MessageListener {
+    public static final String CHANNEL = "search:index";
+    private static final String ITEM = "item";
+    private static final String NOTICE = "notice";
+    private static final Map<String, Integer> FIELD_WEIGHTS = Map.of("title", 3, "description", 1);
+
+    private final ItemsDAO itemsDAO;
+    private final LostPropertyNoticesDAO lostPropertyNoticesDAO;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${search.default-limit:20}")
+    private int defaultLimit;
+    @Value("${search.max-limit:100}")
+    private int maxLimit;
+    @Value("${search.snippet-length:80}")
+    private int snippetLength;
+    @Value("${search.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+
+    //  广播消息里带上本节点id,收到自己发的消息时跳过
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile InvertedIndex index = new InvertedIndex(FIELD_WEIGHTS);
+    //  重建期间发生变更的文档键
+    private Set<String> changedDuringRebuild;
+    private final Object lock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile boolean ready;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        rebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @Operation(summary = "全文检索失物和寻物启事")
+    @Override
+    public List<SearchHit> search(String query, String type, Integer limit) {
+        if (StringUtils.isBlank(query)) {
+            return List.of();
+        }
+//      首次构建完成之前索引是空的,返回空列表会被当成"没有匹配",明确返回503让调用方稍后重试
+        if (!ready) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "检索索引正在构建,请稍后再试");
+        }
+        queries.increment();
+        int size = limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+        Predicate<InvertedIndex.IndexedDocument> filter = StringUtils.isBlank(type)
+                ? document -> true
+                : document -> document.key().startsWith(type + ":");
+        Set<String> queryTerms = new LinkedHashSet<>();
+        CjkBigramTokenizer.tokenize(query).forEach(token -> queryTerms.add(token.term()));
+        return index.search(query, size, filter).stream().map(hit -> {
+            InvertedIndex.IndexedDocument document = hit.document();
+            String key = document.key();
+            String title = document.fields().get("title");
+            return new SearchHit(
+                    key.substring(0, key.indexOf(':')),
+                    Long.valueOf(key.substring(key.indexOf(':') + 1)),
+                    hit.score(),
+                    title,
+                    Highlighter.highlight(title, queryTerms, 0),
+                    Highlighter.highlight(document.fields().get("description"), queryTerms, snippetLength));
+        }).toList();
+    }
+
+    @Override
+    public void itemChanged(Long id) {
+        changed(ITEM, id);
+    }
+
+    @Override
+    public void noticeChanged(Long id) {
+        changed(NOTICE, id);
+    }
+
+    @Operation(summary = "后台全量重建索引")
+    @Override
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "索引正在重建");
+        }
+        try {
+            rebuildExecutor.execute(this::doRebuild);
+        } catch (Exception e) {
+            rebuilding.set(false);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "索引重建提交失败", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        InvertedIndex current = index;
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("ready", ready ? 1L : 0L);
+        stats.put("rebuilding", rebuilding.get() ? 1L : 0L);
+        stats.put("documents", (long) current.size());
+        stats.put("terms", (long) current.termCount());
+        stats.put("queries", queries.sum());
+        stats.put("updates", updates.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        return stats;
+    }
+
+    //  消息格式: nodeId|type|id
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length != 3) {
+            log.warn("无法解析的索引更新消息");
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            refresh(parts[1], Long.valueOf(parts[2]));
+        } catch (Exception e) {
+            log.warn("索引更新失败 {}:{}: {}", parts[1], parts[2], e.getMessage());
+        }
+    }
+
+    //  在事务中调用时等提交后再回表,否则读到的是旧数据
+    private void changed(String type, Long id) {
+        if (id == null) {
+            return;
+        }
+        Runnable action = () -> {
+            try {
+                refresh(type, id);
+            } catch (Exception e) {
+                log.warn("索引更新失败 {}:{}: {}", type, id, e.getMessage());
+            }
+            try {
+                stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + type + "|" + id);
+            } catch (Exception e) {
+                log.warn("索引更新广播失败: {}", e.getMessage());
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void refresh(String type, Long id) {
+        Map<String, String> fields = load(type, id);
+        synchronized (lock) {
+            apply(index, type + ":" + id, fields);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(type + ":" + id);
+            }
+        }
+        updates.increment();
+    }
+
+    //  按id回表;逻辑删除的记录查不到,返回null
+    private Map<String, String> load(String type, Long id) {
+        if (ITEM.equals(type)) {
+            Items item = itemsDAO.selectById(id);
+            return item == null ? null : itemFields(item);
+        }
+        if (NOTICE.equals(type)) {
+            LostPropertyNotices notice = lostPropertyNoticesDAO.selectById(id);
+            return notice == null ? null : noticeFields(notice);
+        }
+        throw new IllegalArgumentException("未知的文档类型: " + type);
+    }
+
+    private static void apply(InvertedIndex target, String key, Map<String, String> fields) {
+        if (fields == null) {
+            target.remove(key);
+        } else {
+            target.upsert(key, fields);
+        }
+    }
+
+    private void doRebuild() {
+        try {
+            synchronized (lock) {
+                changedDuringRebuild = new LinkedHashSet<>();
+            }
+            InvertedIndex fresh = new InvertedIndex(FIELD_WEIGHTS);
+            long lastId = 0;
+            while (true) {
+                QueryWrapper<Items> qw = new QueryWrapper<>();
+                qw.select("id", "title", "description")
+                        .eq("is_deleted", 0)
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("LIMIT " + rebuildBatchSize);
+                List<Items> batch = itemsDAO.selectList(qw);
+                batch.forEach(item -> fresh.upsert(ITEM + ":" + item.getId(), itemFields(item)));
+                if (batch.size() < rebuildBatchSize) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            lastId = 0;
+            while (true) {
+                QueryWrapper<LostPropertyNotices> qw = new QueryWrapper<>();
+                qw.select("id", "title", "description")
+                        .eq("is_deleted", 0)
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("LIMIT " + rebuildBatchSize);
+                List<LostPropertyNotices> batch = lostPropertyNoticesDAO.selectList(qw);
+                batch.forEach(notice -> fresh.upsert(NOTICE + ":" + notice.getId(), noticeFields(notice)));
+                if (batch.size() < rebuildBatchSize) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+//          扫描期间变更过的文档按最新数据补一遍再换上
+            synchronized (lock) {
+                for (String key : changedDuringRebuild) {
+                    int separator = key.indexOf(':');
+                    apply(fresh, key, load(key.substring(0, separator), Long.valueOf(key.substring(separator + 1))));
+                }
+                index = fresh;
+            }
+            ready = true;
+            rebuilds.increment();
+            log.info("检索索引重建完成,共{}个文档", fresh.size());
+        } catch (Exception e) {
+            log.warn("检索索引重建失败,沿用旧索引: {}", e.getMessage());
+        } finally {
+            synchronized (lock) {
+                changedDuringRebuild = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    private static Map<String, String> itemFields(Items item) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("title", item.getTitle());
+        fields.put("description", item.getDescription());
+        return fields;
+    }
+
+    private static Map<String, String> noticeFields(LostPropertyNotices notice) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("title", notice.getTitle());
+        fields.put("description", notice.getDescription());
+        return fields;
+    }
+}
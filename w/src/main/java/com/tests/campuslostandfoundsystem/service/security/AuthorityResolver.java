@@ -0,0 +1,233 @@
+package com.tests.campuslostandfoundsystem.service.security;
+
+import com.tests.campuslostandfoundsystem.dao.AuthorityDAO;
+import com.tests.campuslostandfoundsystem.entity.user.Profiles;
+import com.tests.campuslostandfoundsystem.entity.user.UserAuthorities;
+import com.tests.campuslostandfoundsystem.entity.user.UserAuthorityRow;
+import com.tests.campuslostandfoundsystem.service.roles.RoleClosure;
+import com.tests.campuslostandfoundsystem.service.roles.RoleClosureHolder;
+import com.tests.campuslostandfoundsystem.utils.cache.BoundedLocalCache;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户权限解析
+ * 一次联表查出账号、身份和直接角色,再用角色闭包快照展开继承的角色和权限,按userId缓存在本地;
+ * 缓存条目带着加载时的全局版本和用户版本,版本变化后条目作废。角色/权限/继承/授权变更时重建闭包并升全局版本,身份/账号变更升用户版本,
+ * 变更通过redis广播给其他节点,广播丢失时由缓存TTL兜底
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuthorityResolver implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "auth:authority";
+
+    private final AuthorityDAO authorityDAO;
+    private final PermissionRegistry permissionRegistry;
+    private final RoleClosureHolder roleClosureHolder;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${auth.authority-cache.max-size:10000}")
+    private int maxSize;
+    @Value("${auth.authority-cache.ttl-millis:600000}")
+    private long ttlMillis;
+
+    private BoundedLocalCache<String, CacheEntry> cache;
+    private final AtomicLong globalVersion = new AtomicLong();
+    //  userId -> 用户版本,没有记录的为0
+    private final Map<String, Long> userVersions = new ConcurrentHashMap<>();
+    //  所有用户版本变更的总次数,按用户名加载时事先不知道userId,用它判断加载期间有没有变更
+    private final AtomicLong userBumps = new AtomicLong();
+
+    private record CacheEntry(UserAuthorities authorities, long globalVersion, long userVersion) {
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedLocalCache<>(maxSize, ttlMillis);
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    @Operation(summary = "解析用户权限,用户不存在时返回null")
+    public UserAuthorities resolve(String userId) {
+        CacheEntry entry = cache.get(userId);
+        if (entry != null && isCurrent(userId, entry)) {
+            return entry.authorities();
+        }
+//      先取版本再查库,查询期间发生的变更会让这次写入的条目在下次读取时作废
+        long global = globalVersion.get();
+        long user = userVersions.getOrDefault(userId, 0L);
+        UserAuthorities authorities = load(userId);
+        if (authorities == null) {
+            cache.invalidate(userId);
+            return null;
+        }
+        cache.put(userId, new CacheEntry(authorities, global, user));
+        return authorities;
+    }
+
+    @Operation(summary = "按用户名解析用户权限,用户不存在时返回null")
+    public UserAuthorities resolveByUsername(String username) {
+        long global = globalVersion.get();
+        long bumps = userBumps.get();
+        UserAuthorities authorities = build(authorityDAO.selectUserAuthoritiesByUsername(username));
+        if (authorities == null) {
+            return null;
+        }
+//      加载期间没有任何用户版本变更,当前的用户版本就是加载前的版本,可以放心缓存
+        String userId = authorities.getUserId();
+        long user = userVersions.getOrDefault(userId, 0L);
+        if (userBumps.get() == bumps) {
+            cache.put(userId, new CacheEntry(authorities, global, user));
+        }
+        return authorities;
+    }
+
+    //  鉴权用的权限位图,用户不存在时返回null
+    public long[] resolveAuthorityBits(String userId) {
+        UserAuthorities authorities = resolve(userId);
+        return authorities == null ? null : authorities.getAuthorityBits();
+    }
+
+    //  身份、账号信息变更
+    public void invalidateUser(String userId) {
+        afterCommit(() -> {
+            bumpUser(userId);
+            publish("u|" + userId);
+        });
+    }
+
+    //  角色、权限、继承或授权关系变更
+    public void invalidateAll() {
+        afterCommit(() -> {
+            bumpGlobal();
+            publish("g");
+        });
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>(cache.getStats());
+        stats.put("globalVersion", globalVersion.get());
+        stats.put("registeredAuthorities", (long) permissionRegistry.size());
+        return stats;
+    }
+
+    //  消息格式: u|userId 或 g
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if ("g".equals(body)) {
+            bumpGlobal();
+        } else if (body.startsWith("u|")) {
+            bumpUser(body.substring(2));
+        } else {
+            log.warn("无法解析的权限失效消息: {}", body);
+        }
+    }
+
+    //  在事务中调用时等提交后再失效,否则其他节点可能在提交前就重新加载到旧数据
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private boolean isCurrent(String userId, CacheEntry entry) {
+        return entry.globalVersion() == globalVersion.get()
+                && entry.userVersion() == userVersions.getOrDefault(userId, 0L);
+    }
+
+    private void bumpUser(String userId) {
+        userVersions.merge(userId, 1L, Long::sum);
+        userBumps.incrementAndGet();
+        cache.invalidate(userId);
+    }
+
+    //  先换闭包再升版本,读到新版本的加载一定用的是新闭包
+    private void bumpGlobal() {
+        try {
+            roleClosureHolder.reload();
+        } catch (Exception e) {
+            log.warn("角色闭包重建失败,沿用旧快照: {}", e.getMessage());
+        }
+        globalVersion.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    //  本节点的版本已经更新,广播失败只影响其他节点,由TTL兜底
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("权限失效广播失败: {}", e.getMessage());
+        }
+    }
+
+    //  联表结果每个身份一行,直接角色经闭包展开
+    private UserAuthorities load(String userId) {
+        return build(authorityDAO.selectUserAuthorities(userId));
+    }
+
+    private UserAuthorities build(List<UserAuthorityRow> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return null;
+        }
+        Set<String> directRoles = new LinkedHashSet<>();
+        Map<String, Profiles> profiles = new LinkedHashMap<>();
+        for (UserAuthorityRow row : rows) {
+            if (row.getRoleName() != null) {
+                directRoles.add(row.getRoleName());
+            }
+            if (row.getProfileType() != null) {
+                profiles.computeIfAbsent(row.getProfileType(), type -> {
+                    Profiles profile = new Profiles();
+                    profile.setProfileType(type);
+                    profile.setProfileId(row.getProfileId());
+                    return profile;
+                });
+            }
+        }
+        RoleClosure closure = roleClosureHolder.get();
+        Set<String> roles = closure.expandRoles(directRoles);
+        Set<String> permissions = closure.expandPermissions(directRoles);
+        Set<String> authorityNames = new LinkedHashSet<>(roles);
+        authorityNames.addAll(permissions);
+        UserAuthorityRow first = rows.get(0);
+        return new UserAuthorities(
+                first.getUserId().toString(),
+                first.getUsername(),
+                first.getPassword(),
+                List.copyOf(roles),
+                List.copyOf(permissions),
+                List.copyOf(profiles.values()),
+                permissionRegistry.compile(authorityNames));
+    }
+}
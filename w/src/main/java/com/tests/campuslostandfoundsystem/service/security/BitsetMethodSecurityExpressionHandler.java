@@ -0,0 +1,47 @@
+package com.tests.campuslostandfoundsystem.service.security;
+
+import com.tests.campuslostandfoundsystem.entity.CustomsUserDetail;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * 把@PreAuthorize等表达式的根对象换成 BitsetSecurityExpressionRoot
+ * 位图来自 AuthorityResolver 的缓存,登录加载principal时已经编译好,鉴权时不再遍历权限集合
+ */
+public class BitsetMethodSecurityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+    //  表达式处理器在安全配置早期创建,解析器和登记表延迟获取
+    private final ObjectProvider<AuthorityResolver> authorityResolver;
+    private final ObjectProvider<PermissionRegistry> permissionRegistry;
+
+    public BitsetMethodSecurityExpressionHandler(ObjectProvider<AuthorityResolver> authorityResolver,
+                                                 ObjectProvider<PermissionRegistry> permissionRegistry) {
+        this.authorityResolver = authorityResolver;
+        this.permissionRegistry = permissionRegistry;
+    }
+
+    @Override
+    public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+        EvaluationContext context = super.createEvaluationContext(authentication, mi);
+        if (context instanceof StandardEvaluationContext standardContext
+                && standardContext.getRootObject().getValue() instanceof MethodSecurityExpressionOperations root) {
+            standardContext.setRootObject(new BitsetSecurityExpressionRoot(
+                    root, permissionRegistry.getObject(), authorityBits(root.getAuthentication())));
+        }
+        return context;
+    }
+
+    private long[] authorityBits(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof CustomsUserDetail user)
+                || user.getUserId() == null) {
+            return null;
+        }
+        return authorityResolver.getObject().resolveAuthorityBits(user.getUserId());
+    }
+}
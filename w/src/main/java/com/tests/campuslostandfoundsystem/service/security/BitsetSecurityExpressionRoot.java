@@ -0,0 +1,123 @@
+package com.tests.campuslostandfoundsystem.service.security;
+
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+/**
+ * hasAuthority / hasAnyAuthority 按位图判断的表达式根
+ * 其余表达式交给Spring默认的根对象;拿不到位图时(非本系统的principal)也回退到默认的字符串匹配
+ */
+public class BitsetSecurityExpressionRoot implements MethodSecurityExpressionOperations {
+    private final MethodSecurityExpressionOperations delegate;
+    private final PermissionRegistry permissionRegistry;
+    private final long[] authorityBits;
+
+    public BitsetSecurityExpressionRoot(MethodSecurityExpressionOperations delegate,
+                                        PermissionRegistry permissionRegistry,
+                                        long[] authorityBits) {
+        this.delegate = delegate;
+        this.permissionRegistry = permissionRegistry;
+        this.authorityBits = authorityBits;
+    }
+
+    @Override
+    public boolean hasAuthority(String authority) {
+        if (authorityBits == null) {
+            return delegate.hasAuthority(authority);
+        }
+        return PermissionRegistry.test(authorityBits, permissionRegistry.indexOf(authority));
+    }
+
+    @Override
+    public boolean hasAnyAuthority(String... authorities) {
+        if (authorityBits == null) {
+            return delegate.hasAnyAuthority(authorities);
+        }
+        for (String authority : authorities) {
+            if (PermissionRegistry.test(authorityBits, permissionRegistry.indexOf(authority))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Authentication getAuthentication() {
+        return delegate.getAuthentication();
+    }
+
+    @Override
+    public boolean hasRole(String role) {
+        return delegate.hasRole(role);
+    }
+
+    @Override
+    public boolean hasAnyRole(String... roles) {
+        return delegate.hasAnyRole(roles);
+    }
+
+    @Override
+    public boolean permitAll() {
+        return delegate.permitAll();
+    }
+
+    @Override
+    public boolean denyAll() {
+        return delegate.denyAll();
+    }
+
+    @Override
+    public boolean isAnonymous() {
+        return delegate.isAnonymous();
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return delegate.isAuthenticated();
+    }
+
+    @Override
+    public boolean isRememberMe() {
+        return delegate.isRememberMe();
+    }
+
+    @Override
+    public boolean isFullyAuthenticated() {
+        return delegate.isFullyAuthenticated();
+    }
+
+    @Override
+    public boolean hasPermission(Object target, Object permission) {
+        return delegate.hasPermission(target, permission);
+    }
+
+    @Override
+    public boolean hasPermission(Object targetId, String targetType, Object permission) {
+        return delegate.hasPermission(targetId, targetType, permission);
+    }
+
+    @Override
+    public void setFilterObject(Object filterObject) {
+        delegate.setFilterObject(filterObject);
+    }
+
+    @Override
+    public Object getFilterObject() {
+        return delegate.getFilterObject();
+    }
+
+    @Override
+    public void setReturnObject(Object returnObject) {
+        delegate.setReturnObject(returnObject);
+    }
+
+    @Override
+    public Object getReturnObject() {
+        return delegate.getReturnObject();
+    }
+
+    @Override
+    public Object getThis() {
+        return delegate.getThis();
+    }
+}
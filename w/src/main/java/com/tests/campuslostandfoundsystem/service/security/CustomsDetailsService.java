@@ -1,72 +1,58 @@
 package com.tests.campuslostandfoundsystem.service.security;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.tests.campuslostandfoundsystem.dao.PermissionsDAO;
-import com.tests.campuslostandfoundsystem.dao.RolesDAO;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.tests.campuslostandfoundsystem.dao.UserDAO;
 import com.tests.campuslostandfoundsystem.entity.CustomsUserDetail;
 import com.tests.campuslostandfoundsystem.entity.enums.exception.UserResultCodes;
-import com.tests.campuslostandfoundsystem.entity.permission.Permissions;
-import com.tests.campuslostandfoundsystem.entity.roles.Roles;
-import com.tests.campuslostandfoundsystem.entity.user.Profiles;
+import com.tests.campuslostandfoundsystem.entity.user.UserAuthorities;
 import com.tests.campuslostandfoundsystem.entity.user.Users;
 import com.tests.campuslostandfoundsystem.exception.UserException;
-import com.tests.campuslostandfoundsystem.service.roles.RolesService;
-import com.tests.campuslostandfoundsystem.service.user.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
-
 @Service
 @RequiredArgsConstructor
-public class CustomsDetailsService implements UserDetailsService {
+public class CustomsDetailsService implements UserDetailsService, UserDetailsPasswordService {
+    private final AuthorityResolver authorityResolver;
     private final UserDAO userDAO;
-    private final RolesDAO  rolesDAO;
-    private final PermissionsDAO  permissionsDAO;
-    private final RolesService rolesService;
     @Operation(summary = "通过用户id获取信息")
     @Override
     public UserDetails loadUserByUsername(String userId) throws UsernameNotFoundException {
         try{
-//          查user信息
-            QueryWrapper<Users> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("id",userId)
-                        .eq("is_delete",0);
-            Users user = userDAO.selectOne(queryWrapper);
-            if(user == null){
+//          账号、角色、权限、身份一次联表查出,命中缓存时不查库
+            UserAuthorities authorities = authorityResolver.resolve(userId);
+            if(authorities == null){
                 throw new UserException(UserResultCodes.USER_NOT_FOUND,"用户不存在");
             }
-//          查新role信息
-            QueryWrapper<Roles> qwRoles = new QueryWrapper<>();
-            qwRoles.eq("is_delete",0).select("role_name");
-            List<Objects> ojRoleList = rolesDAO.selectObjs(qwRoles);
-            List<String> roleList = ojRoleList.stream()
-                    .map(Object::toString).collect(Collectors.toCollection(ArrayList::new));
-//          查询permission信息
-            QueryWrapper<Permissions>  qwPermissions = new QueryWrapper<>();
-            qwPermissions.eq("is_delete",0).select("permission_name");
-            List<Objects> ojPermissionList =permissionsDAO.selectObjs(qwPermissions);
-            List<String> permissionList = ojPermissionList.stream()
-                    .map(Object::toString).collect(Collectors.toCollection(ArrayList::new));
-//          查询profiles信息
-            List<Profiles> profilesList=userDAO.selectUsersProfilesByUserId(userId);
             return CustomsUserDetail.builder()
-                    .username(user.getUsername())
-                    .password(user.getPassword())
-                    .roles(roleList)
-                    .permissions(permissionList)
-                    .profiles(profilesList)
+                    .userId(authorities.getUserId())
+                    .username(authorities.getUsername())
+                    .password(authorities.getPassword())
+                    .roles(authorities.getRoles())
+                    .permissions(authorities.getPermissions())
+                    .profiles(authorities.getProfiles())
                     .build();
         }catch (Exception e){
            throw new UserException(UserResultCodes.USER_NOT_FOUND,"用户加载失败:"+e.getMessage(),e);
         }
     }
+
+    //  登录成功且哈希参数低于当前配置时,由DaoAuthenticationProvider回调,用新哈希替换旧哈希
+    @Operation(summary = "升级密码哈希")
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        if(!(user instanceof CustomsUserDetail detail) || detail.getUserId() == null){
+            return user;
+        }
+        UpdateWrapper<Users> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.eq("id", detail.getUserId()).set("password", newPassword);
+        userDAO.update(null, updateWrapper);
+        authorityResolver.invalidateUser(detail.getUserId());
+        return loadUserByUsername(detail.getUserId());
+    }
 }
@@ -0,0 +1,87 @@
+package com.tests.campuslostandfoundsystem.service.security;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.PermissionsDAO;
+import com.tests.campuslostandfoundsystem.dao.RolesDAO;
+import com.tests.campuslostandfoundsystem.entity.permission.Permissions;
+import com.tests.campuslostandfoundsystem.entity.roles.Roles;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 权限名(角色名、权限名)到连续整数下标的登记表
+ * 启动时登记已有的角色和权限,之后新出现的名字在编译时追加;下标一经分配不再变化
+ * 用户的权限编译成 long[] 位图,鉴权时按位判断
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PermissionRegistry {
+    private final RolesDAO rolesDAO;
+    private final PermissionsDAO permissionsDAO;
+
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        try {
+            QueryWrapper<Roles> qwRoles = new QueryWrapper<>();
+            qwRoles.eq("is_deleted", 0).select("role_name");
+            rolesDAO.selectObjs(qwRoles).stream().filter(Objects::nonNull).map(Object::toString).forEach(this::intern);
+            QueryWrapper<Permissions> qwPermissions = new QueryWrapper<>();
+            qwPermissions.eq("is_deleted", 0).select("permission_name");
+            permissionsDAO.selectObjs(qwPermissions).stream().filter(Objects::nonNull).map(Object::toString).forEach(this::intern);
+        } catch (Exception e) {
+            log.warn("权限登记表预加载失败,改为按需登记: {}", e.getMessage());
+        }
+    }
+
+    //  返回名字的下标,没有时分配一个
+    public int intern(String name) {
+        return indexes.computeIfAbsent(name, key -> nextIndex.getAndIncrement());
+    }
+
+    //  没有登记过的名字返回-1,说明没有任何用户拥有它
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+
+    //  把一组权限名编译成位图
+    public long[] compile(Collection<String> names) {
+        int[] bits = new int[names.size()];
+        int max = -1;
+        int i = 0;
+        for (String name : names) {
+            bits[i] = intern(name);
+            max = Math.max(max, bits[i]);
+            i++;
+        }
+        long[] words = new long[(max >> 6) + 1];
+        for (int bit : bits) {
+            words[bit >> 6] |= 1L << bit;
+        }
+        return words;
+    }
+
+    public static boolean test(long[] words, int bit) {
+        if (bit < 0) {
+            return false;
+        }
+        int word = bit >> 6;
+        return word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,382 @@
+package com.tests.campuslostandfoundsystem.service.security;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.UserDAO;
+import com.tests.campuslostandfoundsystem.entity.user.Users;
+import com.tests.campuslostandfoundsystem.utils.RevocationNearCache;
+import com.tests.campuslostandfoundsystem.utils.bloom.ScalableBloomFilter;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已存在用户名的布隆过滤器
+ * 启动时从users表全量构建;布隆过滤器不能删除,删除的用户只计数,删除数超过阈值或到了定时重建时间时整体重建。
+ * 新增用户名在写库的事务里、提交之前就写入本节点,并通过脚本编号写进有上限的变更日志(zset,分数即序号)再广播,
+ * 其他节点按序号应用,定期只拉取上次应用之后的日志补齐丢失的消息,日志有缺口时整体重建。
+ * 事务回滚时过滤器里多出一个名字,只是多一次假阳性;反过来提交前就已广播,其他节点不会先看到库里的新用户再收到消息。
+ * 过滤器健康(已建好、订阅在运行、没有未补齐的序号、最近一次对账在staleness窗口内)时"一定不存在"可以直接采信,
+ * 不健康时一律按"可能存在"处理,由调用方查库。
+ * 用户名按数据库排序规则的比较方式归一化(忽略大小写、重音和尾部空格),宁可多合并也不漏判
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UsernameExistenceFilter implements MessageListener {
+    public static final String CHANNEL = "auth:usernames";
+    public static final String CHANGE_SEQ_KEY = "auth:usernames:seq";
+    public static final String CHANGE_LOG_KEY = "auth:usernames:log";
+
+    //  KEYS: 序号, 日志  ARGV: 频道, 日志上限, 事件...;一次调用给每个事件编号、写日志并广播
+    private static final DefaultRedisScript<Long> EMIT_SCRIPT = new DefaultRedisScript<>(
+            RevocationNearCache.EMIT_FUNCTION +
+            "for i = 3, #ARGV do emit(KEYS[1], KEYS[2], ARGV[1], ARGV[2], ARGV[i]) end " +
+            "return #ARGV - 2", Long.class);
+
+    private final UserDAO userDAO;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${auth.username-filter.initial-capacity:10000}")
+    private long initialCapacity;
+    @Value("${auth.username-filter.fpp:0.01}")
+    private double fpp;
+    @Value("${auth.username-filter.scan-batch-size:5000}")
+    private int scanBatchSize;
+    //  删除的用户数超过已有用户数的这个比例时重建
+    @Value("${auth.username-filter.rebuild-removed-ratio:0.1}")
+    private double rebuildRemovedRatio;
+    @Value("${auth.username-filter.change-log-size:10000}")
+    private int changeLogSize;
+    //  超过这么久没有对账成功就不再采信"一定不存在"
+    @Value("${auth.username-filter.max-staleness-millis:30000}")
+    private long maxStalenessMillis;
+
+    private volatile ScalableBloomFilter filter;
+    //  重建期间新增的用户名,重建完成时补进新过滤器
+    private List<String> pendingDuringRebuild;
+    private final Object lock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong loadedCount = new AtomicLong();
+    private final AtomicLong removedSinceRebuild = new AtomicLong();
+    //  已按顺序连续应用到的日志序号,-1表示还没建好;收到过的最大序号比它大说明中间有消息丢了,等resync补齐
+    private volatile long appliedSeq = -1L;
+    private volatile long highestSeen = -1L;
+    private volatile long lastSyncAt = 0L;
+
+    private final LongAdder definiteNegatives = new LongAdder();
+    private final LongAdder possiblePositives = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder untrusted = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        rebuild();
+    }
+
+    @Operation(summary = "用户名是否可能存在,返回false时该用户名一定不存在")
+    public boolean mightExist(String username) {
+        ScalableBloomFilter current = filter;
+        if (current == null || !isHealthy()) {
+            untrusted.increment();
+            return true;
+        }
+        if (current.mightContain(normalize(username))) {
+            possiblePositives.increment();
+            return true;
+        }
+        definiteNegatives.increment();
+        return false;
+    }
+
+    //  过滤器是否可信:已建好、订阅在运行、收到的序号都已连续应用、最近一次对账在staleness窗口内
+    public boolean isHealthy() {
+        long applied = appliedSeq;
+        return applied >= 0 && highestSeen <= applied
+                && listenerContainer.isRunning()
+                && System.currentTimeMillis() - lastSyncAt <= maxStalenessMillis;
+    }
+
+    //  新增用户时在事务里、写库之后调用;写日志失败时抛出异常让事务回滚,不留下其他节点不知道的用户名
+    public void added(String username) {
+        addedAll(List.of(username));
+    }
+
+    //  批量导入一次写完整块的用户名
+    public void addedAll(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(usernames.size() + 2);
+        args.add(CHANNEL);
+        args.add(String.valueOf(changeLogSize));
+        for (String username : usernames) {
+            put(username);
+            args.add("a|" + username);
+        }
+        stringRedisTemplate.execute(EMIT_SCRIPT, List.of(CHANGE_SEQ_KEY, CHANGE_LOG_KEY), args.toArray());
+    }
+
+    //  删除用户后调用;只影响重建时机,提交后再写
+    public void removed() {
+        afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(EMIT_SCRIPT, List.of(CHANGE_SEQ_KEY, CHANGE_LOG_KEY),
+                        CHANNEL, String.valueOf(changeLogSize), "d");
+            } catch (Exception e) {
+                log.warn("用户名过滤器删除事件写入失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    //  消息格式: 序号#a|username 或 序号#d;只有紧接着上一个序号时才推进appliedSeq,否则留给resync按序补齐
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('#');
+        long seq = separator < 0 ? -1L : parseLong(body.substring(0, separator));
+        if (seq <= 0) {
+            log.warn("无法解析的用户名过滤器消息: {}", body);
+            return;
+        }
+        apply(body.substring(separator + 1));
+        synchronized (lock) {
+            highestSeen = Math.max(highestSeen, seq);
+            if (appliedSeq >= 0 && seq == appliedSeq + 1) {
+                appliedSeq = seq;
+            }
+        }
+    }
+
+    //  定期只拉取上次应用之后的日志;首次、redis数据丢失或日志已被截断时整体重建
+    @Scheduled(fixedDelayString = "${auth.username-filter.resync-millis:10000}")
+    public void resync() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            long latest = parseLong(stringRedisTemplate.opsForValue().get(CHANGE_SEQ_KEY));
+            long from;
+            synchronized (lock) {
+                from = appliedSeq;
+            }
+            if (from < 0 || latest < from) {
+                rebuild();
+                return;
+            }
+            if (latest > from) {
+                Set<ZSetOperations.TypedTuple<String>> range = stringRedisTemplate.opsForZSet()
+                        .rangeByScoreWithScores(CHANGE_LOG_KEY, from + 1, latest);
+                if (!replay(range == null ? List.of() : new ArrayList<>(range), latest)) {
+                    log.warn("用户名变更日志有缺口({} -> {}),重建过滤器", from, latest);
+                    rebuild();
+                    return;
+                }
+            }
+            lastSyncAt = startedAt;
+        } catch (Exception e) {
+            log.warn("用户名过滤器对账失败: {}", e.getMessage());
+        }
+    }
+
+    //  定时重建,顺带清掉已删除用户留下的位;广播丢失造成的漏写也在这里补上
+    @Scheduled(fixedDelayString = "${auth.username-filter.rebuild-millis:21600000}",
+            initialDelayString = "${auth.username-filter.rebuild-millis:21600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${auth.username-filter.check-millis:60000}")
+    public void rebuildIfStale() {
+        if (removedSinceRebuild.get() > Math.max(1, loadedCount.get() * rebuildRemovedRatio)) {
+            rebuild();
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        ScalableBloomFilter current = filter;
+        Map<String, Long> stats = new LinkedHashMap<>();
+        if (current != null) {
+            stats.putAll(current.getStats());
+        }
+        stats.put("ready", current == null ? 0L : 1L);
+        stats.put("healthy", isHealthy() ? 1L : 0L);
+        stats.put("appliedSeq", appliedSeq);
+        stats.put("highestSeen", highestSeen);
+        stats.put("millisSinceSync", System.currentTimeMillis() - lastSyncAt);
+        stats.put("removedSinceRebuild", removedSinceRebuild.get());
+        stats.put("definiteNegatives", definiteNegatives.sum());
+        stats.put("possiblePositives", possiblePositives.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("untrusted", untrusted.sum());
+        return stats;
+    }
+
+    //  按主键分批扫描,扫描期间的新增先记下来,换上新过滤器前补进去;
+    //  扫描时还没提交的新增扫不到,所以再把变更日志里保留的用户名全部补进去,并从日志末尾接着应用
+    private void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (lock) {
+                pendingDuringRebuild = new ArrayList<>();
+            }
+            long removedAtStart = removedSinceRebuild.get();
+            long count = 0;
+            long lastId = 0;
+            ScalableBloomFilter fresh = new ScalableBloomFilter(initialCapacity, fpp);
+            while (true) {
+                QueryWrapper<Users> qw = new QueryWrapper<>();
+                qw.select("id", "username")
+                        .eq("is_deleted", 0)
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("LIMIT " + scanBatchSize);
+                List<Users> batch = userDAO.selectList(qw);
+                for (Users user : batch) {
+                    fresh.put(normalize(user.getUsername()));
+                }
+                count += batch.size();
+                if (batch.size() < scanBatchSize) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            long syncedAt = System.currentTimeMillis();
+            long latest = parseLong(stringRedisTemplate.opsForValue().get(CHANGE_SEQ_KEY));
+            Set<String> retained = stringRedisTemplate.opsForZSet().range(CHANGE_LOG_KEY, 0, -1);
+            if (retained != null) {
+                for (String entry : retained) {
+                    String event = entry.substring(entry.indexOf('#') + 1);
+                    if (event.startsWith("a|")) {
+                        fresh.put(normalize(event.substring(2)));
+                    }
+                }
+            }
+            synchronized (lock) {
+                pendingDuringRebuild.forEach(name -> fresh.put(normalize(name)));
+                filter = fresh;
+//              读日志之后到达的消息已进了pending,它们的序号由下一次resync重放(重复写入无影响);
+//              redis数据丢失导致序号回退时也从新的序号接着应用
+                appliedSeq = latest;
+                highestSeen = latest;
+            }
+            lastSyncAt = syncedAt;
+            loadedCount.set(count);
+            removedSinceRebuild.addAndGet(-removedAtStart);
+            rebuilds.increment();
+            log.info("用户名过滤器重建完成,共{}个用户名", count);
+        } catch (Exception e) {
+            log.warn("用户名过滤器重建失败,沿用旧过滤器: {}", e.getMessage());
+        } finally {
+            synchronized (lock) {
+                pendingDuringRebuild = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    private void put(String username) {
+        synchronized (lock) {
+            ScalableBloomFilter current = filter;
+            if (current != null) {
+                current.put(normalize(username));
+            }
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(username);
+            }
+        }
+    }
+
+    //  从appliedSeq+1开始必须连续,否则中间的事件已被截断,返回false由调用方重建
+    private boolean replay(List<ZSetOperations.TypedTuple<String>> entries, long latest) {
+        synchronized (lock) {
+            long expected = appliedSeq + 1;
+            for (ZSetOperations.TypedTuple<String> entry : entries) {
+                long seq = entry.getScore() == null ? -1L : entry.getScore().longValue();
+                if (seq < expected) {
+                    continue;
+                }
+                if (seq != expected) {
+                    break;
+                }
+                String value = entry.getValue();
+                apply(value.substring(value.indexOf('#') + 1));
+                appliedSeq = seq;
+                expected++;
+            }
+            highestSeen = Math.max(highestSeen, latest);
+            return appliedSeq >= latest;
+        }
+    }
+
+    //  事件: a|username 或 d
+    private void apply(String event) {
+        if (event.startsWith("a|")) {
+            put(event.substring(2));
+        } else if ("d".equals(event)) {
+            removedSinceRebuild.incrementAndGet();
+        } else {
+            log.warn("未知的用户名过滤器事件: {}", event);
+        }
+    }
+
+    //  MySQL默认排序规则不区分大小写和重音,按它的比较方式归一化
+    public static String normalize(String username) {
+        if (username == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(username, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    private static long parseLong(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.tests.campuslostandfoundsystem.service.stats;
+
+import com.tests.campuslostandfoundsystem.entity.items.Items;
+import com.tests.campuslostandfoundsystem.entity.stats.StatCount;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ItemStatsService {
+    public void itemInserted(Items saved);
+    public void itemUpdated(Items before, Items after);
+    public void itemDeleted(Items before);
+    public List<StatCount> getCounts(String dimension);
+    public void reconcile();
+    public Map<String, Long> getStats();
+}
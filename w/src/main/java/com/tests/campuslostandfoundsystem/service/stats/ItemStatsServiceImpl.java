@@ -0,0 +1,207 @@
+package com.tests.campuslostandfoundsystem.service.stats;
+
+import com.tests.campuslostandfoundsystem.dao.ItemStatsDAO;
+import com.tests.campuslostandfoundsystem.entity.items.Items;
+import com.tests.campuslostandfoundsystem.entity.stats.StatCount;
+import com.tests.campuslostandfoundsystem.utils.RedisLease;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 失物按类型、状态、地点的计数
+ * 新增、修改、删除失物时在同一个事务里对item_stats做加减,仪表盘读取只取一个维度的几行,与失物总数无关。
+ * 每次加减都按 type -> status -> place 的固定顺序进行,并发事务对计数行加锁的顺序一致,不会互相死锁。
+ * 绕过service直接改表、手工修数据造成的偏差由定时对账修正:多节点下用Redis租约保证同一时刻只有一个节点在对账
+ */
+@Slf4j
+@Service
+public class ItemStatsServiceImpl implements ItemStatsService {
+    public static final String TYPE = "type";
+    public static final String STATUS = "status";
+    public static final String PLACE = "place";
+    private static final String RECONCILE_LEASE_KEY = "items:stats:reconcile";
+
+    private final ItemStatsDAO itemStatsDAO;
+    private final RedisLease redisLease;
+    private final TransactionTemplate snapshotTransaction;
+    //  维度 -> 从失物取维度值
+    private final Map<String, Function<Items, String>> dimensions = new LinkedHashMap<>();
+
+    @Value("${items.stats.reconcile-lease-millis:600000}")
+    private long reconcileLeaseMillis;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder reconciliations = new LongAdder();
+    private final LongAdder driftCorrected = new LongAdder();
+    private final AtomicLong lastDrift = new AtomicLong();
+
+    public ItemStatsServiceImpl(ItemStatsDAO itemStatsDAO, RedisLease redisLease,
+                                PlatformTransactionManager transactionManager) {
+        this.itemStatsDAO = itemStatsDAO;
+        this.redisLease = redisLease;
+//      对账时失物表和计数表要在同一个一致性快照里读
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        dimensions.put(TYPE, Items::getType);
+        dimensions.put(STATUS, item -> item.getStatus() == null ? null : String.valueOf(item.getStatus()));
+        dimensions.put(PLACE, item -> item.getPlaceId() == null ? null : String.valueOf(item.getPlaceId()));
+    }
+
+    @Override
+    public void itemInserted(Items saved) {
+        if (saved == null) {
+            return;
+        }
+        dimensions.forEach((dimension, getter) -> apply(dimension, getter.apply(saved), 1));
+    }
+
+    //  只有值变了的维度才需要改动
+    @Override
+    public void itemUpdated(Items before, Items after) {
+        if (before == null || after == null) {
+            itemDeleted(before);
+            itemInserted(after);
+            return;
+        }
+        dimensions.forEach((dimension, getter) -> {
+            String oldValue = getter.apply(before);
+            String newValue = getter.apply(after);
+            if (Objects.equals(oldValue, newValue)) {
+                return;
+            }
+//          同一维度内也按值的顺序加锁
+            if (StringUtils.defaultString(oldValue).compareTo(StringUtils.defaultString(newValue)) < 0) {
+                apply(dimension, oldValue, -1);
+                apply(dimension, newValue, 1);
+            } else {
+                apply(dimension, newValue, 1);
+                apply(dimension, oldValue, -1);
+            }
+        });
+    }
+
+    @Override
+    public void itemDeleted(Items before) {
+        if (before == null) {
+            return;
+        }
+        dimensions.forEach((dimension, getter) -> apply(dimension, getter.apply(before), -1));
+    }
+
+    @Operation(summary = "按维度获取失物计数")
+    @Override
+    public List<StatCount> getCounts(String dimension) {
+        if (!dimensions.containsKey(dimension)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的统计维度: " + dimension);
+        }
+        reads.increment();
+        return itemStatsDAO.selectCounts(dimension).stream()
+                .filter(count -> count.getCount() != null && count.getCount() > 0)
+                .toList();
+    }
+
+    /**
+     * 对账:在同一个可重复读快照里分别做一次全表聚合、读一次计数表,两者之差就是偏差;
+     * 修正时用 item_count + 差值 而不是直接覆盖,快照之后提交的正常加减不会被冲掉
+     */
+    @Scheduled(fixedDelayString = "${items.stats.reconcile-millis:3600000}",
+            initialDelayString = "${items.stats.reconcile-initial-delay-millis:60000}")
+    @Override
+    public void reconcile() {
+        String lease;
+        try {
+            lease = redisLease.tryAcquire(RECONCILE_LEASE_KEY, Duration.ofMillis(reconcileLeaseMillis));
+        } catch (Exception e) {
+            log.warn("失物计数对账获取租约失败: {}", e.getMessage());
+            return;
+        }
+        if (lease == null) {
+            return;
+        }
+        try {
+            Long drift = snapshotTransaction.execute(status -> {
+                long total = 0;
+                total += reconcile(TYPE, itemStatsDAO::countByType);
+                total += reconcile(STATUS, itemStatsDAO::countByStatus);
+                total += reconcile(PLACE, itemStatsDAO::countByPlace);
+                return total;
+            });
+            long corrected = drift == null ? 0 : drift;
+            lastDrift.set(corrected);
+            driftCorrected.add(corrected);
+            reconciliations.increment();
+            if (corrected > 0) {
+                log.info("失物计数对账修正了{}处偏差", corrected);
+            }
+        } catch (Exception e) {
+            log.warn("失物计数对账失败: {}", e.getMessage());
+        } finally {
+            redisLease.release(RECONCILE_LEASE_KEY, lease);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("reads", reads.sum());
+        stats.put("deltas", deltas.sum());
+        stats.put("reconciliations", reconciliations.sum());
+        stats.put("driftCorrected", driftCorrected.sum());
+        stats.put("lastDrift", lastDrift.get());
+        return stats;
+    }
+
+    //  返回修正的绝对值之和
+    private long reconcile(String dimension, Supplier<List<StatCount>> aggregate) {
+        Map<String, Long> expected = toMap(aggregate.get());
+        Map<String, Long> actual = toMap(itemStatsDAO.selectCounts(dimension));
+        Set<String> values = new HashSet<>(expected.keySet());
+        values.addAll(actual.keySet());
+        long drift = 0;
+        for (String value : values) {
+            long diff = expected.getOrDefault(value, 0L) - actual.getOrDefault(value, 0L);
+            if (diff != 0) {
+                itemStatsDAO.increment(dimension, value, diff);
+                drift += Math.abs(diff);
+            }
+        }
+        return drift;
+    }
+
+    private static Map<String, Long> toMap(List<StatCount> counts) {
+        Map<String, Long> map = new HashMap<>();
+        for (StatCount count : counts) {
+            map.merge(count.getName() == null ? "" : count.getName(),
+                    count.getCount() == null ? 0L : count.getCount(), Long::sum);
+        }
+        return map;
+    }
+
+    private void apply(String dimension, String value, long delta) {
+        itemStatsDAO.increment(dimension, StringUtils.defaultString(value), delta);
+        deltas.increment();
+    }
+}
@@ -0,0 +1,15 @@
+package com.tests.campuslostandfoundsystem.service.stats;
+
+import com.tests.campuslostandfoundsystem.entity.stats.RollupPoint;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface RollupService {
+    public void refresh();
+    public void refreshRecent();
+    public List<RollupPoint> getTrend(String source, String granularity, String dimension,
+                                      LocalDateTime from, LocalDateTime to);
+    public Map<String, Long> getStats();
+}
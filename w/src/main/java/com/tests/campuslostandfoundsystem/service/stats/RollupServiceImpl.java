@@ -0,0 +1,250 @@
+package com.tests.campuslostandfoundsystem.service.stats;
+
+import com.tests.campuslostandfoundsystem.dao.StatsRollupDAO;
+import com.tests.campuslostandfoundsystem.entity.stats.RollupPoint;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 失物、寻物启事的趋势汇总
+ * 按新增时间把记录归入小时桶,统计新增数、已认领数和认领耗时,再由小时桶汇总出天桶,周在查询时由天桶合并;
+ * 仪表盘的区间查询只读汇总表,不碰原始表。
+ * 定时任务只处理水位线之后新增或修改过的记录:找出它们落在哪些小时桶,整桶从原始表重算,
+ * 水位线和汇总结果在同一个事务里提交。水位线停在当前时间往前一小段,给还没提交的长事务留余地;
+ * 每天再把最近几天整段重算一遍,兜住超过这段余地的事务。
+ * 水位线行用 FOR UPDATE 读取,多个节点同时跑时自然排队,后到的只会看到很少的增量
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RollupServiceImpl implements RollupService {
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /**
+     * 一类被汇总的记录:来源名、表名、维度 -> 列名('' 表示不分维度的总数)
+     */
+    private record Source(String name, String table, Map<String, String> dimensions) {
+    }
+
+    private static final Map<String, Source> SOURCES = Map.of(
+            "item", new Source("item", "items", orderedMap("all", "''", "type", "type", "place", "place_id")),
+            "notice", new Source("notice", "lost_property_notices", orderedMap("all", "''", "place", "place_id")));
+
+    private final StatsRollupDAO statsRollupDAO;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.rollup.lag-seconds:120}")
+    private long lagSeconds;
+    @Value("${stats.rollup.recent-days:2}")
+    private long recentDays;
+    @Value("${stats.rollup.item-claimed-status:1}")
+    private Integer itemClaimedStatus;
+    @Value("${stats.rollup.notice-resolved-status:1}")
+    private Integer noticeResolvedStatus;
+    @Value("${stats.rollup.max-hour-range-days:31}")
+    private long maxHourRangeDays;
+    @Value("${stats.rollup.max-day-range-days:731}")
+    private long maxDayRangeDays;
+
+    private final Map<String, LocalDateTime> watermarks = new ConcurrentHashMap<>();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder hoursRebuilt = new LongAdder();
+    private final LongAdder daysRebuilt = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    @Scheduled(fixedDelayString = "${stats.rollup.refresh-millis:300000}",
+            initialDelayString = "${stats.rollup.refresh-initial-delay-millis:30000}")
+    @Operation(summary = "增量刷新趋势汇总")
+    @Override
+    public void refresh() {
+        for (Source source : SOURCES.values()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> refresh(source));
+                refreshes.increment();
+            } catch (Exception e) {
+                log.warn("趋势汇总{}刷新失败,下次从原水位线重试: {}", source.name(), e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(cron = "${stats.rollup.recent-cron:0 30 3 * * *}")
+    @Operation(summary = "整段重算最近几天的趋势汇总")
+    @Override
+    public void refreshRecent() {
+        LocalDateTime from = LocalDate.now().minusDays(recentDays).atStartOfDay();
+        LocalDateTime to = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        for (Source source : SOURCES.values()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+//                  和增量刷新抢同一把锁
+                    statsRollupDAO.selectWatermark(source.name());
+                    List<LocalDateTime> hours = new ArrayList<>();
+                    for (LocalDateTime hour = from; hour.isBefore(to); hour = hour.plusHours(1)) {
+                        hours.add(hour);
+                    }
+                    rebuild(source, hours);
+                });
+            } catch (Exception e) {
+                log.warn("趋势汇总{}重算最近{}天失败: {}", source.name(), recentDays, e.getMessage());
+            }
+        }
+    }
+
+    @Operation(summary = "按时间区间查询趋势")
+    @Override
+    public List<RollupPoint> getTrend(String source, String granularity, String dimension,
+                                      LocalDateTime from, LocalDateTime to) {
+        Source target = SOURCES.get(source);
+        if (target == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的数据来源: " + source);
+        }
+        if (!target.dimensions().containsKey(dimension)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的统计维度: " + dimension);
+        }
+        boolean hourly = HOUR.equals(granularity);
+        if (!hourly && !DAY.equals(granularity) && !WEEK.equals(granularity)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的时间粒度: " + granularity);
+        }
+        LocalDateTime end = to == null ? LocalDateTime.now() : to;
+        LocalDateTime start = from == null ? end.minusDays(hourly ? 2 : 30) : from;
+        long maxDays = hourly ? maxHourRangeDays : maxDayRangeDays;
+        if (!start.isBefore(end) || Duration.between(start, end).toDays() > maxDays) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "查询区间无效或超过" + maxDays + "天");
+        }
+        queries.increment();
+        List<RollupPoint> points = statsRollupDAO.selectRange(hourly ? HOUR : DAY, source, dimension, start, end);
+        if (WEEK.equals(granularity)) {
+            points = foldWeeks(points);
+        }
+        points.forEach(point -> point.setAvgTurnaroundSeconds(point.getClaimedCount() == null || point.getClaimedCount() == 0
+                ? null : (double) point.getTurnaroundSeconds() / point.getClaimedCount()));
+        return points;
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("refreshes", refreshes.sum());
+        stats.put("hoursRebuilt", hoursRebuilt.sum());
+        stats.put("daysRebuilt", daysRebuilt.sum());
+        stats.put("queries", queries.sum());
+        watermarks.forEach((source, watermark) ->
+                stats.put(source + "LagSeconds", Duration.between(watermark, LocalDateTime.now()).toSeconds()));
+        return stats;
+    }
+
+    private void refresh(Source source) {
+        LocalDateTime watermark = statsRollupDAO.selectWatermark(source.name());
+        if (watermark == null) {
+            watermark = EPOCH;
+        }
+        LocalDateTime upTo = LocalDateTime.now().minusSeconds(lagSeconds).truncatedTo(ChronoUnit.SECONDS);
+        if (!upTo.isAfter(watermark)) {
+            return;
+        }
+        rebuild(source, statsRollupDAO.selectChangedHours(source.table(), watermark, upTo));
+        statsRollupDAO.upsertWatermark(source.name(), upTo);
+        watermarks.put(source.name(), upTo);
+    }
+
+    //  受影响的小时桶按连续区间整段重算,再重算它们所在的天
+    private void rebuild(Source source, List<LocalDateTime> hours) {
+        if (hours.isEmpty()) {
+            return;
+        }
+        Integer claimedStatus = "item".equals(source.name()) ? itemClaimedStatus : noticeResolvedStatus;
+        TreeSet<LocalDateTime> sortedHours = new TreeSet<>(hours);
+        for (LocalDateTime[] range : ranges(sortedHours, ChronoUnit.HOURS)) {
+            statsRollupDAO.deleteBuckets(HOUR, source.name(), range[0], range[1]);
+            source.dimensions().forEach((dimension, column) -> statsRollupDAO.insertHourly(
+                    source.table(), source.name(), dimension, column, claimedStatus, range[0], range[1]));
+        }
+        TreeSet<LocalDateTime> days = new TreeSet<>();
+        sortedHours.forEach(hour -> days.add(hour.truncatedTo(ChronoUnit.DAYS)));
+        for (LocalDateTime[] range : ranges(days, ChronoUnit.DAYS)) {
+            statsRollupDAO.deleteBuckets(DAY, source.name(), range[0], range[1]);
+            statsRollupDAO.insertDailyFromHourly(source.name(), range[0], range[1]);
+        }
+        hoursRebuilt.add(sortedHours.size());
+        daysRebuilt.add(days.size());
+    }
+
+    //  把有序的桶起点合并成连续的 [起, 止) 区间
+    private static List<LocalDateTime[]> ranges(TreeSet<LocalDateTime> buckets, ChronoUnit unit) {
+        List<LocalDateTime[]> ranges = new ArrayList<>();
+        LocalDateTime start = null;
+        LocalDateTime end = null;
+        for (LocalDateTime bucket : buckets) {
+            if (end != null && bucket.equals(end)) {
+                end = bucket.plus(1, unit);
+                continue;
+            }
+            if (start != null) {
+                ranges.add(new LocalDateTime[]{start, end});
+            }
+            start = bucket;
+            end = bucket.plus(1, unit);
+        }
+        if (start != null) {
+            ranges.add(new LocalDateTime[]{start, end});
+        }
+        return ranges;
+    }
+
+    //  天桶按周一合并成周
+    private static List<RollupPoint> foldWeeks(List<RollupPoint> days) {
+        Map<String, RollupPoint> weeks = new TreeMap<>();
+        for (RollupPoint day : days) {
+            LocalDateTime weekStart = day.getBucketStart().toLocalDate()
+                    .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+            weeks.merge(weekStart + "|" + day.getDimValue(),
+                    RollupPoint.builder()
+                            .bucketStart(weekStart)
+                            .dimValue(day.getDimValue())
+                            .createdCount(day.getCreatedCount())
+                            .claimedCount(day.getClaimedCount())
+                            .turnaroundSeconds(day.getTurnaroundSeconds())
+                            .build(),
+                    (a, b) -> {
+                        a.setCreatedCount(a.getCreatedCount() + b.getCreatedCount());
+                        a.setClaimedCount(a.getClaimedCount() + b.getClaimedCount());
+                        a.setTurnaroundSeconds(a.getTurnaroundSeconds() + b.getTurnaroundSeconds());
+                        return a;
+                    });
+        }
+        return new ArrayList<>(weeks.values());
+    }
+
+    private static Map<String, String> orderedMap(String... pairs) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+}
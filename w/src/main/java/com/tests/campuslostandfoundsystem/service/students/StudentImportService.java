@@ -0,0 +1,10 @@
+package com.tests.campuslostandfoundsystem.service.students;
+
+import com.tests.campuslostandfoundsystem.entity.student.StudentImportJob;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface StudentImportService {
+    public StudentImportJob startImport(MultipartFile file);
+    public StudentImportJob getJob(String jobId);
+    public StudentImportJob resumeImport(String jobId);
+}
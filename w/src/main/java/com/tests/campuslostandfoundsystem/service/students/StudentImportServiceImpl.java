@@ -0,0 +1,506 @@
+package com.tests.campuslostandfoundsystem.service.students;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tests.campuslostandfoundsystem.dao.StudentImportDAO;
+import com.tests.campuslostandfoundsystem.entity.student.StudentImportError;
+import com.tests.campuslostandfoundsystem.entity.student.StudentImportJob;
+import com.tests.campuslostandfoundsystem.entity.student.Students;
+import com.tests.campuslostandfoundsystem.entity.user.UserProfiles;
+import com.tests.campuslostandfoundsystem.entity.user.Users;
+import com.tests.campuslostandfoundsystem.service.security.UsernameExistenceFilter;
+import com.tests.campuslostandfoundsystem.service.user.UserService;
+import com.tests.campuslostandfoundsystem.service.user.impl.UserServiceImpl;
+import com.tests.campuslostandfoundsystem.utils.BoundedPasswordEncoder;
+import com.tests.campuslostandfoundsystem.utils.cache.PageCountCache;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 学生批量导入
+ * 上传的CSV先落到本地文件,后台逐行流式读取,按块处理:块内先校验、查重,再在ForkJoin池里并行做BCrypt,
+ * 最后在一个事务里用JDBC批量写students、users,用多行INSERT写user_profiles。
+ * 每块提交后把进度写到redis,任务失败或节点重启后可以从最后提交的那一行继续;
+ * 某块整体写入失败时退回逐行事务,把出错的行记下来,不影响同一块里的其他行。
+ * CSV第一行为表头,必须有username、password列,可选name、studentNo列;字段内不能换行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StudentImportServiceImpl implements StudentImportService {
+    private static final String JOB_KEY_PREFIX = "import:students:";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String PROFILE_TYPE = "STUDENT";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final StudentsService studentsService;
+    private final UserService userService;
+    private final StudentImportDAO studentImportDAO;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final UsernameExistenceFilter usernameExistenceFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final PageCountCache pageCountCache;
+
+    @Value("${students.import.upload-dir:${java.io.tmpdir}/student-import}")
+    private String uploadDir;
+    @Value("${students.import.chunk-size:500}")
+    private int chunkSize;
+    //  0表示CPU核数的一半,给在线登录留出算力
+    @Value("${students.import.hash-parallelism:0}")
+    private int hashParallelism;
+    @Value("${students.import.max-concurrent-jobs:1}")
+    private int maxConcurrentJobs;
+    @Value("${students.import.max-errors:10000}")
+    private long maxErrors;
+    @Value("${students.import.job-ttl-hours:168}")
+    private long jobTtlHours;
+
+    private ExecutorService jobExecutor;
+    private ForkJoinPool hashPool;
+    //  本节点正在跑的任务,防止同一个任务被重复续传
+    private final Set<String> activeJobs = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        jobExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentJobs), runnable -> {
+            Thread thread = new Thread(runnable, "student-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int parallelism = hashParallelism > 0 ? hashParallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        hashPool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        hashPool.shutdownNow();
+    }
+
+    @Operation(summary = "上传CSV并开始导入")
+    @Override
+    public StudentImportJob startImport(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "导入文件不能为空");
+        }
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        Path path = jobFile(jobId);
+        long totalRows;
+        try {
+            Files.createDirectories(path.getParent());
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            totalRows = countDataRows(path);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "保存导入文件失败:" + e.getMessage(), e);
+        }
+        String now = LocalDateTime.now().format(TIME_FORMAT);
+        Map<String, String> fields = new HashMap<>();
+        fields.put("fileName", StringUtils.defaultString(file.getOriginalFilename()));
+        fields.put("status", "PENDING");
+        fields.put("totalRows", String.valueOf(totalRows));
+        fields.put("processedRows", "0");
+        fields.put("importedRows", "0");
+        fields.put("failedRows", "0");
+        fields.put("createBy", currentUsername());
+        fields.put("createTime", now);
+        fields.put("updateTime", now);
+        stringRedisTemplate.opsForHash().putAll(jobKey(jobId), fields);
+        touch(jobId);
+        submit(jobId);
+        return getJob(jobId);
+    }
+
+    @Operation(summary = "查询导入进度和出错的行")
+    @Override
+    public StudentImportJob getJob(String jobId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(jobKey(jobId));
+        if (fields.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "导入任务不存在");
+        }
+        StudentImportJob job = new StudentImportJob();
+        job.setJobId(jobId);
+        job.setFileName((String) fields.get("fileName"));
+        job.setStatus((String) fields.get("status"));
+        job.setTotalRows(toLong(fields.get("totalRows")));
+        job.setProcessedRows(toLong(fields.get("processedRows")));
+        job.setImportedRows(toLong(fields.get("importedRows")));
+        job.setFailedRows(toLong(fields.get("failedRows")));
+        job.setMessage((String) fields.get("message"));
+        job.setCreateTime((String) fields.get("createTime"));
+        job.setUpdateTime((String) fields.get("updateTime"));
+        List<String> errors = stringRedisTemplate.opsForList().range(errorsKey(jobId), 0, -1);
+        job.setErrors(errors == null ? List.of() : errors.stream().map(StudentImportServiceImpl::decodeError).toList());
+        return job;
+    }
+
+    @Operation(summary = "从最后提交的行继续导入")
+    @Override
+    public StudentImportJob resumeImport(String jobId) {
+        StudentImportJob job = getJob(jobId);
+        if ("COMPLETED".equals(job.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "导入任务已完成");
+        }
+        if (activeJobs.contains(jobId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "导入任务正在执行");
+        }
+        if (!Files.exists(jobFile(jobId))) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "导入文件不在本节点,请在上传文件的节点上续传");
+        }
+        submit(jobId);
+        return getJob(jobId);
+    }
+
+    private void submit(String jobId) {
+        if (!activeJobs.add(jobId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "导入任务正在执行");
+        }
+        try {
+            jobExecutor.execute(() -> run(jobId));
+        } catch (Exception e) {
+            activeJobs.remove(jobId);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "导入任务提交失败", e);
+        }
+    }
+
+    private void run(String jobId) {
+        try {
+            updateStatus(jobId, "RUNNING", null);
+            Object committed = stringRedisTemplate.opsForHash().get(jobKey(jobId), "processedRows");
+            long processedRows = toLong(committed);
+            String createBy = StringUtils.defaultIfBlank(
+                    (String) stringRedisTemplate.opsForHash().get(jobKey(jobId), "createBy"), "import");
+            try (BufferedReader reader = Files.newBufferedReader(jobFile(jobId), StandardCharsets.UTF_8)) {
+                Map<String, Integer> columns = parseHeader(reader.readLine());
+                if (!columns.containsKey("username") || !columns.containsKey("password")) {
+                    updateStatus(jobId, "FAILED", "表头缺少username或password列");
+                    return;
+                }
+//              文件内重复的用户名;续传时已提交的行也要记进来
+                Set<String> seenUsernames = new HashSet<>();
+                List<ImportRow> chunk = new ArrayList<>(chunkSize);
+                long rowNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (StringUtils.isBlank(line)) {
+                        continue;
+                    }
+                    rowNumber++;
+                    ImportRow row = ImportRow.of(rowNumber, parseLine(line), columns);
+                    if (rowNumber <= processedRows) {
+                        seenUsernames.add(row.username());
+                        continue;
+                    }
+                    chunk.add(row);
+                    if (chunk.size() >= chunkSize) {
+                        processChunk(jobId, chunk, seenUsernames, createBy);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    processChunk(jobId, chunk, seenUsernames, createBy);
+                }
+            }
+            updateStatus(jobId, "COMPLETED", null);
+            Files.deleteIfExists(jobFile(jobId));
+        } catch (Exception e) {
+            log.warn("学生导入任务{}失败: {}", jobId, e.getMessage());
+            updateStatus(jobId, "FAILED", e.getMessage());
+        } finally {
+            activeJobs.remove(jobId);
+        }
+    }
+
+    //  一块:校验 -> 查重 -> 并行哈希 -> 批量写入 -> 记进度
+    private void processChunk(String jobId, List<ImportRow> chunk, Set<String> seenUsernames, String createBy) throws Exception {
+        List<StudentImportError> errors = new ArrayList<>();
+        List<ImportRow> candidates = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            String error = row.validate();
+            if (error == null && !seenUsernames.add(row.username())) {
+                error = "文件内用户名重复";
+            }
+            if (error != null) {
+                errors.add(new StudentImportError(row.rowNumber(), row.username(), error));
+            } else {
+                candidates.add(row);
+            }
+        }
+//      整块候选用户名一次 IN 查询查重;导入写库不能依赖过滤器,多节点同时导入时过滤器可能还没收到别处的新增
+        if (!candidates.isEmpty()) {
+            QueryWrapper<Users> qw = new QueryWrapper<>();
+            qw.select("username")
+                    .in("username", candidates.stream().map(ImportRow::username).toList())
+                    .eq("is_deleted", 0);
+//          库里按排序规则比较,返回的是库里的写法,按同样的规则归一化后再比对
+            Set<String> existing = userService.list(qw).stream()
+                    .map(user -> UsernameExistenceFilter.normalize(user.getUsername()))
+                    .collect(Collectors.toSet());
+            candidates.removeIf(row -> {
+                if (existing.contains(UsernameExistenceFilter.normalize(row.username()))) {
+                    errors.add(new StudentImportError(row.rowNumber(), row.username(), "用户名已存在"));
+                    return true;
+                }
+                return false;
+            });
+        }
+        List<String> hashes = hashPool.submit(() -> candidates.parallelStream()
+                .map(row -> passwordEncoder.getDelegate().encode(row.password()))
+                .toList()).get();
+
+        long imported;
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertRows(candidates, hashes, createBy));
+            imported = candidates.size();
+        } catch (Exception e) {
+//          整块失败时逐行重试,找出具体是哪几行出错
+            imported = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                ImportRow row = candidates.get(i);
+                List<ImportRow> single = List.of(row);
+                List<String> singleHash = List.of(hashes.get(i));
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insertRows(single, singleHash, createBy));
+                    imported++;
+                } catch (Exception rowError) {
+                    errors.add(new StudentImportError(row.rowNumber(), row.username(), "写入失败:" + rootMessage(rowError)));
+                }
+            }
+        }
+        recordProgress(jobId, chunk.get(chunk.size() - 1).rowNumber(), imported, errors);
+    }
+
+    //  在事务里调用;students、users批量插入后回填的主键用来拼user_profiles
+    private void insertRows(List<ImportRow> rows, List<String> hashes, String createBy) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Students> students = new ArrayList<>(rows.size());
+        List<Users> users = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            students.add(Students.builder()
+                    .name(row.name())
+                    .studentNo(row.studentNo())
+                    .password(hashes.get(i))
+                    .build());
+            users.add(Users.builder()
+                    .username(row.username())
+                    .password(hashes.get(i))
+                    .createBy(createBy)
+                    .updateBy(createBy)
+                    .build());
+        }
+        studentsService.saveBatch(students, chunkSize);
+        userService.saveBatch(users, chunkSize);
+        List<UserProfiles> profiles = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            profiles.add(UserProfiles.builder()
+                    .userId(users.get(i).getId())
+                    .profileId(students.get(i).getId())
+                    .profileType(PROFILE_TYPE)
+                    .build());
+        }
+        studentImportDAO.insertUserProfiles(profiles);
+        usernameExistenceFilter.addedAll(users.stream().map(Users::getUsername).toList());
+        pageCountCache.invalidate(UserServiceImpl.TABLE);
+    }
+
+    private void recordProgress(String jobId, long lastRowNumber, long imported, List<StudentImportError> errors) {
+        String key = jobKey(jobId);
+        if (!errors.isEmpty()) {
+            Long stored = stringRedisTemplate.opsForList().size(errorsKey(jobId));
+            long room = maxErrors - (stored == null ? 0 : stored);
+            List<String> encoded = errors.stream().limit(Math.max(0, room)).map(StudentImportServiceImpl::encodeError).toList();
+            if (!encoded.isEmpty()) {
+                stringRedisTemplate.opsForList().rightPushAll(errorsKey(jobId), encoded);
+            }
+            stringRedisTemplate.opsForHash().increment(key, "failedRows", errors.size());
+        }
+        stringRedisTemplate.opsForHash().increment(key, "importedRows", imported);
+        stringRedisTemplate.opsForHash().put(key, "processedRows", String.valueOf(lastRowNumber));
+        stringRedisTemplate.opsForHash().put(key, "updateTime", LocalDateTime.now().format(TIME_FORMAT));
+        touch(jobId);
+    }
+
+    private void updateStatus(String jobId, String status, String message) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", status);
+        fields.put("message", StringUtils.defaultString(message));
+        fields.put("updateTime", LocalDateTime.now().format(TIME_FORMAT));
+        stringRedisTemplate.opsForHash().putAll(jobKey(jobId), fields);
+        touch(jobId);
+    }
+
+    private void touch(String jobId) {
+        stringRedisTemplate.expire(jobKey(jobId), jobTtlHours, TimeUnit.HOURS);
+        stringRedisTemplate.expire(errorsKey(jobId), jobTtlHours, TimeUnit.HOURS);
+    }
+
+    private Path jobFile(String jobId) {
+        return Paths.get(uploadDir, jobId + ".csv");
+    }
+
+    private static String jobKey(String jobId) {
+        return JOB_KEY_PREFIX + jobId;
+    }
+
+    private static String errorsKey(String jobId) {
+        return JOB_KEY_PREFIX + jobId + ":errors";
+    }
+
+    private static long countDataRows(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            long count = 0;
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isNotBlank(line)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static Map<String, Integer> parseHeader(String header) {
+        Map<String, Integer> columns = new HashMap<>();
+        if (header == null) {
+            return columns;
+        }
+//      去掉Excel导出时带的BOM
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        List<String> names = parseLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        return columns;
+    }
+
+    //  按RFC 4180解析一行:逗号分隔,双引号包裹的字段里可以有逗号,两个双引号表示一个双引号
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String encodeError(StudentImportError error) {
+        return error.getRowNumber() + "\t" + StringUtils.defaultString(error.getUsername()) + "\t" + error.getMessage();
+    }
+
+    private static StudentImportError decodeError(String value) {
+        String[] parts = value.split("\t", 3);
+        return new StudentImportError(Long.parseLong(parts[0]), parts[1], parts.length > 2 ? parts[2] : "");
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0L : Long.parseLong(value.toString());
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    //  异步线程里拿不到登录信息,提交任务时先记下操作人
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "import" : authentication.getName();
+    }
+
+    /**
+     * CSV里的一行
+     */
+    private record ImportRow(long rowNumber, String username, String password, String name, String studentNo) {
+        private static ImportRow of(long rowNumber, List<String> fields, Map<String, Integer> columns) {
+            String username = StringUtils.trimToEmpty(field(fields, columns, "username"));
+            return new ImportRow(rowNumber,
+                    username,
+                    field(fields, columns, "password"),
+                    StringUtils.defaultIfBlank(StringUtils.trimToNull(field(fields, columns, "name")), username),
+                    StringUtils.trimToNull(field(fields, columns, "studentno")));
+        }
+
+        private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? null : fields.get(index);
+        }
+
+        private String validate() {
+            if (StringUtils.isBlank(username)) {
+                return "用户名不能为空";
+            }
+            if (StringUtils.isBlank(password)) {
+                return "密码不能为空";
+            }
+            return null;
+        }
+    }
+}
@@ -6,9 +6,12 @@ import com.tests.campuslostandfoundsystem.entity.CustomsUserDetail;
 import com.tests.campuslostandfoundsystem.entity.student.ChangeStudentDTO;
 import com.tests.campuslostandfoundsystem.entity.student.StudentsInfoDTO;
 import com.tests.campuslostandfoundsystem.service.user.UserService;
+import com.tests.campuslostandfoundsystem.utils.cache.CacheNames;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tests.campuslostandfoundsystem.entity.student.Students;
@@ -21,6 +24,7 @@ public class StudentsServiceImpl extends ServiceImpl<StudentsDAO, Students> impl
     private String profileType = "STUDENT";
 
     @Operation(summary = "获取学生信息")
+    @Cacheable(cacheNames = CacheNames.STUDENT_INFO, keyGenerator = "currentUserKeyGenerator")
     @Override
     public StudentsInfoDTO getStudentInfo() {
 //      获取当前登录用户信息
@@ -36,6 +40,7 @@ public class StudentsServiceImpl extends ServiceImpl<StudentsDAO, Students> impl
                 student.getAge());
     }
 
+    @CacheEvict(cacheNames = CacheNames.STUDENT_INFO, keyGenerator = "currentUserKeyGenerator")
     @Override
     public void changeStudentInfo(ChangeStudentDTO changeStudentDTO) {
         UpdateWrapper<Students> updateWrapper = new UpdateWrapper<>();
@@ -6,6 +6,7 @@ import com.tests.campuslostandfoundsystem.entity.CustomsUserDetail;
 import com.tests.campuslostandfoundsystem.entity.admins.UserSelectionDTO;
 import com.tests.campuslostandfoundsystem.entity.user.Profiles;
 import com.tests.campuslostandfoundsystem.entity.user.Users;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 
 import java.util.List;
 
@@ -14,6 +15,7 @@ public interface UserService extends IService<Users> {
       List<Profiles> selectUsersProfilesByUserId(String userId);
       void updateUser(Users user);
      Page<Users> getAllUsersPages(UserSelectionDTO dto);
+     CursorPage<Users> getUsersBySeek(UserSelectionDTO dto, String cursor, String order);
      void insertUser(Users user);
      void deleteUser(Long userId);
 }
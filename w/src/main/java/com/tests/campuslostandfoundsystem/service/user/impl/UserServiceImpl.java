@@ -11,9 +11,15 @@ import com.tests.campuslostandfoundsystem.entity.enums.exception.UserResultCodes
 import com.tests.campuslostandfoundsystem.entity.items.Items;
 import com.tests.campuslostandfoundsystem.entity.user.Profiles;
 import com.tests.campuslostandfoundsystem.entity.user.Users;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
 import com.tests.campuslostandfoundsystem.exception.UserException;
 import com.tests.campuslostandfoundsystem.exception.UtilsException;
+import com.tests.campuslostandfoundsystem.service.security.AuthorityResolver;
+import com.tests.campuslostandfoundsystem.service.security.UsernameExistenceFilter;
 import com.tests.campuslostandfoundsystem.service.user.UserService;
+import com.tests.campuslostandfoundsystem.utils.KeysetPager;
+import com.tests.campuslostandfoundsystem.utils.cache.PageCountCache;
+import com.tests.campuslostandfoundsystem.utils.RedisStoreTokenUtils;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.core.Authentication;
@@ -27,6 +33,13 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserServiceImpl extends ServiceImpl<UserDAO, Users> implements UserService {
     private final UserDAO userDAO;
+    private final RedisStoreTokenUtils redisStoreTokenUtils;
+    private final AuthorityResolver authorityResolver;
+    private final UsernameExistenceFilter usernameExistenceFilter;
+    private final PageCountCache pageCountCache;
+    public static final String TABLE = "users";
+    private static final KeysetPager<Users> SEEK_PAGER = KeysetPager.<Users>of(Users::getId, "createTime")
+            .sortKey("createTime", "create_time", Users::getCreateTime);
     @Override
     public CustomsUserDetail getUserInfo() {
         try{
@@ -53,14 +66,17 @@ public class UserServiceImpl extends ServiceImpl<UserDAO, Users> implements User
     @Override
     public void updateUser(Users user) {
           userDAO.updateById(user);
+          authorityResolver.invalidateUser(user.getId().toString());
+          pageCountCache.invalidate(TABLE);
+          if(StringUtils.isNotBlank(user.getUsername())){
+              usernameExistenceFilter.added(user.getUsername());
+          }
     }
 
     @Override
     public Page<Users> getAllUsersPages(UserSelectionDTO dto) {
         //      查询条件
-        QueryWrapper<Users> qw = new QueryWrapper<>();
-        qw.eq("is_deleted", 0)
-                .like(StringUtils.isNotBlank(dto.getUsername()), "username", dto.getUsername());
+        QueryWrapper<Users> qw = selectionQuery(dto);
 //      处理分页
         Long pageNumber = dto.getPageNumber() == null||dto.getPageNumber()<=0 ? 1L : dto.getPageNumber();
         Long pageSize = dto.getPageSize() == null||dto.getPageSize()<=0 ? 10L : dto.getPageSize();
@@ -72,19 +88,41 @@ public class UserServiceImpl extends ServiceImpl<UserDAO, Users> implements User
         }else{
             qw.orderByDesc("create_time");
         }
-        return userDAO.selectPage(page, qw);
+        return pageCountCache.selectPage(userDAO, page, qw, () -> selectionQuery(dto), TABLE,
+                PageCountCache.filterKey(dto.getUsername()), false);
 
     }
 
+    @Override
+    public CursorPage<Users> getUsersBySeek(UserSelectionDTO dto, String cursor, String order) {
+        return SEEK_PAGER.seek(userDAO, selectionQuery(dto), dto.getSortBy(), order, cursor, dto.getPageSize());
+    }
+
+    //  文本条件去掉首尾空白再查,和 PageCountCache.filterKey 的规范化一致,同一个总数缓存键对应同一条查询
+    private static QueryWrapper<Users> selectionQuery(UserSelectionDTO dto) {
+        QueryWrapper<Users> qw = new QueryWrapper<>();
+        qw.eq("is_deleted", 0)
+                .like(StringUtils.isNotBlank(dto.getUsername()), "username", StringUtils.trim(dto.getUsername()));
+        return qw;
+    }
+
     @Transactional
     @Override
     public void deleteUser(Long userId) {
         userDAO.deleteById(userId);
+//      让该用户已签发的token在校验时直接判定为USER_GONE,校验路径不再查MySQL;
+//      删除标记和权限失效都在提交后执行,回滚时不会误标记,提交前也不会被并发请求重新加载旧权限
+        redisStoreTokenUtils.markUserGone(userId.toString());
+        authorityResolver.invalidateUser(userId.toString());
+        usernameExistenceFilter.removed();
+        pageCountCache.invalidate(TABLE);
     }
 
     @Transactional
     @Override
     public void insertUser(Users user) {
        userDAO.insert(user);
+       usernameExistenceFilter.added(user.getUsername());
+       pageCountCache.invalidate(TABLE);
     }
 }
@@ -0,0 +1,155 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.wf.captcha.SpecCaptcha;
+import com.wf.captcha.base.Captcha;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预先渲染好的图形验证码池
+ * 渲染图片是验证码接口最贵的一步,放到后台线程做;请求只从池里取一张,池空时才在请求线程里现场渲染
+ * 池内数量低于低水位时触发后台补充,补到容量为止
+ */
+@Slf4j
+@Component
+public class CaptchaPool {
+    private static final int WIDTH = 130;
+    private static final int HEIGHT = 48;
+    private static final int LENGTH = 4;
+
+    @Value("${utils.captcha.pool.size:200}")
+    private int size;
+    @Value("${utils.captcha.pool.low-water-mark:50}")
+    private int lowWaterMark;
+
+    private BlockingQueue<RenderedCaptcha> pool;
+    private final ExecutorService refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "captcha-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //  同一时间只有一个补充任务
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refilled = new LongAdder();
+    private final LongAdder refillNanos = new LongAdder();
+
+    /**
+     * 一张渲染好的验证码:答案、原始图片字节、以及给JSON接口用的data URI
+     */
+    public record RenderedCaptcha(String code, byte[] image, String dataUri) {
+    }
+
+    @PostConstruct
+    public void init() {
+        pool = new ArrayBlockingQueue<>(Math.max(1, size));
+        triggerRefill();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    //  取一张;池空时现场渲染
+    public RenderedCaptcha take() {
+        RenderedCaptcha captcha = poll();
+        return captcha != null ? captcha : render();
+    }
+
+    //  取一张;池空时返回null,由调用方自己渲染(例如直接渲染到响应流)
+    public RenderedCaptcha poll() {
+        RenderedCaptcha captcha = pool.poll();
+        if (pool.size() < lowWaterMark) {
+            triggerRefill();
+        }
+        if (captcha != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return captcha;
+    }
+
+    //  兜底:补充任务失败后由定时检查重新触发
+    @Scheduled(fixedDelayString = "${utils.captcha.pool.check-millis:5000}")
+    public void checkLowWater() {
+        if (pool.size() < lowWaterMark) {
+            triggerRefill();
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        long count = refilled.sum();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("available", (long) pool.size());
+        stats.put("size", (long) size);
+        stats.put("lowWaterMark", (long) lowWaterMark);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("refilled", count);
+        stats.put("avgRenderMicros", count == 0 ? 0L : refillNanos.sum() / count / 1000);
+        return stats;
+    }
+
+    //  新建一个验证码对象,不渲染:答案在第一次取text()时按字符类型生成,图片在out时才渲染
+    public static SpecCaptcha newCaptcha() {
+        SpecCaptcha specCaptcha = new SpecCaptcha(WIDTH, HEIGHT, LENGTH);
+        // 让验证码只包含数字 + 大写字母
+        specCaptcha.setCharType(Captcha.TYPE_NUM_AND_UPPER);
+        return specCaptcha;
+    }
+
+    private void triggerRefill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refillExecutor.execute(() -> {
+                try {
+                    while (pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                        long startedAt = System.nanoTime();
+                        RenderedCaptcha captcha = render();
+                        refillNanos.add(System.nanoTime() - startedAt);
+                        refilled.increment();
+                        if (!pool.offer(captcha)) {
+                            break;
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("验证码池补充失败: {}", e.getMessage());
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        } catch (Exception e) {
+            refilling.set(false);
+        }
+    }
+
+    private static RenderedCaptcha render() {
+        SpecCaptcha specCaptcha = newCaptcha();
+        String code = specCaptcha.text();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        specCaptcha.out(outputStream);
+        byte[] image = outputStream.toByteArray();
+        return new RenderedCaptcha(code, image, "data:image/jpg;base64," + Base64.getEncoder().encodeToString(image));
+    }
+}
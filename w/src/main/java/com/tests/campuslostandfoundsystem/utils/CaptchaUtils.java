@@ -4,41 +4,66 @@ import com.tests.campuslostandfoundsystem.entity.enums.exception.UtilsResultCode
 import com.tests.campuslostandfoundsystem.entity.utils.GraphCaptcha;
 import com.tests.campuslostandfoundsystem.exception.UtilsException;
 import com.wf.captcha.SpecCaptcha;
-import com.wf.captcha.base.Captcha;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
-import java.util.Base64;
+import java.io.OutputStream;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 @Component
 @RequiredArgsConstructor
 public class CaptchaUtils {
+    //  二进制验证码接口通过这个响应头返回key
+    public static final String CAPTCHA_KEY_HEADER = "Captcha-Key";
     private  String prefix ="utils:captcha:";
     private final RedisTemplate<String, Object> redisTemplate;
+    private final CaptchaPool captchaPool;
 
     @Operation(summary = "生成图形验证码")
     public GraphCaptcha generateCaptcha() {
         try {
-            SpecCaptcha specCaptcha = new SpecCaptcha(130, 48, 4);
-            // 让验证码只包含数字 + 大写字母（你也可以改成 Captcha.TYPE_ONLY_NUMBER 全数字）
-            specCaptcha.setCharType(Captcha.TYPE_NUM_AND_UPPER);
-
-            String code = specCaptcha.text();                    // 例如 "A9KX"
+//          图片由验证码池在后台预先渲染,这里只登记key
+            CaptchaPool.RenderedCaptcha captcha = captchaPool.take();
             String key = prefix + UUID.randomUUID().toString();  // 保持你原来的 key 前缀
+            redisTemplate.opsForValue().set(key, captcha.code(), 5, TimeUnit.MINUTES);
+            return new GraphCaptcha(key, "", captcha.dataUri()); // 不回传真实 code
+        } catch (Exception e) {
+            throw new UtilsException(UtilsResultCodes.GENERATE_CAPTCHA_FAILED, "生成图形验证码失败:" + e.getMessage(), e);
+        }
+    }
+
+    @Operation(summary = "生成图形验证码,图片以二进制直接写入响应")
+    public void writeCaptchaImage(HttpServletResponse response) {
+        try {
+            CaptchaPool.RenderedCaptcha pooled = captchaPool.poll();
+//          池空时现场渲染,答案先生成,图片直接渲染进响应流
+            SpecCaptcha specCaptcha = pooled == null ? CaptchaPool.newCaptcha() : null;
+            String code = pooled != null ? pooled.code() : specCaptcha.text();
+            String key = prefix + UUID.randomUUID().toString();
             redisTemplate.opsForValue().set(key, code, 5, TimeUnit.MINUTES);
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            specCaptcha.out(outputStream);
-            String base64Image = "data:image/jpg;base64," + Base64.getEncoder().encodeToString(outputStream.toByteArray());
-            return new GraphCaptcha(key, "", base64Image); // 不回传真实 code
+            response.setContentType(MediaType.IMAGE_PNG_VALUE);
+            response.setHeader(CAPTCHA_KEY_HEADER, key);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store, no-cache, must-revalidate, max-age=0");
+            response.setHeader(HttpHeaders.PRAGMA, "no-cache");
+            response.setDateHeader(HttpHeaders.EXPIRES, 0);
+            OutputStream outputStream = response.getOutputStream();
+            if (pooled != null) {
+                response.setContentLength(pooled.image().length);
+                outputStream.write(pooled.image());
+                outputStream.flush();
+            } else {
+                specCaptcha.out(outputStream);
+            }
         } catch (Exception e) {
             throw new UtilsException(UtilsResultCodes.GENERATE_CAPTCHA_FAILED, "生成图形验证码失败:" + e.getMessage(), e);
         }
@@ -0,0 +1,55 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 列表查询的列投影
+ * 每个列表声明自己的摘要字段白名单(属性名 -> 列名),默认只查这些列;
+ * 调用方可以用 fields=a,b 在白名单内进一步收窄,id 总会带上,白名单外的字段直接拒绝
+ */
+public final class FieldProjection {
+    private static final String ID = "id";
+
+    //  属性名 -> 列名,也可以是带别名的表达式,例如截断的长文本
+    private final Map<String, String> columns = new LinkedHashMap<>();
+
+    private FieldProjection() {
+        columns.put(ID, ID);
+    }
+
+    public static FieldProjection of() {
+        return new FieldProjection();
+    }
+
+    public FieldProjection field(String property, String column) {
+        columns.put(property, column);
+        return this;
+    }
+
+    /**
+     * @param fields 逗号分隔的属性名,为空时取全部摘要字段
+     * @return 要查询的列
+     */
+    public String[] columns(String fields) {
+        if (StringUtils.isBlank(fields)) {
+            return columns.values().toArray(String[]::new);
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add(ID);
+        for (String field : StringUtils.split(fields, ',')) {
+            String column = columns.get(StringUtils.trim(field));
+            if (column == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的字段: " + StringUtils.trim(field));
+            }
+            selected.add(column);
+        }
+        return selected.toArray(String[]::new);
+    }
+}
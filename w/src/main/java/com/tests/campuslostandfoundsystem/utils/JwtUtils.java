@@ -1,16 +1,24 @@
 package com.tests.campuslostandfoundsystem.utils;
 
+import com.tests.campuslostandfoundsystem.entity.utils.TokenClaims;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
@@ -22,6 +30,9 @@ import java.util.UUID;
 @Component
 @Slf4j
 public class JwtUtils {
+    //  同一个请求内已解析token的缓存属性前缀
+    private static final String CLAIMS_ATTRIBUTE_PREFIX = JwtUtils.class.getName() + ".claims:";
+
     @Value("${Jwt.secretKey}")
     private String secretKey;
     @Value("${Jwt.expiration}")
@@ -29,83 +40,140 @@ public class JwtUtils {
     @Value("${Jwt.refreshExpiration}")
     private Long refreshExpiration;
 
-    //  生成accessToken
-    public String generateAccessToken(String userId, String sessionId) {
+    //  key和parser都是线程安全的,启动时构建一次
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private SecretKey signingKey;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    //  生成accessToken,userEpoch/globalEpoch为签发时的吊销纪元
+    public String generateAccessToken(String userId, String sessionId, long userEpoch, long globalEpoch) {
         Date currentTime = new Date();
-        SecretKey key = generateSecretKey();
         return Jwts.builder()
                 .subject(userId)
                 .id(UUID.randomUUID().toString())
                 .claim("sid", sessionId)
+                .claim("ep", userEpoch)
+                .claim("gep", globalEpoch)
                 .issuedAt(currentTime)
-                .signWith(key)
+                .signWith(signingKey)
                 .expiration(new Date(currentTime.getTime()+expiration))
                 .claim("tokenKind","accessToken")
                 .compact();
     }
     //  生成refreshToken
-    public String generateRefreshToken(String userId, String sessionId) {
+    public String generateRefreshToken(String userId, String sessionId, long userEpoch, long globalEpoch) {
         Date currentTime = new Date();
-        SecretKey key = generateSecretKey();
         return Jwts.builder()
                 .subject(userId)
                 .id(UUID.randomUUID().toString())
                 .claim("sid", sessionId)
+                .claim("ep", userEpoch)
+                .claim("gep", globalEpoch)
                 .issuedAt(currentTime)
-                .signWith(key)
+                .signWith(signingKey)
                 .expiration(new Date(currentTime.getTime()+refreshExpiration))
                 .claim("tokenKind","refreshToken")
                 .compact();
     }
-    //  验证token
-    public boolean validateToken(String token) {
-        try{
-            parseToken(token);
-            return true;
-        }catch (ExpiredJwtException e) {
-            log.info("Token已经过期: {}", e.getMessage());
-            return false;
+
+    //  验签一次得到TokenClaims,同一请求内重复调用直接返回缓存
+    //  签名错误、格式错误时抛出JwtException;过期token返回expired=true的claims
+    public TokenClaims parseClaims(String token) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        String attributeName = CLAIMS_ATTRIBUTE_PREFIX + token;
+        if (attributes != null) {
+            Object cached = attributes.getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+            if (cached instanceof TokenClaims claims) {
+                return claims;
+            }
+        }
+        TokenClaims claims;
+        try {
+            claims = toTokenClaims(jwtParser.parseSignedClaims(token).getPayload(), false);
+        } catch (ExpiredJwtException e) {
+            claims = toTokenClaims(e.getClaims(), true);
+        }
+        if (attributes != null) {
+            attributes.setAttribute(attributeName, claims, RequestAttributes.SCOPE_REQUEST);
+        }
+        return claims;
+    }
+
+    //  解析并验证token,无效或过期时返回null
+    public TokenClaims resolveToken(String token) {
+        try {
+            TokenClaims claims = parseClaims(token);
+            if (claims.isExpired()) {
+                log.info("Token已经过期: sid={}", claims.getSessionId());
+                return null;
+            }
+            return claims;
         } catch (Exception e) {
             log.warn("Token验证失败: {}", e.getMessage());
-            return false;
+            return null;
         }
     }
+
+    //  验证token
+    public boolean validateToken(String token) {
+        return resolveToken(token) != null;
+    }
     //  解析token
     public Claims parseToken(String token) {
-        SecretKey key = generateSecretKey();
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return jwtParser.parseSignedClaims(token).getPayload();
+    }
+
+    private TokenClaims toTokenClaims(Claims claims, boolean expired) {
+        Object sid = claims.get("sid");
+        Object tokenKind = claims.get("tokenKind");
+        return new TokenClaims(
+                claims.getSubject(),
+                sid == null ? null : sid.toString(),
+                claims.getId(),
+                tokenKind == null ? null : tokenKind.toString(),
+                claims.getIssuedAt() == null ? 0L : claims.getIssuedAt().getTime(),
+                claims.getExpiration() == null ? 0L : claims.getExpiration().getTime(),
+                longClaim(claims, "ep"),
+                longClaim(claims, "gep"),
+                expired);
     }
-    //  加密
-    private SecretKey generateSecretKey() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+
+    //  旧token没有纪元字段,按0处理
+    private static long longClaim(Claims claims, String name) {
+        Object value = claims.get(name);
+        return value instanceof Number number ? number.longValue() : 0L;
     }
 
     //    方便的get
-    public Long getExpiration(String token) {
-        try {
-            Claims claims = parseToken(token);
-            return claims.getExpiration().getTime();
-        } catch (ExpiredJwtException e) {
-            return 1L;
-        }
+    //  AT有效期(毫秒);lombok不会为expiration生成getter,因为下面有同名的getExpiration(String)
+    public long getAccessTokenLifetime() {
+        return expiration;
+    }
 
+    public Long getExpiration(String token) {
+        TokenClaims claims = parseClaims(token);
+        return claims.isExpired() ? 1L : claims.getExpiration();
     }
 
     public String getUserId(String token) {
-        Claims claims = parseToken(token);
-        return claims.getSubject();
+        return parseClaims(token).getUserId();
     }
     public String getJti(String token) {
-        Claims claims = parseToken(token);
-        return claims.getId();
+        return parseClaims(token).getJti();
     }
 
     public String getSessionId(String token) {
-        Claims claims = parseToken(token);
-        return claims.get("sid").toString();
+        return parseClaims(token).getSessionId();
     }
 }
@@ -0,0 +1,144 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tests.campuslostandfoundsystem.entity.utils.CursorPage;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 游标(seek)分页
+ * 按(排序列, id)定位上一页最后一行,WHERE里直接跳到下一行开始取,不用OFFSET,也不查COUNT;
+ * 多取一行判断是否还有下一页。排序列只能从白名单里选,游标里记着排序列、方向和最后一行的值,对调用方不透明
+ */
+public final class KeysetPager<T> {
+    private static final String VERSION = "v1";
+    private static final long DEFAULT_SIZE = 10;
+    private static final long MAX_SIZE = 100;
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private final Function<T, Long> idGetter;
+    private final String defaultSortKey;
+    //  属性名 -> 排序列
+    private final Map<String, SortKey<T>> sortKeys = new LinkedHashMap<>();
+
+    private record SortKey<T>(String column, Function<T, Object> getter) {
+    }
+
+    private KeysetPager(Function<T, Long> idGetter, String defaultSortKey) {
+        this.idGetter = idGetter;
+        this.defaultSortKey = defaultSortKey;
+    }
+
+    //  id本身也可以作为排序列
+    public static <T> KeysetPager<T> of(Function<T, Long> idGetter, String defaultSortKey) {
+        KeysetPager<T> pager = new KeysetPager<>(idGetter, defaultSortKey);
+        pager.sortKeys.put("id", new SortKey<>("id", idGetter::apply));
+        return pager;
+    }
+
+    //  排序列需要非空,且应当与id一起建联合索引
+    public KeysetPager<T> sortKey(String property, String column, Function<T, Object> getter) {
+        sortKeys.put(property, new SortKey<>(column, getter));
+        return this;
+    }
+
+    /**
+     * @param qw      已经带好筛选条件的查询,不要再加排序和LIMIT
+     * @param sortBy  首页使用的排序属性,为空时用默认排序;带游标时以游标为准
+     * @param order   首页使用的排序方向,asc或desc,默认desc
+     * @param cursor  上一页返回的nextCursor,首页为空
+     */
+    public CursorPage<T> seek(BaseMapper<T> mapper, QueryWrapper<T> qw, String sortBy, String order,
+                              String cursor, Long pageSize) {
+        long size = pageSize == null || pageSize <= 0 ? DEFAULT_SIZE : Math.min(pageSize, MAX_SIZE);
+        String property;
+        boolean asc;
+        Cursor position = null;
+        if (StringUtils.isNotBlank(cursor)) {
+            position = decode(cursor);
+            property = position.property();
+            asc = position.asc();
+        } else {
+            property = StringUtils.defaultIfBlank(sortBy, defaultSortKey);
+            asc = "asc".equalsIgnoreCase(order);
+        }
+        SortKey<T> sortKey = sortKeys.get(property);
+        if (sortKey == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "游标分页不支持按" + property + "排序");
+        }
+        String column = sortKey.column();
+        boolean byId = "id".equals(column);
+        if (position != null) {
+            Cursor last = position;
+            if (byId) {
+                qw.gt(asc, "id", last.id()).lt(!asc, "id", last.id());
+            } else {
+//              (column, id) > (value, lastId),拆开写才能用上 (column, id) 联合索引
+                qw.and(w -> w.gt(asc, column, last.value()).lt(!asc, column, last.value())
+                        .or(o -> o.eq(column, last.value())
+                                .gt(asc, "id", last.id()).lt(!asc, "id", last.id())));
+            }
+        }
+        qw.orderBy(true, asc, column);
+        if (!byId) {
+            qw.orderBy(true, asc, "id");
+        }
+        qw.last("LIMIT " + (size + 1));
+        List<T> rows = mapper.selectList(qw);
+        boolean hasMore = rows.size() > size;
+        List<T> records = hasMore ? rows.subList(0, (int) size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            T lastRow = records.get(records.size() - 1);
+            nextCursor = encode(new Cursor(property, asc, idGetter.apply(lastRow), format(sortKey.getter().apply(lastRow))));
+        }
+        return new CursorPage<>(records, nextCursor, hasMore, size);
+    }
+
+    private record Cursor(String property, boolean asc, Long id, String value) {
+    }
+
+    //  v1|属性|asc/desc|id|值,值放最后,里面有分隔符也不影响解析
+    private static String encode(Cursor cursor) {
+        String raw = String.join("|", VERSION, cursor.property(), cursor.asc() ? "asc" : "desc",
+                String.valueOf(cursor.id()), StringUtils.defaultString(cursor.value()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 5);
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException(raw);
+            }
+            return new Cursor(parts[1], "asc".equals(parts[2]), Long.parseLong(parts[3]), parts[4]);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "游标无效", e);
+        }
+    }
+
+    //  时间统一成MySQL能直接比较的字面量,保留微秒
+    private static String format(Object value) {
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.format(DATE_TIME_FORMAT);
+        }
+        if (value instanceof Date date) {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(date);
+        }
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,221 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.tests.campuslostandfoundsystem.service.security.UsernameExistenceFilter;
+import com.tests.campuslostandfoundsystem.utils.cache.BoundedLocalCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录限流,位于认证之前,被拒绝的请求不会走到密码哈希和数据库
+ * 第一层:本地按IP的令牌桶,挡住明显的洪水请求,不访问网络;
+ * 第二层:redis里按用户名和按IP的滑动窗口失败计数,一个脚本原子地检查两个窗口。
+ * 客户端IP:直连地址在可信代理列表里时,从X-Forwarded-For右往左取第一个不可信的地址,
+ * 否则就用直连地址;默认信任本机和内网段(nginx等反向代理通常在这里),直接对外暴露时应改成空或实际的代理地址。
+ * 用户名按 UsernameExistenceFilter.normalize 归一化后计数,大小写、重音、尾部空格不同的写法算同一个账号
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginThrottle {
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisStoreTokenUtils redisStoreTokenUtils;
+
+    @Value("${auth.login-throttle.window-millis:900000}")
+    private long windowMillis;
+    @Value("${auth.login-throttle.max-failures-per-username:5}")
+    private long maxFailuresPerUsername;
+    @Value("${auth.login-throttle.max-failures-per-ip:20}")
+    private long maxFailuresPerIp;
+    @Value("${auth.login-throttle.bucket-capacity:10}")
+    private double bucketCapacity;
+    @Value("${auth.login-throttle.bucket-refill-per-second:1}")
+    private double bucketRefillPerSecond;
+    //  可信反向代理的地址或网段,逗号分隔;只有直连地址在这里面时才读取X-Forwarded-For
+    @Value("${auth.login-throttle.trusted-proxies:127.0.0.0/8,::1,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16}")
+    private List<String> trustedProxies;
+    //  本地令牌桶最多跟踪的IP数,超过时淘汰最久没来的;被淘汰的IP下次拿到的是满桶
+    @Value("${auth.login-throttle.max-tracked-ips:100000}")
+    private int maxTrackedIps;
+
+    //  检查两个窗口:先清掉窗口外的失败记录,再比较数量
+    //  KEYS[1]=用户名窗口  KEYS[2]=IP窗口  ARGV[1]=当前毫秒  ARGV[2]=窗口毫秒  ARGV[3]=用户名上限  ARGV[4]=IP上限
+    //  返回 0=放行 1=用户名超限 2=IP超限
+    private static final RedisScript<Long> CHECK_SCRIPT = new DefaultRedisScript<>(
+            "local floor = tonumber(ARGV[1]) - tonumber(ARGV[2]) " +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', floor) " +
+            "if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then return 1 end " +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', floor) " +
+            "if redis.call('ZCARD', KEYS[2]) >= tonumber(ARGV[4]) then return 2 end " +
+            "return 0",
+            Long.class);
+
+    //  记一次失败,两个窗口都写入,过期时间随窗口滑动
+    //  KEYS同上  ARGV[1]=当前毫秒  ARGV[2]=窗口毫秒  ARGV[3]=唯一成员
+    private static final RedisScript<Long> RECORD_FAILURE_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, 2 do " +
+            "  redis.call('ZADD', KEYS[i], ARGV[1], ARGV[3]) " +
+            "  redis.call('PEXPIRE', KEYS[i], ARGV[2]) " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    //  ip -> 令牌桶;闲置到足够回满后过期,回满的桶和新建的桶等价
+    private BoundedLocalCache<String, TokenBucket> buckets;
+    private List<IpAddressMatcher> proxyMatchers;
+
+    private final LongAdder localRejects = new LongAdder();
+    private final LongAdder usernameRejects = new LongAdder();
+    private final LongAdder ipRejects = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        long refillMillis = (long) Math.ceil(bucketCapacity / bucketRefillPerSecond * 1000);
+        buckets = new BoundedLocalCache<>(maxTrackedIps, Math.max(1000L, refillMillis));
+        proxyMatchers = new ArrayList<>();
+        for (String proxy : trustedProxies) {
+            if (StringUtils.isNotBlank(proxy)) {
+                proxyMatchers.add(new IpAddressMatcher(proxy.trim()));
+            }
+        }
+    }
+
+    //  认证前调用,超限时抛出429
+    public void check(String username) {
+        String ip = clientIp();
+        TokenBucket bucket = buckets.get(ip, key -> new TokenBucket(bucketCapacity));
+//      每次访问都重新写入,过期时间从最后一次访问算起,连续请求的IP不会因过期拿到新的满桶
+        buckets.put(ip, bucket);
+        if (!bucket.tryAcquire(bucketCapacity, bucketRefillPerSecond)) {
+            localRejects.increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "请求过于频繁,请稍后再试");
+        }
+        Long result = stringRedisTemplate.execute(CHECK_SCRIPT,
+                List.of(usernameKey(username), ipKey(ip)),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(windowMillis),
+                String.valueOf(maxFailuresPerUsername), String.valueOf(maxFailuresPerIp));
+        if (result != null && result == 1L) {
+            usernameRejects.increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "该账号登录失败次数过多,请稍后再试");
+        }
+        if (result != null && result == 2L) {
+            ipRejects.increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "登录失败次数过多,请稍后再试");
+        }
+    }
+
+    //  用户不存在、密码错误时调用
+    public void recordFailure(String username) {
+        failures.increment();
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.execute(RECORD_FAILURE_SCRIPT,
+                List.of(usernameKey(username), ipKey(clientIp())),
+                String.valueOf(now), String.valueOf(windowMillis), now + ":" + UUID.randomUUID());
+    }
+
+    //  登录成功后清掉该用户名的失败记录;IP窗口保留,防止用一个真账号给撞库IP洗白
+    public void recordSuccess(String username) {
+        stringRedisTemplate.delete(usernameKey(username));
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("trackedIps", (long) buckets.size());
+        stats.put("localRejects", localRejects.sum());
+        stats.put("usernameRejects", usernameRejects.sum());
+        stats.put("ipRejects", ipRejects.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    private String usernameKey(String username) {
+        return redisStoreTokenUtils.getLoginFailCountKey(UsernameExistenceFilter.normalize(username));
+    }
+
+    private String ipKey(String ip) {
+        return redisStoreTokenUtils.getLoginFailCountKey("ip:" + ip);
+    }
+
+    private String clientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return "unknown";
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        String remote = request.getRemoteAddr();
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (!isTrustedProxy(remote) || StringUtils.isBlank(forwardedFor)) {
+            return remote;
+        }
+//      最左边的地址客户端可以随便填,只有可信代理追加的部分可信:从右往左跳过代理自己
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        return hops[0].trim().isEmpty() ? remote : hops[0].trim();
+    }
+
+    //  不是IP字面量(主机名、unknown等)时一律不可信
+    private boolean isTrustedProxy(String address) {
+        for (IpAddressMatcher matcher : proxyMatchers) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 令牌桶,按距离上次取令牌的时间补充
+     */
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(double capacity) {
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        private synchronized boolean tryAcquire(double capacity, double refillPerSecond) {
+            refill(capacity, refillPerSecond);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        private void refill(double capacity, double refillPerSecond) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * refillPerSecond);
+            lastRefillNanos = now;
+        }
+    }
+}
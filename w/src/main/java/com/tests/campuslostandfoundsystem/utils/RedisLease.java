@@ -0,0 +1,48 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * redis租约,多节点下让同一件事同一时刻只有一个节点在做
+ * SET NX PX 加锁,值为本次持有的随机令牌;释放时比对令牌,租约过期后被别人拿走的不会误删
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedisLease {
+    private final StringRedisTemplate stringRedisTemplate;
+
+    //  KEYS[1]=租约键  ARGV[1]=令牌
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    /**
+     * @return 拿到租约时返回令牌,已被占用时返回null;redis不可用时抛出异常,由调用方决定是否降级
+     */
+    public String tryAcquire(String key, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(key, token, ttl);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    public void release(String key, String token) {
+        if (token == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(key), token);
+        } catch (Exception e) {
+            log.warn("释放租约{}失败,等待自然过期: {}", key, e.getMessage());
+        }
+    }
+}
@@ -1,192 +1,301 @@
 package com.tests.campuslostandfoundsystem.utils;
 
-import com.tests.campuslostandfoundsystem.dao.UserDAO;
+import com.tests.campuslostandfoundsystem.entity.enums.TokenVerdict;
 import com.tests.campuslostandfoundsystem.entity.enums.exception.AuthResultCodes;
 import com.tests.campuslostandfoundsystem.entity.enums.exception.UtilsResultCodes;
 import com.tests.campuslostandfoundsystem.entity.utils.RedisTokenInfo;
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import com.tests.campuslostandfoundsystem.entity.utils.TokenClaims;
 import com.tests.campuslostandfoundsystem.exception.AuthException;
 import com.tests.campuslostandfoundsystem.exception.UtilsException;
+import com.tests.campuslostandfoundsystem.utils.tokenstore.TokenStore;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * token会话的统一入口,实际存储由 TokenStore 决定(auth.token-store.type)
+ */
 @Data
 @Component
 @RequiredArgsConstructor
 public class RedisStoreTokenUtils {
-    private final UserDAO  userDAO;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final TokenStore tokenStore;
     private final JwtUtils jwtUtils;
     //   便利的get方法
     private String AUTH_TOKEN_PREFIX = "auth:";
 
+    //   纪元冲突(并发登录或本地视图落后)时的最大重试次数
+    private static final int SAVE_SESSION_ATTEMPTS = 3;
 
-    //   存token--单点登录
-    @Transactional(rollbackFor = Exception.class)
-    public void saveTokens(String userId, String accessToken, String refreshToken) {
-        String atSid = jwtUtils.getSessionId(accessToken);
-        String rtSid = jwtUtils.getSessionId(refreshToken);
-        if (!atSid.equals(rtSid)) {
+    //   各校验结论出现的次数
+    private final Map<TokenVerdict, LongAdder> verdictCounters = newVerdictCounters();
+
+
+    //   签发并保存一个新会话--单点登录,返回AT、RT和sid
+    public RedisTokenInfo createSession(String userId) {
+        String sid = UUID.randomUUID().toString();
+        long[] epochs = tokenStore.nextSessionEpochs(userId);
+        for (int attempt = 0; attempt < SAVE_SESSION_ATTEMPTS; attempt++) {
+            String accessToken = jwtUtils.generateAccessToken(userId, sid, epochs[0], epochs[1]);
+            String refreshToken = jwtUtils.generateRefreshToken(userId, sid, epochs[0], epochs[1]);
+            if (saveTokens(userId, accessToken, refreshToken)) {
+                RedisTokenInfo redisTokenInfo = new RedisTokenInfo();
+                redisTokenInfo.setAccessToken(accessToken);
+                redisTokenInfo.setRefreshToken(refreshToken);
+                redisTokenInfo.setSid(sid);
+                return redisTokenInfo;
+            }
+            long[] current = tokenStore.currentEpochs(userId);
+            epochs = new long[]{current[0] + 1, current[1]};
+        }
+        throw new AuthException(AuthResultCodes.TOKEN_GENERATE_ERROR, "会话纪元冲突,保存token失败");
+    }
+
+    //   存token--单点登录,纪元冲突时返回false
+    public boolean saveTokens(String userId, String accessToken, String refreshToken) {
+        TokenClaims atClaims = jwtUtils.parseClaims(accessToken);
+        TokenClaims rtClaims = jwtUtils.parseClaims(refreshToken);
+        String rtSid = rtClaims.getSessionId();
+        if (!atClaims.getSessionId().equals(rtSid)) {
             throw new AuthException(AuthResultCodes.TOKEN_GENERATE_ERROR, "AT和RT的sessionId不一致,拒绝保存");
         }
-        long expireTime = jwtUtils.getExpiration(refreshToken);
+        long expireTime = rtClaims.remainingMillis();
         if (expireTime <= 0) {
-            return;
+            return true;
         }
 
-        String sidKey = getSidKey(rtSid);
-        Map<String, String> sessionData = Map.of("accessToken", accessToken, "refreshToken", refreshToken);
-        redisTemplate.opsForHash().putAll(sidKey, sessionData);
-        redisTemplate.expire(sidKey, expireTime, TimeUnit.MILLISECONDS);
+        SessionRecord record = new SessionRecord(userId,
+                SessionRecordRedisSerializer.fingerprint(atClaims.getJti()),
+                SessionRecordRedisSerializer.fingerprint(rtClaims.getJti()),
+                rtClaims.getUserEpoch(),
+                rtClaims.getExpiration());
+        return tokenStore.saveSession(rtSid, record, expireTime, rtClaims.getGlobalEpoch());
+    }
 
-        String usernameKey = getUserIdKey(userId);
-        redisTemplate.opsForValue().set(usernameKey, rtSid, expireTime, TimeUnit.MILLISECONDS);
+    //   刷新出新AT后更新会话记录里的AT指纹
+    public boolean rotateAccessToken(TokenClaims refreshClaims, String accessToken) {
+        TokenClaims atClaims = jwtUtils.parseClaims(accessToken);
+        return tokenStore.rotateAccessToken(refreshClaims.getSessionId(),
+                SessionRecordRedisSerializer.fingerprint(refreshClaims.getJti()),
+                SessionRecordRedisSerializer.fingerprint(atClaims.getJti()));
     }
 
 
-    //  获取token
-    @Transactional(rollbackFor = Exception.class)
-    public RedisTokenInfo getTokensByUsername(String userId) {
-        String sid = (String) redisTemplate.opsForValue().get(getUserIdKey(userId));
-        if (sid == null) {
-            return null;
-        }
-        String sidKey = getSidKey(sid);
-        Map<Object, Object> sessionData = redisTemplate.opsForHash().entries(sidKey);
-        String accessToken = (String) sessionData.get("accessToken");
-        String refreshToken = (String) sessionData.get("refreshToken");
-        RedisTokenInfo redisTokenInfo = new RedisTokenInfo();
-        redisTokenInfo.setAccessToken(accessToken);
-        redisTokenInfo.setRefreshToken(refreshToken);
-        redisTokenInfo.setSid(sid);
-        return redisTokenInfo;
+    //  获取该用户当前的会话记录
+    public SessionRecord getSessionByUserId(String userId) {
+        return tokenStore.getSessionByUserId(userId);
     }
 
-    //   查看RT是否存在redis
+    //   查看RT是否存在
     public boolean isRefreshTokenExists(String refreshToken) {
-        String sid = jwtUtils.getSessionId(refreshToken);
-        if (sid == null) {
-            return false;
-        }
-        String sidKey = getSidKey(sid);
-        Map<Object, Object> sessionData = redisTemplate.opsForHash().entries(sidKey);
-        String rt = (String) sessionData.get("refreshToken");
-        return rt != null;
+        return isRefreshTokenExists(jwtUtils.parseClaims(refreshToken));
+    }
+
+    public boolean isRefreshTokenExists(TokenClaims claims) {
+        SessionRecord record = getSession(claims);
+        return record != null
+                && record.getRefreshTokenFingerprint().equals(SessionRecordRedisSerializer.fingerprint(claims.getJti()));
     }
 
-    //   查看AT是否存在redis
+    //   查看AT是否有效:与请求路径同一个校验(本地视图或一次脚本往返),不取回会话记录
     public boolean isAccessTokenExists(String accessToken) {
-        String sid = jwtUtils.getSessionId(accessToken);
+        TokenClaims claims = jwtUtils.resolveToken(accessToken);
+        return claims != null && isAccessTokenExists(claims);
+    }
+
+    public boolean isAccessTokenExists(TokenClaims claims) {
+        return claims.isAccessToken() && verifySession(claims) == TokenVerdict.VALID;
+    }
+
+    private SessionRecord getSession(TokenClaims claims) {
+        String sid = claims.getSessionId();
         if (sid == null) {
-            return false;
+            return null;
         }
-        String sidKey = getSidKey(sid);
-        Map<Object, Object> sessionData = redisTemplate.opsForHash().entries(sidKey);
-        String at = (String) sessionData.get("accessToken");
-        return at != null;
+        return tokenStore.getSession(sid);
     }
 
 
     //  新删除token
     public void deleteTokenByUserId(String userId) {
-        String sid = (String) redisTemplate.opsForValue().get(getUserIdKey(userId));
-        if (sid != null) {
-            redisTemplate.delete(getSidKey(sid));
-        }
-        redisTemplate.delete(getUserIdKey(userId));
+        tokenStore.deleteSessionByUserId(userId);
     }
 
 
-    //   从redis中拉黑
-    public void addBlackListBySid(String sid) {
-        try {
-            if (sid != null) {
-                String sidKey = getSidKey(sid);
-                Map<Object, Object> sessionData = redisTemplate.opsForHash().entries(sidKey);
-                String accessToken = (String) sessionData.get("accessToken");
-                Long expire = jwtUtils.getExpiration(accessToken);
-                redisTemplate.opsForValue().set(getBlackListKey(sid), 1, expire, TimeUnit.MILLISECONDS);
-            } else {
-                throw new UtilsException(UtilsResultCodes.GET_JTI_EXCEPTION, "sid为空");
-            }
-        } catch (Exception e) {
-            throw new UtilsException(UtilsResultCodes.GET_JTI_EXCEPTION, "获取sid异常：" + e.getMessage());
-        }
+    //   吊销该用户的所有会话("退出所有设备")
+    public void revokeUser(String userId) {
+        tokenStore.revokeUser(userId);
+    }
 
+    //   吊销所有用户的所有会话(例如密码策略变更后)
+    public void revokeAll() {
+        tokenStore.revokeAll();
     }
 
-    //
-    public void addBlackListByUsername(String userId) {
-        String sid = (String) redisTemplate.opsForValue().get(getUserIdKey(userId));
-        try {
-            if (sid != null) {
-                String sidKey = getSidKey(sid);
-//                Long expire = redisTemplate.getExpire(sidKey, TimeUnit.MILLISECONDS);
-                Map<Object, Object> sessionData = redisTemplate.opsForHash().entries(sidKey);
-                String accessToken = (String) sessionData.get("accessToken");
-                Long expire = jwtUtils.getExpiration(accessToken);
-                redisTemplate.opsForValue().set(getBlackListKey(sid), 1, expire, TimeUnit.MILLISECONDS);
-            } else {
-                throw new UtilsException(UtilsResultCodes.GET_JTI_EXCEPTION, "sid为空");
-            }
-        } catch (Exception e) {
-            throw new UtilsException(UtilsResultCodes.GET_JTI_EXCEPTION, "获取sid异常：" + e.getMessage());
+
+    //  判断RT是否合法、会话是否存在、是否已吊销、RT是否可用
+    public boolean isRefreshTokenValid(String refreshToken) {
+        return verifyToken(refreshToken) == TokenVerdict.VALID;
+    }
+
+    //  claims由调用方验签一次后传入,这里不再解析token
+    public boolean isRefreshTokenValid(TokenClaims claims) {
+        return claims.isRefreshToken() && verifySession(claims) == TokenVerdict.VALID;
+    }
+
+    //  请求路径上的AT校验:验签一次 + 存储校验一次
+    public TokenVerdict verifyToken(String token) {
+        TokenClaims claims = jwtUtils.resolveToken(token);
+        if (claims == null) {
+            return record(TokenVerdict.INVALID);
         }
+        return verifySession(claims);
     }
 
+    //  已验签的token,交给存储得出结论
+    public TokenVerdict verifySession(TokenClaims claims) {
+        String sid = claims.getSessionId();
+        if (sid == null || claims.isExpired()) {
+            return record(TokenVerdict.INVALID);
+        }
+        return record(tokenStore.verify(claims.getUserId(), sid, claims.isRefreshToken(),
+                SessionRecordRedisSerializer.fingerprint(claims.getJti()),
+                claims.getUserEpoch(), claims.getGlobalEpoch()));
+    }
+
+    //  用户被删除后打标记,标记存活一个RT周期,期间该用户的所有token都判定为USER_GONE
+    //  在事务中调用时等提交后再执行,回滚时不会留下删除标记
+    public void markUserGone(String userId) {
+        afterCommit(() -> {
+//          先吊销,本地视图才能感知到
+            revokeUser(userId);
+            deleteTokenByUserId(userId);
+            tokenStore.markUserGone(userId, jwtUtils.getRefreshExpiration());
+        });
+    }
 
-    //   检测是否在黑名单
+    //  各结论的累计次数
+    public Map<String, Long> getVerdictStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        verdictCounters.forEach((verdict, counter) -> stats.put(verdict.name(), counter.sum()));
+        return stats;
+    }
+
+    //  会话内存报告:旧布局(hash里两个完整JWT的json字符串)和紧凑记录的每会话字节数,
+    //  以及存储实现给出的抽样占用
+    public Map<String, Long> getSessionMemoryReport(int sampleSize) {
+        String userId = "10000000";
+        String sid = UUID.randomUUID().toString();
+        String accessToken = jwtUtils.generateAccessToken(userId, sid, 1L, 0L);
+        String refreshToken = jwtUtils.generateRefreshToken(userId, sid, 1L, 0L);
+        GenericJackson2JsonRedisSerializer legacySerializer = new GenericJackson2JsonRedisSerializer();
+        long legacyBytes = "auth:sid:".length() + sid.length()
+                + "accessToken".length() + legacySerializer.serialize(accessToken).length
+                + "refreshToken".length() + legacySerializer.serialize(refreshToken).length;
+        TokenClaims atClaims = jwtUtils.parseClaims(accessToken);
+        TokenClaims rtClaims = jwtUtils.parseClaims(refreshToken);
+        long compactBytes = "auth:s:".length() + sid.length() + SessionRecordRedisSerializer.encode(new SessionRecord(userId,
+                SessionRecordRedisSerializer.fingerprint(atClaims.getJti()),
+                SessionRecordRedisSerializer.fingerprint(rtClaims.getJti()),
+                rtClaims.getUserEpoch(), rtClaims.getExpiration())).length();
+
+        Map<String, Long> report = new LinkedHashMap<>();
+        report.put("legacyPayloadBytesPerSession", legacyBytes);
+        report.put("compactPayloadBytesPerSession", compactBytes);
+        report.putAll(tokenStore.getMemoryReport(sampleSize));
+        return report;
+    }
+
+    //   以下是纪元吊销之前的接口,保留给还没迁移到 verifySession 的调用方
+
+    /**
+     * @deprecated 已没有按sid的黑名单,用 {@link #verifySession(TokenClaims)};
+     * 会话不存在或会话纪元落后于用户当前纪元时视为已拉黑
+     */
+    @Deprecated
     public boolean isBlackListBySid(String sid) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(getBlackListKey(sid)));
+        SessionRecord record = sid == null ? null : tokenStore.getSession(sid);
+        return record == null || record.getUserEpoch() < tokenStore.currentEpochs(record.getUserId())[0];
     }
 
+    /**
+     * @deprecated 用 {@link #revokeUser(String)},吊销的是该会话所属用户的全部会话
+     */
+    @Deprecated
+    public void addBlackListBySid(String sid) {
+        SessionRecord record = sid == null ? null : tokenStore.getSession(sid);
+        if (record == null) {
+            throw new UtilsException(UtilsResultCodes.GET_JTI_EXCEPTION, "sid为空或会话不存在");
+        }
+        revokeUser(record.getUserId());
+    }
 
+    /**
+     * @deprecated 用 {@link #revokeUser(String)}
+     */
+    @Deprecated
+    public void addBlackListByUsername(String userId) {
+        revokeUser(userId);
+    }
 
-    //  判断RT是否合法、是否存在redis、是否在redis黑名单、RT是否可用
-    public boolean isRefreshTokenValid(String refreshToken) {
-        String sid = jwtUtils.getSessionId(refreshToken);
+    /**
+     * @deprecated 会话里只保存token指纹,不再能取回完整的AT/RT,返回值只有sid
+     */
+    @Deprecated
+    public RedisTokenInfo getTokensByUsername(String userId) {
+        String sid = tokenStore.getSessionIdByUserId(userId);
         if (sid == null) {
-            return false;
-        }
-        if (!jwtUtils.validateToken(refreshToken)) {
-            return false;
-        }
-        String jtiKey = getJtiKey(sid);
-        if (!isRefreshTokenExists(refreshToken)) {
-            return false;
-        }
-        if (isBlackListBySid(sid)) {
-            return false;
-        }
-        if (userDAO.selectById(jwtUtils.getUserId(refreshToken)) == null) {
-            return false;
+            return null;
         }
-        return true;
+        RedisTokenInfo redisTokenInfo = new RedisTokenInfo();
+        redisTokenInfo.setSid(sid);
+        return redisTokenInfo;
     }
 
-    //  根据username获取RT
-    public String getRefreshTokenByUsername(String username) {
-        try {
-            RedisTokenInfo tokens = getTokensByUsername(username);
-            if (tokens == null) {
-                return null;
-            }
-            String refreshToken = tokens.getRefreshToken();
-            if (refreshToken == null) {
-                return null;
-            }
-            return refreshToken;
-        } catch (Exception e) {
-            throw new UtilsException(UtilsResultCodes.GET_TOKEN_EXCEPTION, "获取RT异常：" + e.getMessage());
+    /**
+     * @deprecated 会话key由 TokenStore 实现决定,这里返回redis实现的紧凑记录key
+     */
+    @Deprecated
+    public String getSidKey(String sid) {
+        return AUTH_TOKEN_PREFIX + "s:" + sid;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private TokenVerdict record(TokenVerdict verdict) {
+        verdictCounters.get(verdict).increment();
+        return verdict;
+    }
 
+    private static Map<TokenVerdict, LongAdder> newVerdictCounters() {
+        Map<TokenVerdict, LongAdder> counters = new EnumMap<>(TokenVerdict.class);
+        for (TokenVerdict verdict : TokenVerdict.values()) {
+            counters.put(verdict, new LongAdder());
+        }
+        return counters;
     }
- 
+
 
 
     public String getRefreshTokenKey(String refreshToken) {
@@ -195,22 +304,10 @@ public class RedisStoreTokenUtils {
     public String getAccessTokenKey(String accessToken) {
         return AUTH_TOKEN_PREFIX +"accessToken:"+ accessToken;
     }
-    public String getUserIdKey(String userId) {
-        return AUTH_TOKEN_PREFIX +"userId:"+ userId;
-    }
-
     public String getJtiKey(String jti) {
         return AUTH_TOKEN_PREFIX + "jti:" + jti;
     }
-
-    public String getSidKey(String sid) {
-        return AUTH_TOKEN_PREFIX + "sid:" + sid;
-    }
-    public String getBlackListKey(String token) {
-        return AUTH_TOKEN_PREFIX +"blackList:"+ token;
-    }
     public String getLoginFailCountKey(String username) {
         return AUTH_TOKEN_PREFIX +"loginFailCount:"+ username;
     }
 }
-
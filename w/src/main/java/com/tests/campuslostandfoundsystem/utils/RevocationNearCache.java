@@ -0,0 +1,332 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.tests.campuslostandfoundsystem.utils.cache.BoundedLocalCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话与吊销状态的进程内视图
+ * 吊销很少、校验很多:本地保存 userId -> 纪元、全局纪元、sid -> 当前AT指纹 和已删除用户,
+ * 视图健康时AT校验完全在本地得出结论(有效或已吊销),不访问redis。
+ * 所有改变校验结论的写操作(建会话、刷新AT、删会话、吊销、删除用户)都在同一个脚本里给事件编号,
+ * 写入有上限的变更日志(zset,分数即序号)并通过pub/sub广播;本地按序号应用,
+ * 定期只拉取上次应用之后的日志补齐丢失的消息,日志已被截断(缺口)时清空视图从头积累,不扫描整个键空间。
+ * 视图最多落后 maxStalenessMillis,超过、订阅断开或信息不足时返回UNKNOWN,由调用方回退到redis校验。
+ * 只在redis存储下启用,local存储本身就在进程内
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "auth.token-store.type", havingValue = "redis", matchIfMissing = true)
+public class RevocationNearCache implements MessageListener {
+    public static final String REVOCATION_CHANNEL = "auth:revocation";
+    public static final String USER_EPOCH_PREFIX = "auth:epoch:user:";
+    public static final String GLOBAL_EPOCH_KEY = "auth:epoch:global";
+    public static final String CHANGE_SEQ_KEY = "auth:revocation:seq";
+    public static final String CHANGE_LOG_KEY = "auth:revocation:log";
+
+    //  脚本里共用的事件函数:编号 -> 写日志并截断到logSize条 -> 广播 "序号#事件"
+    public static final String EMIT_FUNCTION =
+            "local function emit(seqKey, logKey, channel, logSize, event) " +
+            "local seq = redis.call('INCR', seqKey) " +
+            "local msg = seq .. '#' .. event " +
+            "redis.call('ZADD', logKey, seq, msg) " +
+            "redis.call('ZREMRANGEBYRANK', logKey, 0, -(tonumber(logSize) + 1)) " +
+            "redis.call('PUBLISH', channel, msg) " +
+            "return seq " +
+            "end ";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${auth.revocation.near-cache.enabled:true}")
+    private boolean enabled;
+    @Value("${auth.revocation.near-cache.max-staleness-millis:60000}")
+    private long maxStalenessMillis;
+    @Value("${auth.revocation.near-cache.max-sessions:100000}")
+    private int maxSessions;
+    //  本地记住的AT指纹多久后必须重新问一次redis,兜住会话在redis里自然过期的情况
+    @Value("${auth.revocation.near-cache.session-ttl-millis:60000}")
+    private long sessionTtlMillis;
+    @Value("${auth.revocation.change-log-size:10000}")
+    private int changeLogSize;
+
+    //  userId -> 当前纪元,只记录见过的用户;没有记录时无法判定,返回UNKNOWN
+    private final Map<String, Long> userEpochs = new ConcurrentHashMap<>();
+    private volatile long globalEpoch = 0L;
+    //  sid -> 当前AT指纹
+    private BoundedLocalCache<String, String> sessionFingerprints;
+    //  userId -> 删除标记的过期时间
+    private final Map<String, Long> goneUsers = new ConcurrentHashMap<>();
+    //  已按顺序连续应用到的日志序号,-1表示还没对过账
+    private long appliedSeq = -1L;
+    //  本地视图每变化一次+1,用来判断一次redis校验期间有没有事件到达
+    private volatile long version = 0L;
+    private volatile long lastSyncAt = 0L;
+
+    //  本地给出并被采用的结论 / 回退到redis 的次数
+    private final LongAdder localValid = new LongAdder();
+    private final LongAdder localRevoked = new LongAdder();
+    private final LongAdder redisFallbacks = new LongAdder();
+    private final LongAdder eventsApplied = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    /**
+     * 本地视图对一个AT的判断
+     */
+    public enum Decision {
+        VALID, REVOKED, UNKNOWN
+    }
+
+    @PostConstruct
+    public void init() {
+        sessionFingerprints = new BoundedLocalCache<>(maxSessions, sessionTtlMillis);
+        if (!enabled) {
+            return;
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(REVOCATION_CHANNEL));
+        try {
+            resync();
+        } catch (Exception e) {
+            log.warn("吊销本地视图初始化失败,先回退到redis校验: {}", e.getMessage());
+        }
+    }
+
+    //  视图是否可信:开启、订阅在运行、最近一次对账在staleness窗口内
+    public boolean isHealthy() {
+        return enabled
+                && listenerContainer.isRunning()
+                && System.currentTimeMillis() - lastSyncAt <= maxStalenessMillis;
+    }
+
+    //  纪元小于视图 -> 已吊销;纪元等于视图且AT指纹就是这个会话当前的指纹 -> 有效;其余 -> UNKNOWN
+    public Decision check(String userId, String sid, String fingerprint, long tokenUserEpoch, long tokenGlobalEpoch) {
+        if (!isHealthy()) {
+            return Decision.UNKNOWN;
+        }
+        Long currentUser = userEpochs.get(userId);
+        if (tokenGlobalEpoch < globalEpoch || (currentUser != null && tokenUserEpoch < currentUser)) {
+            localRevoked.increment();
+            return Decision.REVOKED;
+        }
+        if (currentUser == null || tokenUserEpoch != currentUser || tokenGlobalEpoch != globalEpoch
+                || isGone(userId) || !fingerprint.equals(sessionFingerprints.get(sid))) {
+            return Decision.UNKNOWN;
+        }
+        localValid.increment();
+        return Decision.VALID;
+    }
+
+    public void recordRedisFallback() {
+        redisFallbacks.increment();
+    }
+
+    //  redis校验前取一次,校验通过后连同结果交给 recordValid
+    public long version() {
+        return version;
+    }
+
+    //  redis判定有效后记住这个会话;校验期间有事件到达(版本变了)时不记,免得用旧结论覆盖新事件
+    public synchronized void recordValid(String userId, String sid, String fingerprint,
+                                         long userEpoch, long globalEpoch, long versionBefore) {
+        applyUser(userId, userEpoch);
+        applyGlobal(globalEpoch);
+        if (enabled && version == versionBefore) {
+            sessionFingerprints.put(sid, fingerprint);
+        }
+    }
+
+    //  新会话使用的纪元:{用户纪元+1, 全局纪元};视图不完整时由保存脚本发现冲突后重试
+    public long[] nextSessionEpochs(String userId) {
+        return new long[]{userEpochs.getOrDefault(userId, 0L) + 1, globalEpoch};
+    }
+
+    //  直接从redis读取纪元并写入视图,保存会话发生冲突时使用
+    public long[] reloadEpochs(String userId) {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(List.of(USER_EPOCH_PREFIX + userId, GLOBAL_EPOCH_KEY));
+        long user = parseLong(values == null ? null : values.get(0));
+        long global = parseLong(values == null ? null : values.get(1));
+        applyUser(userId, user);
+        applyGlobal(global);
+        return new long[]{user, global};
+    }
+
+    public int getChangeLogSize() {
+        return changeLogSize;
+    }
+
+    //  消息格式: 序号#事件;只有紧接着上一个序号时才推进appliedSeq,否则留给resync按序补齐
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('#');
+        if (separator < 0) {
+            log.warn("无法解析的吊销消息: {}", body);
+            return;
+        }
+        long seq = parseLong(body.substring(0, separator));
+        synchronized (this) {
+            apply(body.substring(separator + 1));
+            if (appliedSeq >= 0 && seq == appliedSeq + 1) {
+                appliedSeq = seq;
+            }
+        }
+    }
+
+    //  定期只拉取上次应用之后的日志,开销与这段时间的变更数成正比,与用户总数无关
+    @Scheduled(fixedDelayString = "${auth.revocation.near-cache.resync-millis:30000}")
+    public void resync() {
+        if (!enabled) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        long latest = parseLong(stringRedisTemplate.opsForValue().get(CHANGE_SEQ_KEY));
+        long from;
+        synchronized (this) {
+            from = appliedSeq;
+        }
+        List<ZSetOperations.TypedTuple<String>> entries = new ArrayList<>();
+        if (from >= 0 && latest > from) {
+            Set<ZSetOperations.TypedTuple<String>> range = stringRedisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(CHANGE_LOG_KEY, from + 1, latest);
+            if (range != null) {
+                entries.addAll(range);
+            }
+        }
+        synchronized (this) {
+            if (from < 0 || latest < from) {
+//              首次对账,或redis数据丢失导致序号回退
+                reset(latest);
+            } else if (latest > appliedSeq) {
+//              拉取期间消息可能已经推进了appliedSeq,replay会跳过已应用的部分
+                replay(entries, latest);
+            }
+        }
+        goneUsers.values().removeIf(goneUntil -> goneUntil <= startedAt);
+        lastSyncAt = startedAt;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("trackedUsers", (long) userEpochs.size());
+        stats.put("trackedSessions", (long) sessionFingerprints.size());
+        stats.put("globalEpoch", globalEpoch);
+        stats.put("appliedSeq", appliedSeq);
+        stats.put("localValid", localValid.sum());
+        stats.put("localRevoked", localRevoked.sum());
+        stats.put("redisFallbacks", redisFallbacks.sum());
+        stats.put("eventsApplied", eventsApplied.sum());
+        stats.put("resets", resets.sum());
+        stats.put("millisSinceSync", System.currentTimeMillis() - lastSyncAt);
+        return stats;
+    }
+
+    //  纪元只增不减,乱序到达的旧消息不会覆盖新值
+    public void applyUser(String userId, long epoch) {
+        if (epoch > 0) {
+            userEpochs.merge(userId, epoch, Math::max);
+        }
+    }
+
+    public synchronized void applyGlobal(long epoch) {
+        if (epoch > globalEpoch) {
+            globalEpoch = epoch;
+        }
+    }
+
+    //  从appliedSeq+1开始必须连续,否则中间的事件已被截断,只能清空重来
+    private void replay(List<ZSetOperations.TypedTuple<String>> entries, long latest) {
+        long expected = appliedSeq + 1;
+        for (ZSetOperations.TypedTuple<String> entry : entries) {
+            long seq = entry.getScore() == null ? -1L : entry.getScore().longValue();
+            if (seq < expected) {
+                continue;
+            }
+            if (seq != expected) {
+                break;
+            }
+            String value = entry.getValue();
+            apply(value.substring(value.indexOf('#') + 1));
+            appliedSeq = seq;
+            expected++;
+        }
+        if (appliedSeq < latest) {
+            log.warn("吊销变更日志有缺口({} -> {}),清空本地视图", appliedSeq, latest);
+            reset(latest);
+        }
+    }
+
+    //  清空后所有判断都是UNKNOWN,由redis校验结果重新积累;纪元只能由事件或校验结果写入,清空不会误判有效
+    private void reset(long latest) {
+        userEpochs.clear();
+        sessionFingerprints.invalidateAll();
+        goneUsers.clear();
+        globalEpoch = parseLong(stringRedisTemplate.opsForValue().get(GLOBAL_EPOCH_KEY));
+        appliedSeq = latest;
+        version++;
+        resets.increment();
+    }
+
+    //  事件: u|userId|纪元  g|纪元  a|sid|AT指纹  d|sid  x|userId|删除标记过期时间
+    private void apply(String event) {
+        String[] parts = event.split("\\|");
+        try {
+            switch (parts[0]) {
+                case "u" -> applyUser(parts[1], Long.parseLong(parts[2]));
+                case "g" -> applyGlobal(Long.parseLong(parts[1]));
+                case "a" -> sessionFingerprints.put(parts[1], parts[2]);
+                case "d" -> sessionFingerprints.invalidate(parts[1]);
+                case "x" -> goneUsers.merge(parts[1], Long.parseLong(parts[2]), Math::max);
+                default -> log.warn("未知的吊销事件: {}", event);
+            }
+        } catch (RuntimeException e) {
+            log.warn("无法解析的吊销事件: {}", event);
+            return;
+        }
+        version++;
+        eventsApplied.increment();
+    }
+
+    private boolean isGone(String userId) {
+        Long goneUntil = goneUsers.get(userId);
+        if (goneUntil == null) {
+            return false;
+        }
+        if (goneUntil > System.currentTimeMillis()) {
+            return true;
+        }
+        goneUsers.remove(userId, goneUntil);
+        return false;
+    }
+
+    private static long parseLong(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
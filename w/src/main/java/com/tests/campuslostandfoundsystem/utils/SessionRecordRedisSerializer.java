@@ -0,0 +1,76 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * 会话记录的紧凑序列化
+ * 布局: 1|userId|AT指纹|RT指纹|纪元|过期时间(36进制毫秒),约80字节
+ * 原来是两个完整JWT的json字符串(带引号)放在hash里,每个会话接近1KB
+ * jti是UUID时指纹为16字节的base64url(22个字符),其它jti原样保存
+ */
+public class SessionRecordRedisSerializer implements RedisSerializer<SessionRecord> {
+    public static final SessionRecordRedisSerializer INSTANCE = new SessionRecordRedisSerializer();
+
+    private static final String VERSION = "1";
+    private static final char SEPARATOR = '|';
+
+    @Override
+    public byte[] serialize(SessionRecord record) throws SerializationException {
+        if (record == null) {
+            return null;
+        }
+        return encode(record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public SessionRecord deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return decode(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    public static String encode(SessionRecord record) {
+        return VERSION + SEPARATOR + record.getUserId()
+                + SEPARATOR + record.getAccessTokenFingerprint()
+                + SEPARATOR + record.getRefreshTokenFingerprint()
+                + SEPARATOR + record.getUserEpoch()
+                + SEPARATOR + Long.toString(record.getExpiresAt(), 36);
+    }
+
+    public static SessionRecord decode(String value) {
+        String[] parts = value.split("\\|");
+        if (parts.length != 6 || !VERSION.equals(parts[0])) {
+            throw new SerializationException("无法识别的会话记录: " + value);
+        }
+        try {
+            return new SessionRecord(parts[1], parts[2], parts[3],
+                    Long.parseLong(parts[4]), Long.parseLong(parts[5], 36));
+        } catch (NumberFormatException e) {
+            throw new SerializationException("无法识别的会话记录: " + value, e);
+        }
+    }
+
+    //  jti -> 指纹
+    public static String fingerprint(String jti) {
+        if (jti == null) {
+            return "";
+        }
+        try {
+            UUID uuid = UUID.fromString(jti);
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        } catch (IllegalArgumentException e) {
+            return jti.replace(SEPARATOR, '_');
+        }
+    }
+}
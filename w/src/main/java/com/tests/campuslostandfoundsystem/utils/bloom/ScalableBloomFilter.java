@@ -0,0 +1,140 @@
+package com.tests.campuslostandfoundsystem.utils.bloom;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 可扩容的布隆过滤器
+ * 由若干层普通布隆过滤器组成,当前层装满后新开一层,容量翻倍、误判率减半,各层误判率之和不超过设定值;
+ * 查询时任意一层命中即"可能存在",全部未命中即"一定不存在"。
+ * 位数组用AtomicLongArray,mightContain不加锁,put和扩容串行执行
+ */
+public class ScalableBloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final double initialFpp;
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile Stage[] snapshot;
+
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        if (initialCapacity <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive and fpp in (0,1)");
+        }
+        this.initialFpp = fpp;
+        addStage(initialCapacity, fpp / 2);
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        for (Stage stage : snapshot) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //  已经可能存在时不再写入,避免重复元素占用新层的容量
+    public synchronized void put(String value) {
+        long hash = hash(value);
+        for (Stage stage : snapshot) {
+            if (stage.mightContain(hash)) {
+                return;
+            }
+        }
+        Stage current = stages.get(stages.size() - 1);
+        if (current.count >= current.capacity) {
+            current = addStage(current.capacity * 2, current.fpp / 2);
+        }
+        current.put(hash);
+    }
+
+    public synchronized Map<String, Long> getStats() {
+        long count = 0;
+        long bits = 0;
+        for (Stage stage : stages) {
+            count += stage.count;
+            bits += stage.bitSize;
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("stages", (long) stages.size());
+        stats.put("elements", count);
+        stats.put("bits", bits);
+        stats.put("fppPpm", Math.round(initialFpp * 1_000_000));
+        return stats;
+    }
+
+    private Stage addStage(long capacity, double fpp) {
+        Stage stage = new Stage(capacity, fpp);
+        stages.add(stage);
+        snapshot = stages.toArray(new Stage[0]);
+        return stage;
+    }
+
+    //  FNV-1a 64位,再做一次混合让高低位都均匀
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * 一层普通布隆过滤器,k个位置由两个32位哈希双重散列得到
+     */
+    private static final class Stage {
+        private final long capacity;
+        private final double fpp;
+        private final long bitSize;
+        private final int hashCount;
+        private final AtomicLongArray bits;
+        private long count;
+
+        private Stage(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            long size = (long) Math.ceil(-capacity * Math.log(fpp) / (LN2 * LN2));
+            this.bitSize = Math.max(64, (size + 63) / 64 * 64);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / capacity * LN2));
+            this.bits = new AtomicLongArray(Math.toIntExact(bitSize / 64));
+        }
+
+        private void put(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = Math.floorMod(h1 + (long) i * h2, bitSize);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long old;
+                do {
+                    old = bits.get(word);
+                } while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+            }
+            count++;
+        }
+
+        private boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = Math.floorMod(h1 + (long) i * h2, bitSize);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
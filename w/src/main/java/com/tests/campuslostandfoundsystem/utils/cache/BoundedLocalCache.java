@@ -0,0 +1,111 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 有容量上限和过期时间的进程内缓存
+ * 超过上限时淘汰最久未访问的条目(LRU),条目写入ttlMillis后过期
+ */
+public class BoundedLocalCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    //  accessOrder=true,迭代顺序即最久未访问在前
+    private final LinkedHashMap<K, Node<V>> map;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private record Node<V>(V value, long expireAt) {
+    }
+
+    public BoundedLocalCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("maxSize和ttlMillis必须大于0");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Node<V>> eldest) {
+                if (size() > BoundedLocalCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //  不存在或已过期时返回null
+    public V get(K key) {
+        synchronized (map) {
+            Node<V> node = map.get(key);
+            if (node == null) {
+                misses.increment();
+                return null;
+            }
+            if (node.expireAt() <= System.currentTimeMillis()) {
+                map.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return node.value();
+        }
+    }
+
+    //  未命中时调用loader加载并写入;loader在锁外执行,返回null时不缓存
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        long expireAt = System.currentTimeMillis() + ttlMillis;
+        synchronized (map) {
+            map.put(key, new Node<>(value, expireAt));
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (map) {
+            map.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("size", (long) size());
+        stats.put("maxSize", (long) maxSize);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+}
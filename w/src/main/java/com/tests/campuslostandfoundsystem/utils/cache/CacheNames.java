@@ -0,0 +1,19 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+/**
+ * 两级缓存的缓存名,各自的容量和过期时间在 CacheConfig 里配置
+ */
+public final class CacheNames {
+    //  失物列表页、首页游标分页
+    public static final String ITEM_PAGES = "items:pages";
+    public static final String ITEM_TYPE_COUNT = "items:typeCount";
+    //  寻物启事列表页、首页游标分页
+    public static final String NOTICE_PAGES = "notices:pages";
+    //  当前登录用户的个人信息,按用户区分
+    public static final String STUDENT_INFO = "students:info";
+    public static final String ADMIN_INFO = "admins:info";
+    public static final String ITEM_ADMIN_INFO = "itemAdmins:info";
+
+    private CacheNames() {
+    }
+}
@@ -0,0 +1,21 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Method;
+
+/**
+ * "获取/修改当前用户信息"这类无参方法的缓存键:当前认证主体的名字
+ * 每个缓存只存一种档案,同一个用户在同一个缓存里只有一条
+ */
+public class CurrentUserKeyGenerator implements KeyGenerator {
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+//      没有登录时方法本身会报错,不会写入缓存,键取什么都可以
+        return authentication == null || authentication.getName() == null ? "" : authentication.getName();
+    }
+}
@@ -0,0 +1,166 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tests.campuslostandfoundsystem.dao.TableStatsDAO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 分页总数缓存
+ * 按 表 + 规范化后的筛选条件 缓存COUNT结果,命中时分页查询关掉COUNT,只查当页数据;
+ * 每张表有一个写入代数,写入后代数+1,旧代数下的条目不再命中(由LRU和TTL回收),写入通过redis广播给其他节点。
+ * 估算模式:先做一次有上限的计数,不超过上限就是精确值;超过上限且没有筛选条件时用表统计信息,有筛选条件时返回上限
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageCountCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "page:count";
+
+    private final TableStatsDAO tableStatsDAO;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${pagination.count-cache.max-size:2000}")
+    private int maxSize;
+    @Value("${pagination.count-cache.ttl-millis:30000}")
+    private long ttlMillis;
+    @Value("${pagination.count-cache.estimate-cap:1000}")
+    private long estimateCap;
+
+    private BoundedLocalCache<String, Long> cache;
+    //  表名 -> 写入代数
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final LongAdder exactCounts = new LongAdder();
+    private final LongAdder cappedCounts = new LongAdder();
+    private final LongAdder statisticsEstimates = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cache = new BoundedLocalCache<>(maxSize, ttlMillis);
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * @param countQuery 只带筛选条件的查询,估算模式下用来做有上限的计数
+     * @param filterKey  由 filterKey(...) 生成的规范化筛选条件
+     * @param estimate   是否允许返回估算的总数
+     */
+    public <T> Page<T> selectPage(BaseMapper<T> mapper, Page<T> page, QueryWrapper<T> qw,
+                                  Supplier<QueryWrapper<T>> countQuery, String table, String filterKey, boolean estimate) {
+//      先取代数再计数,计数期间发生的写入会让这次写入的条目直接作废
+        String key = table + "#" + generations.getOrDefault(table, 0L) + (estimate ? "|e|" : "|x|") + filterKey;
+        Long total = cache.get(key);
+        if (total == null && !estimate) {
+            exactCounts.increment();
+            Page<T> result = mapper.selectPage(page, qw);
+            cache.put(key, result.getTotal());
+            return result;
+        }
+        if (total == null) {
+            total = estimateTotal(mapper, countQuery.get(), table, isUnfiltered(filterKey));
+            cache.put(key, total);
+        }
+        page.setSearchCount(false);
+        Page<T> result = mapper.selectPage(page, qw);
+        result.setTotal(total);
+        return result;
+    }
+
+    //  表有写入后调用;在事务中时等提交后再失效
+    public void invalidate(String table) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateAndPublish(table);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateAndPublish(table);
+            }
+        });
+    }
+
+    //  去掉首尾空白、统一小写,空值和空串视为同一个条件;
+    //  调用方的查询必须按去掉首尾空白后的值查(统一小写靠库的大小写不敏感排序规则),否则同一个键会对应不同的结果
+    public static String filterKey(Object... parts) {
+        return String.join("|", Arrays.stream(parts)
+                .map(part -> part == null ? "" : StringUtils.trimToEmpty(Objects.toString(part)).toLowerCase(Locale.ROOT))
+                .toList());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        bump(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>(cache.getStats());
+        stats.put("exactCounts", exactCounts.sum());
+        stats.put("cappedCounts", cappedCounts.sum());
+        stats.put("statisticsEstimates", statisticsEstimates.sum());
+        return stats;
+    }
+
+    private <T> long estimateTotal(BaseMapper<T> mapper, QueryWrapper<T> countQuery, String table, boolean unfiltered) {
+        cappedCounts.increment();
+        countQuery.select("id").last("LIMIT " + (estimateCap + 1));
+        long capped = mapper.selectObjs(countQuery).size();
+        if (capped <= estimateCap) {
+            return capped;
+        }
+        if (unfiltered) {
+            try {
+                Long rows = tableStatsDAO.selectEstimatedRows(table);
+                if (rows != null && rows > capped) {
+                    statisticsEstimates.increment();
+                    return rows;
+                }
+            } catch (Exception e) {
+                log.warn("读取{}表统计信息失败: {}", table, e.getMessage());
+            }
+        }
+        return capped;
+    }
+
+    private static boolean isUnfiltered(String filterKey) {
+        return filterKey.replace("|", "").isEmpty();
+    }
+
+    private void invalidateAndPublish(String table) {
+        bump(table);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, table);
+        } catch (Exception e) {
+            log.warn("分页总数失效广播失败: {}", e.getMessage());
+        }
+    }
+
+    private void bump(String table) {
+        generations.merge(table, 1L, Long::sum);
+    }
+}
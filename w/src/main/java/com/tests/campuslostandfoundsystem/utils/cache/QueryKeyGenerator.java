@@ -0,0 +1,37 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.lang.reflect.Method;
+
+/**
+ * 查询类方法的缓存键:方法名 + 参数的规范化json
+ * 属性按名字排序、忽略null,同一组查询条件不论字段顺序、是否显式传空都得到同一个键
+ */
+public class QueryKeyGenerator implements KeyGenerator {
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        return key(method.getName(), params);
+    }
+
+    public static String key(String prefix, Object... params) {
+        try {
+            return prefix + ":" + MAPPER.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法生成查询键: " + prefix, e);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tests.campuslostandfoundsystem.utils.RedisLease;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 两级缓存:L1为进程内 BoundedLocalCache,L2为redis
+ * 读:L1 -> L2 -> 加载,L2命中时回填L1;写:同时写L1和L2。
+ * 单条失效直接删L2并广播,各节点删自己的L1;整体清空不扫描redis,而是把redis里的代数+1,
+ * L1和L2的键都带着代数,旧代数下的键不再被读到,由TTL/淘汰回收。redis不可用时退化为只有L1。
+ * get(key, loader) 即 @Cacheable(sync = true) 的入口,未命中时合并加载:进程内同一个键只有一个线程查库,
+ * 这个线程再去抢一个短租约,抢不到说明别的节点正在查,就轮询L2等它写入,超时再自己查。
+ * 加载前记下代数,结果写回这个代数下:加载期间发生了清空,旧数据只会落进已作废的代数
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+    private static final String KEY_PREFIX = "cache:";
+    private static final String GENERATION_PREFIX = "cache:gen:";
+    private static final String LEASE_PREFIX = "cache:lease:";
+    private static final long POLL_MILLIS = 25;
+    //  根对象只允许是这些包下的类型
+    private static final List<String> ALLOWED_TYPE_PREFIXES = List.of(
+            "com.tests.campuslostandfoundsystem.", "com.baomidou.mybatisplus.", "java.util.", "java.lang.");
+
+    private final String name;
+    private final BoundedLocalCache<String, Object> local;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration redisTtl;
+    //  (操作, 内容) -> 广播给其他节点
+    private final BiConsumer<String, String> publisher;
+    private final RedisLease redisLease;
+    private final Duration leaseTtl;
+    private final Duration leaseWait;
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    private volatile long generation;
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder remoteWaits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteTimeouts = new LongAdder();
+
+    public TwoLevelCache(String name, int localMaxSize, Duration localTtl, Duration redisTtl,
+                         StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                         BiConsumer<String, String> publisher, RedisLease redisLease,
+                         Duration leaseTtl, Duration leaseWait) {
+        super(false);
+        this.name = name;
+        this.local = new BoundedLocalCache<>(localMaxSize, localTtl.toMillis());
+        this.redisTtl = redisTtl;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.publisher = publisher;
+        this.redisLease = redisLease;
+        this.leaseTtl = leaseTtl;
+        this.leaseWait = leaseWait;
+        try {
+            String current = stringRedisTemplate.opsForValue().get(GENERATION_PREFIX + name);
+            this.generation = current == null ? 0 : Long.parseLong(current);
+        } catch (Exception e) {
+            log.warn("读取缓存{}的代数失败: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        return lookup(localKey(key), generation);
+    }
+
+    private Object lookup(String localKey, long generation) {
+        Object value = local.get(l1Key(generation, localKey));
+        if (value != null) {
+            return value;
+        }
+        value = readRedis(generation, localKey);
+        if (value != null) {
+            local.put(l1Key(generation, localKey), value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            return (T) value;
+        }
+        String localKey = localKey(key);
+        try {
+            return (T) singleFlight.execute(localKey, () -> loadOnce(localKey, valueLoader));
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        put(localKey(key), value, generation);
+    }
+
+    private void put(String localKey, Object value, long generation) {
+        if (value == null) {
+            return;
+        }
+        local.put(l1Key(generation, localKey), value);
+        try {
+            String json = value.getClass().getName() + "\n" + objectMapper.writeValueAsString(value);
+            stringRedisTemplate.opsForValue().set(redisKey(generation, localKey), json, redisTtl);
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("缓存{}写入redis失败: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = localKey(key);
+        local.invalidate(l1Key(generation, localKey));
+        try {
+            stringRedisTemplate.delete(redisKey(generation, localKey));
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("缓存{}删除redis条目失败: {}", name, e.getMessage());
+        }
+        publisher.accept("k", localKey);
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        try {
+            Long next = stringRedisTemplate.opsForValue().increment(GENERATION_PREFIX + name);
+            if (next != null) {
+                generation = next;
+            }
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("缓存{}更新代数失败: {}", name, e.getMessage());
+        }
+        publisher.accept("c", String.valueOf(generation));
+    }
+
+    //  其他节点删了某个键
+    void onRemoteEvict(String localKey) {
+        local.invalidate(l1Key(generation, localKey));
+    }
+
+    //  其他节点清空了缓存,带来新的代数
+    void onRemoteClear(long newGeneration) {
+        if (newGeneration > generation) {
+            generation = newGeneration;
+        }
+        local.invalidateAll();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>(local.getStats());
+        stats.putAll(singleFlight.getStats());
+        stats.put("remoteWaits", remoteWaits.sum());
+        stats.put("remoteHits", remoteHits.sum());
+        stats.put("remoteTimeouts", remoteTimeouts.sum());
+        stats.put("redisHits", redisHits.sum());
+        stats.put("redisMisses", redisMisses.sum());
+        stats.put("redisErrors", redisErrors.sum());
+        stats.put("loads", loads.sum());
+        stats.put("generation", generation);
+        return stats;
+    }
+
+    //  本进程的leader执行;合并期间前一轮可能刚写入,先再查一次
+    private Object loadOnce(String localKey, Callable<?> valueLoader) throws Exception {
+        long startGeneration = generation;
+        Object value = lookup(localKey, startGeneration);
+        if (value != null) {
+            return value;
+        }
+        String leaseKey = LEASE_PREFIX + name + ":" + startGeneration + ":" + localKey;
+        String lease = null;
+        boolean contended = false;
+        try {
+            lease = redisLease.tryAcquire(leaseKey, leaseTtl);
+            contended = lease == null;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("缓存{}获取加载租约失败,直接查询: {}", name, e.getMessage());
+        }
+        try {
+            if (contended) {
+                value = awaitRemote(localKey, startGeneration);
+                if (value != null) {
+                    return value;
+                }
+            }
+            Object loaded = valueLoader.call();
+            loads.increment();
+            put(localKey, loaded, startGeneration);
+            return loaded;
+        } finally {
+            redisLease.release(leaseKey, lease);
+        }
+    }
+
+    //  等持有租约的节点把结果写进L2
+    private Object awaitRemote(String localKey, long generation) throws InterruptedException {
+        remoteWaits.increment();
+        long deadline = System.nanoTime() + leaseWait.toNanos();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(POLL_MILLIS);
+            Object value = readRedis(generation, localKey);
+            if (value != null) {
+                local.put(l1Key(generation, localKey), value);
+                remoteHits.increment();
+                return value;
+            }
+        }
+        remoteTimeouts.increment();
+        return null;
+    }
+
+    //  值的格式: 类名\njson,根对象按类名反序列化,内部的泛型元素靠ObjectMapper的类型信息还原
+    private Object readRedis(long generation, String localKey) {
+        try {
+            String stored = stringRedisTemplate.opsForValue().get(redisKey(generation, localKey));
+            if (stored == null) {
+                redisMisses.increment();
+                return null;
+            }
+            int separator = stored.indexOf('\n');
+            String typeName = stored.substring(0, separator);
+            if (!isAllowedType(typeName)) {
+                redisErrors.increment();
+                log.warn("缓存{}里有不允许的类型: {}", name, typeName);
+                return null;
+            }
+            Class<?> type = Class.forName(typeName);
+            Object value = objectMapper.readValue(stored.substring(separator + 1), type);
+            redisHits.increment();
+            return value;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("缓存{}读取redis失败: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isAllowedType(String typeName) {
+        for (String prefix : ALLOWED_TYPE_PREFIXES) {
+            if (typeName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String localKey(Object key) {
+        return Objects.toString(key);
+    }
+
+    private static String l1Key(long generation, String localKey) {
+        return generation + ":" + localKey;
+    }
+
+    private String redisKey(long generation, String localKey) {
+        return KEY_PREFIX + name + ":" + generation + ":" + localKey;
+    }
+}
@@ -0,0 +1,129 @@
+package com.tests.campuslostandfoundsystem.utils.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tests.campuslostandfoundsystem.utils.RedisLease;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 两级缓存的管理器
+ * 每个缓存按 Spec 配置容量和过期时间,没有配置的缓存名使用默认 Spec;
+ * 开启了事务感知,@CacheEvict/@CachePut 在事务提交后才执行,回滚时不会误删或写入未提交的数据。
+ * 失效通过redis广播,消息格式: nodeId|缓存名|k|键 或 nodeId|缓存名|c|新代数
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+    public static final String CHANNEL = "cache:invalidate";
+
+    /**
+     * @param localMaxSize L1最多条目数
+     * @param localTtl     L1过期时间,也是其他节点广播丢失时最长的不一致时间
+     * @param redisTtl     L2过期时间
+     */
+    public record Spec(int localMaxSize, Duration localTtl, Duration redisTtl) {
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Spec> specs;
+    private final Spec defaultSpec;
+    private final RedisLease redisLease;
+    private final Duration leaseTtl;
+    private final Duration leaseWait;
+    //  广播消息里带上本节点id,收到自己发的消息时跳过
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public TwoLevelCacheManager(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                                Map<String, Spec> specs, Spec defaultSpec,
+                                RedisLease redisLease, Duration leaseTtl, Duration leaseWait) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.specs = Map.copyOf(specs);
+        this.defaultSpec = defaultSpec;
+        this.redisLease = redisLease;
+        this.leaseTtl = leaseTtl;
+        this.leaseWait = leaseWait;
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        specs.forEach((name, spec) -> caches.add(create(name, spec)));
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return create(name, defaultSpec);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 4);
+        if (parts.length != 4) {
+            log.warn("无法解析的缓存失效消息");
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = twoLevelCache(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if ("k".equals(parts[2])) {
+            cache.onRemoteEvict(parts[3]);
+        } else if ("c".equals(parts[2])) {
+            cache.onRemoteClear(Long.parseLong(parts[3]));
+        }
+    }
+
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        for (String name : getCacheNames()) {
+            TwoLevelCache cache = twoLevelCache(name);
+            if (cache != null) {
+                stats.put(name, cache.getStats());
+            }
+        }
+        return stats;
+    }
+
+    //  开启事务感知后存的是装饰器,这里取底层缓存
+    private TwoLevelCache twoLevelCache(String name) {
+        Cache cache = lookupCache(name);
+        if (cache instanceof TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        return cache instanceof TwoLevelCache twoLevelCache ? twoLevelCache : null;
+    }
+
+    private TwoLevelCache create(String name, Spec spec) {
+        return new TwoLevelCache(name, spec.localMaxSize(), spec.localTtl(), spec.redisTtl(),
+                stringRedisTemplate, objectMapper, (operation, payload) -> publish(name, operation, payload),
+                redisLease, leaseTtl, leaseWait);
+    }
+
+    private void publish(String name, String operation, String payload) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + name + "|" + operation + "|" + payload);
+        } catch (Exception e) {
+            log.warn("缓存{}失效广播失败: {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.tests.campuslostandfoundsystem.utils.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中英文混合分词
+ * 连续的中日韩字符切成相邻两字一组(只有一个字时单独成词),连续的字母数字整体作为一个词,其余字符当分隔符;
+ * 不依赖词典,"校园卡"切成"校园""园卡",查询用同样的切法,短语自然能对上。
+ * 建索引时另外把每个字单独作为一个词(见 tokenizeWithUnigrams),否则只搜一个字("伞""卡")永远对不上
+ */
+public final class CjkBigramTokenizer {
+
+    /**
+     * 一个词及其在原文中的位置[start, end)
+     */
+    public record Token(String term, int start, int end) {
+    }
+
+    private CjkBigramTokenizer() {
+    }
+
+    public static List<Token> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    //  除了两字一组,再按位置穿插输出每个单字,输出仍按起点有序
+    public static List<Token> tokenizeWithUnigrams(String text) {
+        return tokenize(text, true);
+    }
+
+    //  单个中日韩字符组成的词
+    public static boolean isCjkUnigram(String term) {
+        return term.codePointCount(0, term.length()) == 1 && isCjk(term.codePointAt(0));
+    }
+
+    private static List<Token> tokenize(String text, boolean unigrams) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int c = text.codePointAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                List<Integer> offsets = new ArrayList<>();
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    offsets.add(i);
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                offsets.add(i);
+                if (offsets.size() == 2) {
+                    tokens.add(new Token(text.substring(start, i), start, i));
+                } else {
+                    for (int k = 0; k + 1 < offsets.size(); k++) {
+                        if (unigrams) {
+                            tokens.add(new Token(text.substring(offsets.get(k), offsets.get(k + 1)), offsets.get(k), offsets.get(k + 1)));
+                        }
+                        if (k + 2 < offsets.size()) {
+                            tokens.add(new Token(text.substring(offsets.get(k), offsets.get(k + 2)), offsets.get(k), offsets.get(k + 2)));
+                        }
+                    }
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(text.codePointAt(i)) && !isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                tokens.add(new Token(text.substring(start, i).toLowerCase(Locale.ROOT), start, i));
+            } else {
+                i += Character.charCount(c);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,70 @@
+package com.tests.campuslostandfoundsystem.utils.search;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 命中词高亮
+ * 用同一个分词器重新切原文(带单字,单字查询也能标出来),查询里出现过的词用<em>包起来;相邻两字一组的词会互相重叠,重叠的区间合并成一段。
+ * 原文先做HTML转义,可以直接渲染
+ */
+public final class Highlighter {
+    private static final String OPEN = "<em>";
+    private static final String CLOSE = "</em>";
+
+    private Highlighter() {
+    }
+
+    /**
+     * @param maxLength 大于0时只截取第一个命中附近这么多字符
+     */
+    public static String highlight(String text, Set<String> queryTerms, int maxLength) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        List<int[]> spans = new ArrayList<>();
+        for (CjkBigramTokenizer.Token token : CjkBigramTokenizer.tokenizeWithUnigrams(text)) {
+            if (!queryTerms.contains(token.term())) {
+                continue;
+            }
+            int[] last = spans.isEmpty() ? null : spans.get(spans.size() - 1);
+            if (last != null && token.start() <= last[1]) {
+                last[1] = Math.max(last[1], token.end());
+            } else {
+                spans.add(new int[]{token.start(), token.end()});
+            }
+        }
+        int from = 0;
+        int to = text.length();
+        if (maxLength > 0 && text.length() > maxLength) {
+            int anchor = spans.isEmpty() ? 0 : spans.get(0)[0];
+            from = Math.max(0, Math.min(anchor - maxLength / 4, text.length() - maxLength));
+            to = from + maxLength;
+        }
+        StringBuilder out = new StringBuilder();
+        if (from > 0) {
+            out.append("…");
+        }
+        int cursor = from;
+        for (int[] span : spans) {
+            int start = Math.max(span[0], from);
+            int end = Math.min(span[1], to);
+            if (start >= end) {
+                continue;
+            }
+            out.append(HtmlUtils.htmlEscape(text.substring(cursor, start)))
+                    .append(OPEN)
+                    .append(HtmlUtils.htmlEscape(text.substring(start, end)))
+                    .append(CLOSE);
+            cursor = end;
+        }
+        out.append(HtmlUtils.htmlEscape(text.substring(cursor, to)));
+        if (to < text.length()) {
+            out.append("…");
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.tests.campuslostandfoundsystem.utils.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 进程内倒排索引,BM25打分
+ * 每个文档由若干字段组成,字段按权重累加词频(标题权重高于正文),原文一并保存,命中后直接用来生成高亮,不再回表;
+ * 中日韩单字也进索引,供单字查询命中,但不计入文档长度,打分再乘 UNIGRAM_WEIGHT,排在两字词命中之后;
+ * 读多写少,用读写锁保护
+ */
+public class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double UNIGRAM_WEIGHT = 0.5;
+
+    //  字段名 -> 权重
+    private final Map<String, Integer> fieldWeights;
+    //  词 -> (文档 -> 加权词频)
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    private final Map<String, IndexedDocument> documents = new HashMap<>();
+    private long totalLength;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 一个文档:原文字段、加权长度、各词的加权词频
+     */
+    public record IndexedDocument(String key, Map<String, String> fields, int length, Map<String, Integer> termFrequencies) {
+    }
+
+    /**
+     * 一条命中
+     */
+    public record Hit(IndexedDocument document, double score) {
+    }
+
+    public InvertedIndex(Map<String, Integer> fieldWeights) {
+        this.fieldWeights = Map.copyOf(fieldWeights);
+    }
+
+    //  新增或整体替换一个文档
+    public void upsert(String key, Map<String, String> fields) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (Map.Entry<String, Integer> field : fieldWeights.entrySet()) {
+            for (CjkBigramTokenizer.Token token : CjkBigramTokenizer.tokenizeWithUnigrams(fields.get(field.getKey()))) {
+                frequencies.merge(token.term(), field.getValue(), Integer::sum);
+                if (!CjkBigramTokenizer.isCjkUnigram(token.term())) {
+                    length += field.getValue();
+                }
+            }
+        }
+        IndexedDocument document = new IndexedDocument(key, Map.copyOf(withoutNulls(fields)), length, frequencies);
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            documents.put(key, document);
+            totalLength += length;
+            frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(key, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param filter 只在满足条件的文档里找,例如按文档类型过滤
+     */
+    public List<Hit> search(String query, int limit, Predicate<IndexedDocument> filter) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (CjkBigramTokenizer.Token token : CjkBigramTokenizer.tokenize(query)) {
+            terms.add(token.term());
+        }
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return List.of();
+            }
+            double averageLength = Math.max(1.0, (double) totalLength / documentCount);
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                if (CjkBigramTokenizer.isCjkUnigram(term)) {
+                    idf *= UNIGRAM_WEIGHT;
+                }
+                for (Map.Entry<String, Integer> entry : posting.entrySet()) {
+                    IndexedDocument document = documents.get(entry.getKey());
+                    double tf = entry.getValue();
+                    double norm = tf + K1 * (1 - B + B * document.length() / averageLength);
+                    scores.merge(entry.getKey(), idf * tf * (K1 + 1) / norm, Double::sum);
+                }
+            }
+//          小顶堆只保留前limit个
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                IndexedDocument document = documents.get(entry.getKey());
+                if (!filter.test(document)) {
+                    continue;
+                }
+                top.offer(new Hit(document, entry.getValue()));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String key) {
+        IndexedDocument old = documents.remove(key);
+        if (old == null) {
+            return;
+        }
+        totalLength -= old.length();
+        for (String term : old.termFrequencies().keySet()) {
+            Map<String, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(key);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> withoutNulls(Map<String, String> fields) {
+        Map<String, String> copy = new HashMap<>();
+        fields.forEach((name, value) -> {
+            if (value != null) {
+                copy.put(name, value);
+            }
+        });
+        return copy;
+    }
+}
@@ -0,0 +1,399 @@
+package com.tests.campuslostandfoundsystem.utils.tokenstore;
+
+import com.tests.campuslostandfoundsystem.entity.enums.TokenVerdict;
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import com.tests.campuslostandfoundsystem.utils.SessionRecordRedisSerializer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内实现,单节点部署时不需要redis
+ * 会话放在有上限的并发map里,按过期时间淘汰;可选地定期快照到内存映射文件,重启后恢复
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.token-store.type", havingValue = "local")
+public class LocalTokenStore implements TokenStore {
+    //  快照文件头
+    private static final int SNAPSHOT_MAGIC = 0x544B5331;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    @Value("${auth.token-store.local.max-sessions:100000}")
+    private int maxSessions;
+    //  为空时不持久化
+    @Value("${auth.token-store.local.snapshot-path:}")
+    private String snapshotPath;
+
+    //  sid -> 会话
+    private final Map<String, LocalSession> sessions = new ConcurrentHashMap<>();
+    //  userId -> 当前sid;对同一用户的建会话、吊销都在这个map的compute里串行执行
+    private final Map<String, String> userIndex = new ConcurrentHashMap<>();
+    //  按过期时间排序,清理和超限淘汰都从最早过期的开始
+    private final ConcurrentSkipListSet<Expiry> expiryOrder = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(Expiry::expireAt).thenComparing(Expiry::sid));
+    //  userId -> 纪元,没有记录的用户纪元为0;纪元不随会话过期而删除,否则旧token的纪元会重新变得有效
+    private final Map<String, Long> userEpochs = new ConcurrentHashMap<>();
+    private final AtomicLong globalEpoch = new AtomicLong();
+    //  userId -> 删除标记的过期时间
+    private final Map<String, Long> userGone = new ConcurrentHashMap<>();
+
+    private record LocalSession(SessionRecord record, long expireAt) {
+    }
+
+    private record Expiry(long expireAt, String sid) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (StringUtils.isBlank(snapshotPath)) {
+            return;
+        }
+        try {
+            loadSnapshot(Paths.get(snapshotPath));
+        } catch (IOException | RuntimeException e) {
+            log.warn("会话快照加载失败,以空存储启动: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    @Override
+    public long[] currentEpochs(String userId) {
+        return new long[]{userEpochs.getOrDefault(userId, 0L), globalEpoch.get()};
+    }
+
+    @Override
+    public boolean saveSession(String sid, SessionRecord record, long ttlMillis, long globalEpoch) {
+        String userId = record.getUserId();
+        long expireAt = System.currentTimeMillis() + ttlMillis;
+        boolean[] saved = {false};
+        userIndex.compute(userId, (key, oldSid) -> {
+            if (this.globalEpoch.get() != globalEpoch
+                    || userEpochs.getOrDefault(userId, 0L) >= record.getUserEpoch()) {
+                return oldSid;
+            }
+            userEpochs.put(userId, record.getUserEpoch());
+            if (oldSid != null && !oldSid.equals(sid)) {
+                removeSession(oldSid);
+            }
+            sessions.put(sid, new LocalSession(record, expireAt));
+            expiryOrder.add(new Expiry(expireAt, sid));
+            saved[0] = true;
+            return sid;
+        });
+        if (saved[0]) {
+            evictOverflow();
+        }
+        return saved[0];
+    }
+
+    @Override
+    public boolean rotateAccessToken(String sid, String refreshTokenFingerprint, String accessTokenFingerprint) {
+        boolean[] rotated = {false};
+        sessions.computeIfPresent(sid, (key, session) -> {
+            SessionRecord current = session.record();
+            if (session.expireAt() <= System.currentTimeMillis()
+                    || !current.getRefreshTokenFingerprint().equals(refreshTokenFingerprint)) {
+                return session;
+            }
+            rotated[0] = true;
+            return new LocalSession(new SessionRecord(current.getUserId(), accessTokenFingerprint,
+                    current.getRefreshTokenFingerprint(), current.getUserEpoch(), current.getExpiresAt()),
+                    session.expireAt());
+        });
+        return rotated[0];
+    }
+
+    @Override
+    public SessionRecord getSession(String sid) {
+        LocalSession session = sessions.get(sid);
+        if (session == null || session.expireAt() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return session.record();
+    }
+
+    @Override
+    public SessionRecord getSessionByUserId(String userId) {
+        String sid = getSessionIdByUserId(userId);
+        return sid == null ? null : getSession(sid);
+    }
+
+    @Override
+    public String getSessionIdByUserId(String userId) {
+        String sid = userIndex.get(userId);
+        return sid == null || getSession(sid) == null ? null : sid;
+    }
+
+    @Override
+    public void deleteSessionByUserId(String userId) {
+        userIndex.computeIfPresent(userId, (key, sid) -> {
+            removeSession(sid);
+            return null;
+        });
+    }
+
+    @Override
+    public TokenVerdict verify(String userId, String sid, boolean refreshToken, String fingerprint,
+                               long userEpoch, long globalEpoch) {
+        Long goneUntil = userGone.get(userId);
+        if (goneUntil != null && goneUntil > System.currentTimeMillis()) {
+            return TokenVerdict.USER_GONE;
+        }
+        if (userEpochs.getOrDefault(userId, 0L) != userEpoch || this.globalEpoch.get() != globalEpoch) {
+            return TokenVerdict.REVOKED;
+        }
+        SessionRecord record = getSession(sid);
+        if (record == null) {
+            return TokenVerdict.MISSING;
+        }
+        String expected = refreshToken ? record.getRefreshTokenFingerprint() : record.getAccessTokenFingerprint();
+        return expected.equals(fingerprint) ? TokenVerdict.VALID : TokenVerdict.MISSING;
+    }
+
+    @Override
+    public long revokeUser(String userId) {
+        long[] epoch = {0L};
+//      与saveSession在同一把锁里,吊销和登录并发时不会丢失纪元
+        userIndex.compute(userId, (key, sid) -> {
+            epoch[0] = userEpochs.merge(userId, 1L, Long::sum);
+            return sid;
+        });
+        return epoch[0];
+    }
+
+    @Override
+    public long revokeAll() {
+        return globalEpoch.incrementAndGet();
+    }
+
+    @Override
+    public void markUserGone(String userId, long ttlMillis) {
+        userGone.put(userId, System.currentTimeMillis() + ttlMillis);
+    }
+
+    @Override
+    public Map<String, Long> getMemoryReport(int sampleSize) {
+        long total = 0L;
+        long count = 0L;
+        for (Map.Entry<String, LocalSession> entry : sessions.entrySet()) {
+            if (count >= sampleSize) {
+                break;
+            }
+            total += entry.getKey().length() + SessionRecordRedisSerializer.encode(entry.getValue().record()).length();
+            count++;
+        }
+        Map<String, Long> report = new LinkedHashMap<>();
+        report.put("sessions", (long) sessions.size());
+        report.put("maxSessions", (long) maxSessions);
+        report.put("trackedUsers", (long) userEpochs.size());
+        report.put("sampledSessions", count);
+        report.put("sampledPayloadAvgBytes", count == 0 ? 0L : total / count);
+        return report;
+    }
+
+    //  清理过期会话和过期的删除标记
+    @Scheduled(fixedDelayString = "${auth.token-store.local.purge-millis:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Expiry head;
+        while ((head = expiryOrder.pollFirst()) != null) {
+            if (head.expireAt() > now) {
+                expiryOrder.add(head);
+                break;
+            }
+            expireSession(head);
+        }
+        userGone.values().removeIf(goneUntil -> goneUntil <= now);
+    }
+
+    //  定期快照,进程被强杀时最多丢失一个周期内的变更
+    @Scheduled(fixedDelayString = "${auth.token-store.local.snapshot-millis:60000}")
+    public void snapshot() {
+        if (StringUtils.isBlank(snapshotPath)) {
+            return;
+        }
+        try {
+            writeSnapshot(Paths.get(snapshotPath));
+        } catch (IOException | RuntimeException e) {
+            log.warn("会话快照写入失败: {}", e.getMessage());
+        }
+    }
+
+    //  超过上限时先淘汰最早过期的会话
+    private void evictOverflow() {
+        while (sessions.size() > maxSessions) {
+            Expiry head = expiryOrder.pollFirst();
+            if (head == null) {
+                return;
+            }
+            expireSession(head);
+        }
+    }
+
+    //  会话可能已被顶号或续期,只有会话仍是这条过期记录时才删除
+    private void expireSession(Expiry expiry) {
+        LocalSession session = sessions.get(expiry.sid());
+        if (session == null || session.expireAt() != expiry.expireAt()) {
+            return;
+        }
+        if (sessions.remove(expiry.sid(), session)) {
+            userIndex.remove(session.record().getUserId(), expiry.sid());
+        }
+    }
+
+    private void removeSession(String sid) {
+        LocalSession session = sessions.remove(sid);
+        if (session != null) {
+            expiryOrder.remove(new Expiry(session.expireAt(), sid));
+        }
+    }
+
+    //  快照格式: magic|version|全局纪元|用户纪元表|删除标记表|会话表,字符串为 长度+utf8
+    //  先写临时文件再原子替换,写到一半崩溃不会损坏上一份快照
+    private void writeSnapshot(Path path) throws IOException {
+        long now = System.currentTimeMillis();
+        List<byte[]> strings = new ArrayList<>();
+        List<Long> longs = new ArrayList<>();
+        Map<String, Long> epochs = new LinkedHashMap<>(userEpochs);
+        Map<String, Long> gone = new LinkedHashMap<>(userGone);
+        List<Map.Entry<String, LocalSession>> live = new ArrayList<>();
+        for (Map.Entry<String, LocalSession> entry : sessions.entrySet()) {
+            if (entry.getValue().expireAt() > now) {
+                live.add(entry);
+            }
+        }
+        long size = 4 + 4 + 8 + 4 + 4 + 4;
+        for (Map.Entry<String, Long> entry : epochs.entrySet()) {
+            size += addString(strings, entry.getKey()) + 8;
+            longs.add(entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : gone.entrySet()) {
+            size += addString(strings, entry.getKey()) + 8;
+            longs.add(entry.getValue());
+        }
+        for (Map.Entry<String, LocalSession> entry : live) {
+            size += addString(strings, entry.getKey())
+                    + addString(strings, SessionRecordRedisSerializer.encode(entry.getValue().record())) + 8;
+            longs.add(entry.getValue().expireAt());
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int s = 0;
+            int l = 0;
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(globalEpoch.get());
+            buffer.putInt(epochs.size());
+            for (int i = 0; i < epochs.size(); i++) {
+                putString(buffer, strings.get(s++));
+                buffer.putLong(longs.get(l++));
+            }
+            buffer.putInt(gone.size());
+            for (int i = 0; i < gone.size(); i++) {
+                putString(buffer, strings.get(s++));
+                buffer.putLong(longs.get(l++));
+            }
+            buffer.putInt(live.size());
+            for (int i = 0; i < live.size(); i++) {
+                putString(buffer, strings.get(s++));
+                putString(buffer, strings.get(s++));
+                buffer.putLong(longs.get(l++));
+            }
+            buffer.force();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadSnapshot(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                log.warn("会话快照格式不兼容,忽略: {}", path);
+                return;
+            }
+            globalEpoch.set(buffer.getLong());
+            int epochCount = buffer.getInt();
+            for (int i = 0; i < epochCount; i++) {
+                userEpochs.put(getString(buffer), buffer.getLong());
+            }
+            int goneCount = buffer.getInt();
+            for (int i = 0; i < goneCount; i++) {
+                String userId = getString(buffer);
+                long goneUntil = buffer.getLong();
+                if (goneUntil > now) {
+                    userGone.put(userId, goneUntil);
+                }
+            }
+            int sessionCount = buffer.getInt();
+            for (int i = 0; i < sessionCount; i++) {
+                String sid = getString(buffer);
+                SessionRecord record = SessionRecordRedisSerializer.decode(getString(buffer));
+                long expireAt = buffer.getLong();
+                if (record == null || expireAt <= now) {
+                    continue;
+                }
+                sessions.put(sid, new LocalSession(record, expireAt));
+                userIndex.put(record.getUserId(), sid);
+                expiryOrder.add(new Expiry(expireAt, sid));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("会话快照不完整: " + path, e);
+        }
+        evictOverflow();
+        log.info("已从快照恢复 {} 个会话", sessions.size());
+    }
+
+    private static int addString(List<byte[]> strings, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        strings.add(bytes);
+        return 4 + bytes.length;
+    }
+
+    private static void putString(MappedByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,299 @@
+package com.tests.campuslostandfoundsystem.utils.tokenstore;
+
+import com.tests.campuslostandfoundsystem.entity.enums.TokenVerdict;
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import com.tests.campuslostandfoundsystem.utils.RevocationNearCache;
+import com.tests.campuslostandfoundsystem.utils.SessionRecordRedisSerializer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * redis实现,多节点共享会话
+ * 写操作都是一次往返的脚本,凡是会改变校验结论的写入都在脚本里写一条变更事件(见 RevocationNearCache.EMIT_FUNCTION);
+ * AT校验先问 RevocationNearCache 的本地视图,视图健康时有效/已吊销都在本地得出结论,
+ * 视图给不出结论时才走脚本,脚本判定有效后把会话的AT指纹记进视图,同一会话之后的请求不再访问redis
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "auth.token-store.type", havingValue = "redis", matchIfMissing = true)
+public class RedisTokenStore implements TokenStore {
+    private static final String AUTH_TOKEN_PREFIX = "auth:";
+
+    //   token相关的key都是纯字符串,脚本参数不经过json序列化
+    private final StringRedisTemplate stringRedisTemplate;
+    //   会话记录用专用的紧凑序列化读写
+    private final RedisTemplate<String, SessionRecord> sessionRedisTemplate;
+    private final RevocationNearCache revocationNearCache;
+
+    //   建会话+单点登录顶号+更新userId索引,一个脚本一次往返,中途不会留下没有TTL的会话
+    //   新会话的纪元比当前纪元大1,写入后旧会话的token纪元落后,自然判定为已吊销;纪元冲突时返回-1由调用方重试
+    //   KEYS[1]=新会话key  KEYS[2]=userId索引key  KEYS[3]=用户纪元key  KEYS[4]=全局纪元key
+    //   ARGV[1]=会话记录  ARGV[2]=ttl(毫秒)  ARGV[3]=新sid  ARGV[4]=会话key前缀
+    //   ARGV[5]=吊销广播频道  ARGV[6]=userId  ARGV[7]=新会话用户纪元  ARGV[8]=新会话全局纪元
+    //   KEYS[5]=变更序号key  KEYS[6]=变更日志key  ARGV[9]=变更日志条数上限
+    private static final RedisScript<Long> SAVE_TOKENS_SCRIPT = new DefaultRedisScript<>(
+            RevocationNearCache.EMIT_FUNCTION +
+            "local epoch = tonumber(ARGV[7]) " +
+            "if tonumber(redis.call('GET', KEYS[4]) or '0') ~= tonumber(ARGV[8]) then return -1 end " +
+            "if tonumber(redis.call('GET', KEYS[3]) or '0') >= epoch then return -1 end " +
+            "redis.call('SET', KEYS[3], epoch) " +
+            "local oldSid = redis.call('GET', KEYS[2]) " +
+            "if oldSid and oldSid ~= ARGV[3] then redis.call('DEL', ARGV[4] .. oldSid) end " +
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+            "redis.call('SET', KEYS[2], ARGV[3], 'PX', ARGV[2]) " +
+            "emit(KEYS[5], KEYS[6], ARGV[5], ARGV[9], 'u|' .. ARGV[6] .. '|' .. epoch) " +
+            "return 1",
+            Long.class);
+
+    //   刷新AT后替换会话记录中的AT指纹,保留原TTL
+    //   KEYS[1]=会话key  KEYS[2]=变更序号key  KEYS[3]=变更日志key
+    //   ARGV[1]=RT指纹  ARGV[2]=新AT指纹  ARGV[3]=sid  ARGV[4]=吊销广播频道  ARGV[5]=变更日志条数上限
+    //   返回 1=成功 0=会话不存在或RT不匹配
+    private static final RedisScript<Long> ROTATE_ACCESS_TOKEN_SCRIPT = new DefaultRedisScript<>(
+            RevocationNearCache.EMIT_FUNCTION +
+            "local rec = redis.call('GET', KEYS[1]) " +
+            "if not rec then return 0 end " +
+            "local v, uid, at, rt, ep, exp = string.match(rec, '^([^|]*)|([^|]*)|([^|]*)|([^|]*)|([^|]*)|([^|]*)$') " +
+            "if rt ~= ARGV[1] then return 0 end " +
+            "redis.call('SET', KEYS[1], table.concat({v, uid, ARGV[2], rt, ep, exp}, '|'), 'KEEPTTL') " +
+            "emit(KEYS[2], KEYS[3], ARGV[4], ARGV[5], 'a|' .. ARGV[3] .. '|' .. ARGV[2]) " +
+            "return 1",
+            Long.class);
+
+    //   吊销:纪元+1并广播,一次往返;用户的所有会话一次性失效,不需要逐个sid写黑名单
+    //   KEYS[1]=纪元key  KEYS[2]=变更序号key  KEYS[3]=变更日志key
+    //   ARGV[1]=事件前缀(u|userId| 或 g|)  ARGV[2]=吊销广播频道  ARGV[3]=变更日志条数上限
+    private static final RedisScript<Long> REVOKE_SCRIPT = new DefaultRedisScript<>(
+            RevocationNearCache.EMIT_FUNCTION +
+            "local epoch = redis.call('INCR', KEYS[1]) " +
+            "emit(KEYS[2], KEYS[3], ARGV[2], ARGV[3], ARGV[1] .. epoch) " +
+            "return epoch",
+            Long.class);
+
+    //   删除用户当前会话和userId索引,广播sid让各节点忘掉它的AT指纹
+    //   KEYS[1]=userId索引key  KEYS[2]=变更序号key  KEYS[3]=变更日志key
+    //   ARGV[1]=会话key前缀  ARGV[2]=吊销广播频道  ARGV[3]=变更日志条数上限
+    private static final RedisScript<Long> DELETE_SESSION_SCRIPT = new DefaultRedisScript<>(
+            RevocationNearCache.EMIT_FUNCTION +
+            "local sid = redis.call('GET', KEYS[1]) " +
+            "if sid then " +
+            "redis.call('DEL', ARGV[1] .. sid) " +
+            "emit(KEYS[2], KEYS[3], ARGV[2], ARGV[3], 'd|' .. sid) " +
+            "end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return 1",
+            Long.class);
+
+    //   用户删除标记,广播后各节点在标记过期前不再本地判定该用户有效
+    //   KEYS[1]=用户删除标记key  KEYS[2]=变更序号key  KEYS[3]=变更日志key
+    //   ARGV[1]=ttl(毫秒)  ARGV[2]=userId  ARGV[3]=标记过期时间戳  ARGV[4]=吊销广播频道  ARGV[5]=变更日志条数上限
+    private static final RedisScript<Long> MARK_USER_GONE_SCRIPT = new DefaultRedisScript<>(
+            RevocationNearCache.EMIT_FUNCTION +
+            "redis.call('SET', KEYS[1], '1', 'PX', ARGV[1]) " +
+            "emit(KEYS[2], KEYS[3], ARGV[4], ARGV[5], 'x|' .. ARGV[2] .. '|' .. ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    //   请求路径上的一次性校验:用户是否被删除、纪元是否一致、会话记录里的指纹是否匹配,只返回结论不回传会话
+    //   KEYS[1]=会话key  KEYS[2]=用户纪元key  KEYS[3]=全局纪元key  KEYS[4]=用户删除标记key
+    //   ARGV[1]=token类型(at/rt)  ARGV[2]=token指纹  ARGV[3]=token用户纪元  ARGV[4]=token全局纪元
+    //   返回 0=有效 1=已吊销 2=会话不存在 3=用户已删除
+    private static final RedisScript<Long> VERIFY_SESSION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[4]) == 1 then return 3 end " +
+            "if tonumber(redis.call('GET', KEYS[2]) or '0') ~= tonumber(ARGV[3]) then return 1 end " +
+            "if tonumber(redis.call('GET', KEYS[3]) or '0') ~= tonumber(ARGV[4]) then return 1 end " +
+            "local rec = redis.call('GET', KEYS[1]) " +
+            "if not rec then return 2 end " +
+            "local v, uid, at, rt = string.match(rec, '^([^|]*)|([^|]*)|([^|]*)|([^|]*)|') " +
+            "local fp = rt " +
+            "if ARGV[1] == 'at' then fp = at end " +
+            "if fp ~= ARGV[2] then return 2 end " +
+            "return 0",
+            Long.class);
+
+    @Override
+    public long[] currentEpochs(String userId) {
+        return revocationNearCache.reloadEpochs(userId);
+    }
+
+    //  先用本地视图,冲突时由调用方再调用currentEpochs
+    @Override
+    public long[] nextSessionEpochs(String userId) {
+        return revocationNearCache.nextSessionEpochs(userId);
+    }
+
+    @Override
+    public boolean saveSession(String sid, SessionRecord record, long ttlMillis, long globalEpoch) {
+        String userId = record.getUserId();
+        Long result = stringRedisTemplate.execute(SAVE_TOKENS_SCRIPT,
+                List.of(getSidKey(sid), getUserIdKey(userId), getUserEpochKey(userId), getGlobalEpochKey(),
+                        RevocationNearCache.CHANGE_SEQ_KEY, RevocationNearCache.CHANGE_LOG_KEY),
+                SessionRecordRedisSerializer.encode(record), String.valueOf(ttlMillis), sid, getSidKey(""),
+                RevocationNearCache.REVOCATION_CHANNEL, userId,
+                String.valueOf(record.getUserEpoch()), String.valueOf(globalEpoch), changeLogSize());
+        if (result == null || result < 0) {
+            return false;
+        }
+        revocationNearCache.applyUser(userId, record.getUserEpoch());
+        return true;
+    }
+
+    @Override
+    public boolean rotateAccessToken(String sid, String refreshTokenFingerprint, String accessTokenFingerprint) {
+        Long result = stringRedisTemplate.execute(ROTATE_ACCESS_TOKEN_SCRIPT,
+                List.of(getSidKey(sid), RevocationNearCache.CHANGE_SEQ_KEY, RevocationNearCache.CHANGE_LOG_KEY),
+                refreshTokenFingerprint, accessTokenFingerprint, sid, RevocationNearCache.REVOCATION_CHANNEL, changeLogSize());
+        return result != null && result == 1L;
+    }
+
+    @Override
+    public SessionRecord getSession(String sid) {
+        return sessionRedisTemplate.opsForValue().get(getSidKey(sid));
+    }
+
+    @Override
+    public SessionRecord getSessionByUserId(String userId) {
+        String sid = getSessionIdByUserId(userId);
+        if (sid == null) {
+            return null;
+        }
+        return getSession(sid);
+    }
+
+    @Override
+    public String getSessionIdByUserId(String userId) {
+        return stringRedisTemplate.opsForValue().get(getUserIdKey(userId));
+    }
+
+    @Override
+    public void deleteSessionByUserId(String userId) {
+        stringRedisTemplate.execute(DELETE_SESSION_SCRIPT,
+                List.of(getUserIdKey(userId), RevocationNearCache.CHANGE_SEQ_KEY, RevocationNearCache.CHANGE_LOG_KEY),
+                getSidKey(""), RevocationNearCache.REVOCATION_CHANNEL, changeLogSize());
+    }
+
+    @Override
+    public TokenVerdict verify(String userId, String sid, boolean refreshToken, String fingerprint,
+                               long userEpoch, long globalEpoch) {
+//      RT很少用到,不查视图
+        if (refreshToken) {
+            return verifyByScript(userId, sid, true, fingerprint, userEpoch, globalEpoch);
+        }
+        RevocationNearCache.Decision decision = revocationNearCache.check(userId, sid, fingerprint, userEpoch, globalEpoch);
+        if (decision == RevocationNearCache.Decision.VALID) {
+            return TokenVerdict.VALID;
+        }
+        if (decision == RevocationNearCache.Decision.REVOKED) {
+            return TokenVerdict.REVOKED;
+        }
+        revocationNearCache.recordRedisFallback();
+        long versionBefore = revocationNearCache.version();
+        TokenVerdict verdict = verifyByScript(userId, sid, false, fingerprint, userEpoch, globalEpoch);
+        if (verdict == TokenVerdict.VALID) {
+            revocationNearCache.recordValid(userId, sid, fingerprint, userEpoch, globalEpoch, versionBefore);
+        }
+        return verdict;
+    }
+
+    private TokenVerdict verifyByScript(String userId, String sid, boolean refreshToken, String fingerprint,
+                                        long userEpoch, long globalEpoch) {
+        Long code = stringRedisTemplate.execute(VERIFY_SESSION_SCRIPT,
+                List.of(getSidKey(sid), getUserEpochKey(userId), getGlobalEpochKey(), getUserGoneKey(userId)),
+                refreshToken ? "rt" : "at", fingerprint, String.valueOf(userEpoch), String.valueOf(globalEpoch));
+        return TokenVerdict.ofScriptCode(code);
+    }
+
+    @Override
+    public long revokeUser(String userId) {
+        Long epoch = stringRedisTemplate.execute(REVOKE_SCRIPT,
+                List.of(getUserEpochKey(userId), RevocationNearCache.CHANGE_SEQ_KEY, RevocationNearCache.CHANGE_LOG_KEY),
+                "u|" + userId + "|", RevocationNearCache.REVOCATION_CHANNEL, changeLogSize());
+        if (epoch == null) {
+            return 0L;
+        }
+        revocationNearCache.applyUser(userId, epoch);
+        return epoch;
+    }
+
+    @Override
+    public long revokeAll() {
+        Long epoch = stringRedisTemplate.execute(REVOKE_SCRIPT,
+                List.of(getGlobalEpochKey(), RevocationNearCache.CHANGE_SEQ_KEY, RevocationNearCache.CHANGE_LOG_KEY),
+                "g|", RevocationNearCache.REVOCATION_CHANNEL, changeLogSize());
+        if (epoch == null) {
+            return 0L;
+        }
+        revocationNearCache.applyGlobal(epoch);
+        return epoch;
+    }
+
+    @Override
+    public void markUserGone(String userId, long ttlMillis) {
+        stringRedisTemplate.execute(MARK_USER_GONE_SCRIPT,
+                List.of(getUserGoneKey(userId), RevocationNearCache.CHANGE_SEQ_KEY, RevocationNearCache.CHANGE_LOG_KEY),
+                String.valueOf(ttlMillis), userId, String.valueOf(System.currentTimeMillis() + ttlMillis),
+                RevocationNearCache.REVOCATION_CHANNEL, changeLogSize());
+    }
+
+    //  抽样线上会话key的MEMORY USAGE
+    @Override
+    public Map<String, Long> getMemoryReport(int sampleSize) {
+        long[] sampled = stringRedisTemplate.execute((RedisCallback<long[]>) connection -> {
+            long total = 0L;
+            long count = 0L;
+            ScanOptions options = ScanOptions.scanOptions().match(getSidKey("*")).count(sampleSize).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext() && count < sampleSize) {
+                    Object usage = connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8), cursor.next());
+                    if (usage instanceof Long bytes) {
+                        total += bytes;
+                        count++;
+                    }
+                }
+            }
+            return new long[]{total, count};
+        });
+        Map<String, Long> report = new LinkedHashMap<>();
+        report.put("sampledSessions", sampled == null ? 0L : sampled[1]);
+        report.put("sampledMemoryUsageAvgBytes", sampled == null || sampled[1] == 0 ? 0L : sampled[0] / sampled[1]);
+        return report;
+    }
+
+    private String changeLogSize() {
+        return String.valueOf(revocationNearCache.getChangeLogSize());
+    }
+
+    //  紧凑记录使用短前缀,旧格式的hash会话随TTL自然过期
+    public String getUserIdKey(String userId) {
+        return AUTH_TOKEN_PREFIX + "uid:" + userId;
+    }
+
+    public String getSidKey(String sid) {
+        return AUTH_TOKEN_PREFIX + "s:" + sid;
+    }
+
+    public String getUserEpochKey(String userId) {
+        return RevocationNearCache.USER_EPOCH_PREFIX + userId;
+    }
+
+    public String getGlobalEpochKey() {
+        return RevocationNearCache.GLOBAL_EPOCH_KEY;
+    }
+
+    public String getUserGoneKey(String userId) {
+        return AUTH_TOKEN_PREFIX + "userGone:" + userId;
+    }
+}
@@ -0,0 +1,81 @@
+package com.tests.campuslostandfoundsystem.utils.tokenstore;
+
+import com.tests.campuslostandfoundsystem.entity.enums.TokenVerdict;
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+
+import java.util.Map;
+
+/**
+ * 会话与吊销纪元的存储
+ * 通过 auth.token-store.type 选择实现:redis(默认,多节点共享) / local(单节点,进程内)
+ */
+public interface TokenStore {
+
+    /**
+     * 当前纪元
+     * @return {用户纪元, 全局纪元}
+     */
+    long[] currentEpochs(String userId);
+
+    /**
+     * 新会话可以使用的纪元,实现可以从本地视图给出,不保证最新
+     * @return {用户纪元+1, 全局纪元}
+     */
+    default long[] nextSessionEpochs(String userId) {
+        long[] current = currentEpochs(userId);
+        return new long[]{current[0] + 1, current[1]};
+    }
+
+    /**
+     * 保存新会话并顶掉该用户的旧会话;会话纪元必须大于当前用户纪元、全局纪元必须等于当前全局纪元
+     * @return 纪元冲突时返回false
+     */
+    boolean saveSession(String sid, SessionRecord record, long ttlMillis, long globalEpoch);
+
+    /**
+     * 刷新AT后替换会话中的AT指纹
+     * @return 会话不存在或RT指纹不匹配时返回false
+     */
+    boolean rotateAccessToken(String sid, String refreshTokenFingerprint, String accessTokenFingerprint);
+
+    SessionRecord getSession(String sid);
+
+    SessionRecord getSessionByUserId(String userId);
+
+    /**
+     * 该用户当前会话的sid,没有会话时返回null
+     */
+    String getSessionIdByUserId(String userId);
+
+    void deleteSessionByUserId(String userId);
+
+    /**
+     * 校验一个已验签的token
+     * @param refreshToken 是否RT
+     * @param fingerprint token jti的指纹
+     */
+    TokenVerdict verify(String userId, String sid, boolean refreshToken, String fingerprint,
+                        long userEpoch, long globalEpoch);
+
+    /**
+     * 用户纪元+1
+     * @return 新纪元
+     */
+    long revokeUser(String userId);
+
+    /**
+     * 全局纪元+1
+     * @return 新纪元
+     */
+    long revokeAll();
+
+    /**
+     * 用户被删除,在ttlMillis内该用户的token都判定为USER_GONE
+     */
+    void markUserGone(String userId, long ttlMillis);
+
+    /**
+     * 存储占用报告
+     */
+    Map<String, Long> getMemoryReport(int sampleSize);
+}
@@ -0,0 +1,111 @@
+package com.tests.campuslostandfoundsystem.service.roles;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 权限解析耗时随角色继承深度的变化
+ * 角色是一条深度为 depth 的链,每个角色直接授予 PERMISSIONS_PER_ROLE 个权限,解析最顶层的角色:
+ * 查预计算的闭包 vs 每次解析都遍历继承图;另测一次闭包重建,即每次变更的代价
+ * 运行: 以test classpath执行 main,需要 jmh-core 和 jmh-generator-annprocess(test scope)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleClosureBenchmark {
+    private static final int PERMISSIONS_PER_ROLE = 4;
+
+    @Param({"1", "4", "16", "64"})
+    public int depth;
+
+    private Map<Long, String> roleNames;
+    private Map<Long, List<Long>> children;
+    private Map<Long, List<String>> permissions;
+    private Map<String, Long> roleIds;
+    private RoleClosure closure;
+    private List<String> directRoles;
+
+    @Setup
+    public void setUp() {
+        roleNames = new HashMap<>();
+        children = new HashMap<>();
+        permissions = new HashMap<>();
+        roleIds = new HashMap<>();
+        for (long id = 1; id <= depth; id++) {
+            roleNames.put(id, "ROLE_" + id);
+            roleIds.put("ROLE_" + id, id);
+            if (id < depth) {
+                children.put(id, List.of(id + 1));
+            }
+            List<String> granted = new ArrayList<>();
+            for (int p = 0; p < PERMISSIONS_PER_ROLE; p++) {
+                granted.add("perm:" + id + ":" + p);
+            }
+            permissions.put(id, granted);
+        }
+        closure = RoleClosure.build(roleNames, children, permissions);
+        directRoles = List.of("ROLE_1");
+    }
+
+    @Benchmark
+    public Set<String> precomputedClosure() {
+        return closure.expandPermissions(directRoles);
+    }
+
+    //  没有闭包时的做法:每次解析都从直接角色出发遍历继承图
+    @Benchmark
+    public Set<String> walkGraphPerResolution() {
+        Set<String> granted = new LinkedHashSet<>();
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> stack = new ArrayDeque<>();
+        for (String role : directRoles) {
+            stack.push(roleIds.get(role));
+        }
+        while (!stack.isEmpty()) {
+            Long roleId = stack.pop();
+            if (!visited.add(roleId)) {
+                continue;
+            }
+            granted.addAll(permissions.getOrDefault(roleId, List.of()));
+            for (Long child : children.getOrDefault(roleId, List.of())) {
+                stack.push(child);
+            }
+        }
+        return granted;
+    }
+
+    @Benchmark
+    public RoleClosure rebuildOnChange() {
+        return RoleClosure.build(roleNames, children, permissions);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RoleClosureBenchmark.class.getSimpleName()).build()).run();
+    }
+}
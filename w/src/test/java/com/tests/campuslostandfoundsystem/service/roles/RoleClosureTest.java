@@ -0,0 +1,76 @@
+package com.tests.campuslostandfoundsystem.service.roles;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoleClosureTest {
+
+    //  ADMIN ⊃ ITEM_ADMIN ⊃ STUDENT
+    private static final RoleClosure CHAIN = RoleClosure.build(
+            Map.of(1L, "ADMIN", 2L, "ITEM_ADMIN", 3L, "STUDENT"),
+            Map.of(1L, List.of(2L), 2L, List.of(3L)),
+            Map.of(1L, List.of("user:delete"), 2L, List.of("item:update"), 3L, List.of("item:read")));
+
+    @Test
+    void rolesIncludeEverythingBelowThem() {
+        assertThat(CHAIN.getEffectiveRoles("ADMIN")).containsExactlyInAnyOrder("ADMIN", "ITEM_ADMIN", "STUDENT");
+        assertThat(CHAIN.getEffectiveRoles("ITEM_ADMIN")).containsExactlyInAnyOrder("ITEM_ADMIN", "STUDENT");
+        assertThat(CHAIN.getEffectiveRoles("STUDENT")).containsExactly("STUDENT");
+        assertThat(CHAIN.includes("ADMIN", "STUDENT")).isTrue();
+        assertThat(CHAIN.includes("STUDENT", "ADMIN")).isFalse();
+    }
+
+    @Test
+    void permissionsAreInheritedDownwardOnly() {
+        assertThat(CHAIN.getEffectivePermissions("ADMIN"))
+                .containsExactlyInAnyOrder("user:delete", "item:update", "item:read");
+        assertThat(CHAIN.getEffectivePermissions("STUDENT")).containsExactly("item:read");
+        assertThat(CHAIN.expandPermissions(List.of("ITEM_ADMIN", "STUDENT")))
+                .containsExactlyInAnyOrder("item:update", "item:read");
+    }
+
+    @Test
+    void unknownRolesExpandToThemselvesWithoutPermissions() {
+        assertThat(CHAIN.expandRoles(List.of("GUEST", "STUDENT"))).containsExactlyInAnyOrder("GUEST", "STUDENT");
+        assertThat(CHAIN.expandPermissions(List.of("GUEST"))).isEmpty();
+        assertThat(CHAIN.getRoleId("GUEST")).isNull();
+        assertThat(CHAIN.getRoleId("ITEM_ADMIN")).isEqualTo(2L);
+    }
+
+    @Test
+    void sharedDescendantIsCountedOnce() {
+        RoleClosure diamond = RoleClosure.build(
+                Map.of(1L, "A", 2L, "B", 3L, "C", 4L, "D"),
+                Map.of(1L, List.of(2L, 3L), 2L, List.of(4L), 3L, List.of(4L)),
+                Map.of(4L, List.of("p")));
+
+        assertThat(diamond.getEffectiveRoles("A")).containsExactlyInAnyOrder("A", "B", "C", "D");
+        assertThat(diamond.getEffectivePermissions("A")).containsExactly("p");
+    }
+
+    @Test
+    void cycleInTheDataStillTerminates() {
+        RoleClosure cycle = RoleClosure.build(
+                Map.of(1L, "A", 2L, "B"),
+                Map.of(1L, List.of(2L), 2L, List.of(1L)),
+                Map.of());
+
+        assertThat(cycle.getEffectiveRoles("A")).containsExactlyInAnyOrder("A", "B");
+        assertThat(cycle.getEffectiveRoles("B")).containsExactlyInAnyOrder("A", "B");
+    }
+
+    @Test
+    void edgesToDeletedRolesAreIgnored() {
+        RoleClosure closure = RoleClosure.build(
+                Map.of(1L, "A"),
+                Map.of(1L, List.of(99L)),
+                Map.of(99L, List.of("orphan")));
+
+        assertThat(closure.getEffectiveRoles("A")).containsExactly("A");
+        assertThat(closure.getEffectivePermissions("A")).isEmpty();
+    }
+}
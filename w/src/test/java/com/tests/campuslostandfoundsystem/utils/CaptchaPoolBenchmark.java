@@ -0,0 +1,71 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.wf.captcha.SpecCaptcha;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 验证码接口的取图吞吐:请求线程里现场渲染(改动前) vs 从池里取
+ * 两条路径之后都是同样的一次redis SET,这里不计入。
+ * 持续压满时池的补充速度受限于一个后台线程的渲染速度,池空后的请求退回现场渲染;
+ * 结束时打印命中/未命中,吞吐要结合命中率看:池吸收的是突发,不是无限的持续负载
+ * 运行: 以test classpath执行 main,需要 jmh-core 和 jmh-generator-annprocess(test scope)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class CaptchaPoolBenchmark {
+    private CaptchaPool pool;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        pool = CaptchaPoolTest.newPool(1000, 250);
+        CaptchaPoolTest.awaitAvailable(pool, 1000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("captcha pool stats: " + pool.getStats());
+        pool.shutdown();
+    }
+
+    //  改动前 generateCaptcha 的渲染部分:新建、生成答案、渲染、Base64
+    @Benchmark
+    public String renderInline() {
+        SpecCaptcha specCaptcha = CaptchaPool.newCaptcha();
+        String code = specCaptcha.text();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        specCaptcha.out(outputStream);
+        return code + "data:image/jpg;base64," + Base64.getEncoder().encodeToString(outputStream.toByteArray());
+    }
+
+    @Benchmark
+    public CaptchaPool.RenderedCaptcha takeFromPool() {
+        return pool.take();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CaptchaPoolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptchaPoolTest {
+    private CaptchaPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = newPool(5, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void poolFillsToCapacityInTheBackground() throws InterruptedException {
+        awaitAvailable(pool, 5);
+
+        assertThat(pool.getStats()).containsEntry("available", 5L).containsEntry("refilled", 5L);
+    }
+
+    @Test
+    void takenCaptchaIsCountedAsHitAndIsComplete() throws InterruptedException {
+        awaitAvailable(pool, 5);
+
+        CaptchaPool.RenderedCaptcha captcha = pool.take();
+
+        assertThat(captcha.code()).hasSize(4).matches("[0-9A-Z]+");
+        assertThat(captcha.image()).isNotEmpty();
+        assertThat(captcha.dataUri()).startsWith("data:image/");
+        assertThat(pool.getStats()).containsEntry("hits", 1L).containsEntry("misses", 0L);
+    }
+
+    @Test
+    void droppingBelowLowWaterRefillsToCapacity() throws InterruptedException {
+        awaitAvailable(pool, 5);
+        for (int i = 0; i < 4; i++) {
+            pool.poll();
+        }
+
+        awaitAvailable(pool, 5);
+
+        assertThat(pool.getStats().get("refilled")).isGreaterThanOrEqualTo(9L);
+    }
+
+    @Test
+    void emptyPoolStillServesByRenderingInline() {
+//      不调用init,池保持为空,也不会触发补充
+        CaptchaPool empty = new CaptchaPool();
+        ReflectionTestUtils.setField(empty, "size", 1);
+        ReflectionTestUtils.setField(empty, "lowWaterMark", 0);
+        ReflectionTestUtils.setField(empty, "pool", new ArrayBlockingQueue<CaptchaPool.RenderedCaptcha>(1));
+
+        assertThat(empty.poll()).isNull();
+        CaptchaPool.RenderedCaptcha captcha = empty.take();
+
+        assertThat(captcha.code()).hasSize(4);
+        assertThat(empty.getStats()).containsEntry("misses", 2L).containsEntry("hits", 0L);
+    }
+
+    static CaptchaPool newPool(int size, int lowWaterMark) {
+        CaptchaPool pool = new CaptchaPool();
+        ReflectionTestUtils.setField(pool, "size", size);
+        ReflectionTestUtils.setField(pool, "lowWaterMark", lowWaterMark);
+        pool.init();
+        return pool;
+    }
+
+    //  和线上一样靠定时检查兜底:上一个补充任务刚结束、标记还没清掉时触发会被跳过
+    static void awaitAvailable(CaptchaPool pool, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (pool.getStats().get("available") < count) {
+            assertThat(System.currentTimeMillis()).as("验证码池没有在10s内补满").isLessThan(deadline);
+            pool.checkLowWater();
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次请求里处理同一个token的开销:改动前的逐次解析 vs 现在的请求内只验签一次
+ * 刷新token的路径在改动前会把同一个token解析 PARSES_PER_REQUEST 次,每次都解码密钥、构建parser、验签
+ * 运行: 以test classpath执行 main,需要 jmh-core 和 jmh-generator-annprocess(test scope)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtParseBenchmark {
+    private static final int PARSES_PER_REQUEST = 5;
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = JwtUtilsTest.newJwtUtils(JwtUtilsTest.SECRET, 3_600_000L);
+        token = jwtUtils.generateRefreshToken("42", "sid-1", 1L, 0L);
+    }
+
+    //  改动前:每次调用都Base64解码密钥、新建parser、验签
+    @Benchmark
+    public void rebuildKeyAndParserPerCall(Blackhole blackhole) {
+        for (int i = 0; i < PARSES_PER_REQUEST; i++) {
+            SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(JwtUtilsTest.SECRET));
+            blackhole.consume(Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload());
+        }
+    }
+
+    //  只复用key和parser,每次调用仍然验签
+    @Benchmark
+    public void sharedParserPerCall(Blackhole blackhole) {
+        for (int i = 0; i < PARSES_PER_REQUEST; i++) {
+            blackhole.consume(jwtUtils.parseToken(token));
+        }
+    }
+
+    //  现在:每个请求验签一次,之后从请求属性里取同一个TokenClaims
+    @Benchmark
+    public void parseOncePerRequest(Blackhole blackhole) {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            for (int i = 0; i < PARSES_PER_REQUEST; i++) {
+                blackhole.consume(jwtUtils.parseClaims(token));
+            }
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtParseBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import com.tests.campuslostandfoundsystem.entity.utils.TokenClaims;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilsTest {
+    static final String SECRET = "Y2FtcHVzLWxvc3QtYW5kLWZvdW5kLXRlc3Qtc2VjcmV0LTAxMjM0NTY3ODk=";
+    private static final String OTHER_SECRET = "YW5vdGhlci1zZWNyZXQtdGhhdC1pcy1sb25nLWVub3VnaC1mb3ItaHMyNTYh";
+
+    @AfterEach
+    void clearRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void accessTokenRoundTripsIntoClaims() {
+        JwtUtils jwtUtils = newJwtUtils(SECRET, 60_000L);
+
+        TokenClaims claims = jwtUtils.parseClaims(jwtUtils.generateAccessToken("42", "sid-1", 3L, 1L));
+
+        assertThat(claims.getUserId()).isEqualTo("42");
+        assertThat(claims.getSessionId()).isEqualTo("sid-1");
+        assertThat(claims.getUserEpoch()).isEqualTo(3L);
+        assertThat(claims.getGlobalEpoch()).isEqualTo(1L);
+        assertThat(claims.isAccessToken()).isTrue();
+        assertThat(claims.isExpired()).isFalse();
+        assertThat(claims.getJti()).isNotBlank();
+    }
+
+    @Test
+    void tokenIsVerifiedOncePerRequest() {
+        JwtUtils jwtUtils = newJwtUtils(SECRET, 60_000L);
+        String token = jwtUtils.generateRefreshToken("42", "sid-1", 1L, 0L);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        TokenClaims first = jwtUtils.parseClaims(token);
+        assertThat(jwtUtils.parseClaims(token)).isSameAs(first);
+        assertThat(jwtUtils.resolveToken(token)).isSameAs(first);
+
+//      新请求重新验签
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertThat(jwtUtils.parseClaims(token)).isNotSameAs(first).isEqualTo(first);
+    }
+
+    @Test
+    void expiredTokenIsParsedButNotResolved() {
+        JwtUtils jwtUtils = newJwtUtils(SECRET, -1_000L);
+        String token = jwtUtils.generateAccessToken("42", "sid-1", 1L, 0L);
+
+        assertThat(jwtUtils.parseClaims(token).isExpired()).isTrue();
+        assertThat(jwtUtils.resolveToken(token)).isNull();
+        assertThat(jwtUtils.validateToken(token)).isFalse();
+        assertThat(jwtUtils.getExpiration(token)).isEqualTo(1L);
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() {
+        String token = newJwtUtils(OTHER_SECRET, 60_000L).generateAccessToken("42", "sid-1", 1L, 0L);
+        JwtUtils jwtUtils = newJwtUtils(SECRET, 60_000L);
+
+        assertThatThrownBy(() -> jwtUtils.parseClaims(token)).isInstanceOf(JwtException.class);
+        assertThat(jwtUtils.resolveToken(token)).isNull();
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        JwtUtils jwtUtils = newJwtUtils(SECRET, 60_000L);
+
+        assertThat(jwtUtils.resolveToken("not-a-token")).isNull();
+        assertThat(jwtUtils.validateToken("not-a-token")).isFalse();
+    }
+
+    static JwtUtils newJwtUtils(String secret, long expirationMillis) {
+        JwtUtils jwtUtils = new JwtUtils();
+        jwtUtils.setSecretKey(secret);
+        jwtUtils.setExpiration(expirationMillis);
+        jwtUtils.setRefreshExpiration(expirationMillis);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+}
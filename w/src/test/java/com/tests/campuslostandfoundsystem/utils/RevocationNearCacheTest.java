@@ -0,0 +1,149 @@
+package com.tests.campuslostandfoundsystem.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RevocationNearCacheTest {
+    private static final String USER = "42";
+    private static final String SID = "sid-1";
+
+    private ValueOperations<String, String> values;
+    private ZSetOperations<String, String> zSet;
+    private RevocationNearCache nearCache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        values = mock(ValueOperations.class);
+        zSet = mock(ZSetOperations.class);
+        when(template.opsForValue()).thenReturn(values);
+        when(template.opsForZSet()).thenReturn(zSet);
+        RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+        when(container.isRunning()).thenReturn(true);
+
+        nearCache = new RevocationNearCache(template, container);
+        ReflectionTestUtils.setField(nearCache, "enabled", true);
+        ReflectionTestUtils.setField(nearCache, "maxStalenessMillis", 60_000L);
+        ReflectionTestUtils.setField(nearCache, "maxSessions", 100);
+        ReflectionTestUtils.setField(nearCache, "sessionTtlMillis", 60_000L);
+        ReflectionTestUtils.setField(nearCache, "changeLogSize", 100);
+        when(values.get(RevocationNearCache.CHANGE_SEQ_KEY)).thenReturn("10");
+        when(values.get(RevocationNearCache.GLOBAL_EPOCH_KEY)).thenReturn("0");
+        nearCache.init();
+    }
+
+    @Test
+    void unknownSessionFallsBackUntilRedisConfirmsIt() {
+        assertThat(check("fp1", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, nearCache.version());
+
+        assertThat(check("fp1", 1)).isEqualTo(RevocationNearCache.Decision.VALID);
+        assertThat(check("other", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+    }
+
+    @Test
+    void eventDuringRedisCheckPreventsCachingTheOldAnswer() {
+        long before = nearCache.version();
+        publish(11, "a|" + SID + "|fp2");
+
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, before);
+
+        assertThat(check("fp1", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+        assertThat(check("fp2", 1)).isEqualTo(RevocationNearCache.Decision.VALID);
+    }
+
+    @Test
+    void rotationDeletionAndRevocationApplyLocally() {
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, nearCache.version());
+
+        publish(11, "a|" + SID + "|fp2");
+        assertThat(check("fp1", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+        assertThat(check("fp2", 1)).isEqualTo(RevocationNearCache.Decision.VALID);
+
+        publish(12, "d|" + SID);
+        assertThat(check("fp2", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+
+        publish(13, "u|" + USER + "|2");
+        assertThat(check("fp2", 1)).isEqualTo(RevocationNearCache.Decision.REVOKED);
+    }
+
+    @Test
+    void goneUserIsNeverValidLocally() {
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, nearCache.version());
+
+        publish(11, "x|" + USER + "|" + (System.currentTimeMillis() + 60_000));
+
+        assertThat(check("fp1", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+    }
+
+    @Test
+    void resyncReplaysOnlyMissedEventsInOrder() {
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, nearCache.version());
+        when(values.get(RevocationNearCache.CHANGE_SEQ_KEY)).thenReturn("12");
+        Set<ZSetOperations.TypedTuple<String>> log = new LinkedHashSet<>();
+        log.add(new DefaultTypedTuple<>("11#a|" + SID + "|fp2", 11.0));
+        log.add(new DefaultTypedTuple<>("12#a|" + SID + "|fp3", 12.0));
+        when(zSet.rangeByScoreWithScores(eq(RevocationNearCache.CHANGE_LOG_KEY), eq(11.0), anyDouble())).thenReturn(log);
+
+        nearCache.resync();
+
+        assertThat(check("fp3", 1)).isEqualTo(RevocationNearCache.Decision.VALID);
+        assertThat(nearCache.getStats()).containsEntry("appliedSeq", 12L).containsEntry("resets", 1L);
+    }
+
+    @Test
+    void truncatedLogResetsTheView() {
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, nearCache.version());
+        when(values.get(RevocationNearCache.CHANGE_SEQ_KEY)).thenReturn("20");
+        Set<ZSetOperations.TypedTuple<String>> log = new LinkedHashSet<>();
+        log.add(new DefaultTypedTuple<>("15#a|other|fp", 15.0));
+        when(zSet.rangeByScoreWithScores(eq(RevocationNearCache.CHANGE_LOG_KEY), eq(11.0), anyDouble())).thenReturn(log);
+
+        nearCache.resync();
+
+        assertThat(check("fp1", 1)).isEqualTo(RevocationNearCache.Decision.UNKNOWN);
+        assertThat(nearCache.getStats()).containsEntry("appliedSeq", 20L).containsEntry("resets", 2L);
+    }
+
+    @Test
+    void countsEachLocalDecisionOnce() {
+        nearCache.recordValid(USER, SID, "fp1", 1, 0, nearCache.version());
+
+        check("fp1", 1);
+        check("fp1", 0);
+        check("unknown", 1);
+
+        assertThat(nearCache.getStats())
+                .containsEntry("localValid", 1L)
+                .containsEntry("localRevoked", 1L)
+                .containsEntry("redisFallbacks", 0L);
+    }
+
+    private RevocationNearCache.Decision check(String fingerprint, long userEpoch) {
+        return nearCache.check(USER, SID, fingerprint, userEpoch, 0);
+    }
+
+    private void publish(long seq, String event) {
+        byte[] channel = RevocationNearCache.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        nearCache.onMessage(new DefaultMessage(channel, (seq + "#" + event).getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.tests.campuslostandfoundsystem.utils.tokenstore;
+
+import com.tests.campuslostandfoundsystem.entity.enums.TokenVerdict;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalTokenStoreContractTest extends TokenStoreContractTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Override
+    protected TokenStore createStore() {
+        return newStore("");
+    }
+
+    @Test
+    void snapshotRestoresSessionsEpochsAndGoneMarkers() {
+        String path = tempDir.resolve("sessions.snapshot").toString();
+        LocalTokenStore before = newStore(path);
+        store = before;
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        Login other = login(OTHER_USER, "sid-2", "at-2", "rt-2", TTL);
+        store.rotateAccessToken("sid-1", "rt-1", "at-3");
+        store.markUserGone(OTHER_USER, TTL);
+        long global = store.revokeAll();
+        before.shutdown();
+
+        store = newStore(path);
+
+        assertThat(store.getSession("sid-1").getAccessTokenFingerprint()).isEqualTo("at-3");
+        assertThat(store.getSessionIdByUserId(USER)).isEqualTo("sid-1");
+        assertThat(store.currentEpochs(USER)).containsExactly(login.record().getUserEpoch(), global);
+        assertThat(verifyAccess(login, "at-3")).isEqualTo(TokenVerdict.REVOKED);
+        assertThat(verifyAccess(other, "at-2")).isEqualTo(TokenVerdict.USER_GONE);
+    }
+
+    @Test
+    void overflowEvictsTheSessionThatExpiresFirst() {
+        LocalTokenStore small = newStore("");
+        ReflectionTestUtils.setField(small, "maxSessions", 1);
+        store = small;
+        login(USER, "sid-1", "at-1", "rt-1", TTL);
+        login(OTHER_USER, "sid-2", "at-2", "rt-2", TTL * 2);
+
+        assertThat(store.getSession("sid-1")).isNull();
+        assertThat(store.getSessionIdByUserId(USER)).isNull();
+        assertThat(store.getSession("sid-2")).isNotNull();
+    }
+
+    private static LocalTokenStore newStore(String snapshotPath) {
+        LocalTokenStore store = new LocalTokenStore();
+        ReflectionTestUtils.setField(store, "maxSessions", 1000);
+        ReflectionTestUtils.setField(store, "snapshotPath", snapshotPath);
+        store.init();
+        return store;
+    }
+}
@@ -0,0 +1,120 @@
+package com.tests.campuslostandfoundsystem.utils.tokenstore;
+
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import com.tests.campuslostandfoundsystem.utils.RevocationNearCache;
+import com.tests.campuslostandfoundsystem.utils.SessionRecordRedisSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 连接真实的redis跑契约测试,脚本和pub/sub都走真实路径
+ * 地址由系统属性 test.redis.host / test.redis.port / test.redis.database 指定,默认 localhost:6379 的15号库,
+ * 每个测试前清空该库;连不上时跳过
+ */
+class RedisTokenStoreContractTest extends TokenStoreContractTest {
+    private static final long PROPAGATION_TIMEOUT_MILLIS = 2_000L;
+
+    private static LettuceConnectionFactory factory;
+    private static boolean available;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisMessageListenerContainer container;
+    private RevocationNearCache nearCache;
+
+    @BeforeAll
+    static void connect() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                System.getProperty("test.redis.host", "localhost"),
+                Integer.getInteger("test.redis.port", 6379));
+        config.setDatabase(Integer.getInteger("test.redis.database", 15));
+        factory = new LettuceConnectionFactory(config);
+        factory.afterPropertiesSet();
+        try (RedisConnection connection = factory.getConnection()) {
+            connection.ping();
+            available = true;
+        } catch (Exception e) {
+            available = false;
+        }
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if (factory != null) {
+            factory.destroy();
+        }
+    }
+
+    @Override
+    protected TokenStore createStore() {
+        Assumptions.assumeTrue(available, "redis不可用,跳过");
+        stringRedisTemplate = new StringRedisTemplate(factory);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+        RedisTemplate<String, SessionRecord> sessionRedisTemplate = new RedisTemplate<>();
+        sessionRedisTemplate.setConnectionFactory(factory);
+        sessionRedisTemplate.setKeySerializer(RedisSerializer.string());
+        sessionRedisTemplate.setValueSerializer(SessionRecordRedisSerializer.INSTANCE);
+        sessionRedisTemplate.afterPropertiesSet();
+
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.afterPropertiesSet();
+        container.start();
+
+        nearCache = new RevocationNearCache(stringRedisTemplate, container);
+        ReflectionTestUtils.setField(nearCache, "enabled", true);
+        ReflectionTestUtils.setField(nearCache, "maxStalenessMillis", 60_000L);
+        ReflectionTestUtils.setField(nearCache, "maxSessions", 1000);
+        ReflectionTestUtils.setField(nearCache, "sessionTtlMillis", 60_000L);
+        ReflectionTestUtils.setField(nearCache, "changeLogSize", 1000);
+        nearCache.init();
+        return new RedisTokenStore(stringRedisTemplate, sessionRedisTemplate, nearCache);
+    }
+
+    //  等本地视图按序应用到redis里最新的变更序号,否则本地可能还在用旧的AT指纹给出VALID;
+    //  订阅刚建立时可能错过最早的消息,等过一半时间还没跟上就像定时任务一样主动对账
+    @Override
+    protected void awaitPropagation() {
+        long startedAt = System.currentTimeMillis();
+        while (System.currentTimeMillis() - startedAt < PROPAGATION_TIMEOUT_MILLIS) {
+            String latest = stringRedisTemplate.opsForValue().get(RevocationNearCache.CHANGE_SEQ_KEY);
+            if (nearCache.getStats().get("appliedSeq") >= (latest == null ? 0L : Long.parseLong(latest))) {
+                return;
+            }
+            if (System.currentTimeMillis() - startedAt > PROPAGATION_TIMEOUT_MILLIS / 2) {
+                nearCache.resync();
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        throw new AssertionError("吊销事件没有在" + PROPAGATION_TIMEOUT_MILLIS + "ms内到达本地视图");
+    }
+
+    @Override
+    protected void closeStore() {
+        if (container != null) {
+            container.stop();
+            try {
+                container.destroy();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
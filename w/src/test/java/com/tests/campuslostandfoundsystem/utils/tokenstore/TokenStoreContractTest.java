@@ -0,0 +1,207 @@
+package com.tests.campuslostandfoundsystem.utils.tokenstore;
+
+import com.tests.campuslostandfoundsystem.entity.enums.TokenVerdict;
+import com.tests.campuslostandfoundsystem.entity.utils.SessionRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TokenStore 的契约测试,每个实现继承一次,两个实现必须给出相同的结论
+ * 写操作之后调用 awaitPropagation,让实现内部的异步状态(redis实现的本地视图)先跟上
+ */
+abstract class TokenStoreContractTest {
+    protected static final String USER = "42";
+    protected static final String OTHER_USER = "43";
+    protected static final long TTL = 60_000L;
+
+    protected TokenStore store;
+
+    protected abstract TokenStore createStore();
+
+    protected void awaitPropagation() {
+    }
+
+    protected void closeStore() {
+    }
+
+    @BeforeEach
+    void setUpStore() {
+        store = createStore();
+    }
+
+    @AfterEach
+    void tearDownStore() {
+        closeStore();
+    }
+
+    @Test
+    void savedSessionIsVisibleBySidAndUser() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+
+        assertThat(store.getSession("sid-1")).isEqualTo(login.record());
+        assertThat(store.getSessionByUserId(USER)).isEqualTo(login.record());
+        assertThat(store.getSessionIdByUserId(USER)).isEqualTo("sid-1");
+        assertThat(store.getSessionIdByUserId(OTHER_USER)).isNull();
+    }
+
+    @Test
+    void onlyTheCurrentFingerprintsAreValid() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.VALID);
+        assertThat(verifyRefresh(login, "rt-1")).isEqualTo(TokenVerdict.VALID);
+        assertThat(verifyAccess(login, "rt-1")).isEqualTo(TokenVerdict.MISSING);
+        assertThat(verifyRefresh(login, "at-1")).isEqualTo(TokenVerdict.MISSING);
+    }
+
+    @Test
+    void newLoginReplacesThePreviousSession() {
+        Login first = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        assertThat(verifyAccess(first, "at-1")).isEqualTo(TokenVerdict.VALID);
+
+        Login second = login(USER, "sid-2", "at-2", "rt-2", TTL);
+
+        assertThat(store.getSession("sid-1")).isNull();
+        assertThat(store.getSessionIdByUserId(USER)).isEqualTo("sid-2");
+        assertThat(verifyAccess(first, "at-1")).isEqualTo(TokenVerdict.REVOKED);
+        assertThat(verifyRefresh(first, "rt-1")).isEqualTo(TokenVerdict.REVOKED);
+        assertThat(verifyAccess(second, "at-2")).isEqualTo(TokenVerdict.VALID);
+    }
+
+    @Test
+    void saveWithStaleEpochsIsRejected() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        long userEpoch = login.record().getUserEpoch();
+
+        SessionRecord sameEpoch = record(USER, "at-2", "rt-2", userEpoch);
+        assertThat(store.saveSession("sid-2", sameEpoch, TTL, login.globalEpoch())).isFalse();
+
+        SessionRecord wrongGlobal = record(USER, "at-2", "rt-2", userEpoch + 1);
+        assertThat(store.saveSession("sid-2", wrongGlobal, TTL, login.globalEpoch() + 1)).isFalse();
+
+        assertThat(store.getSession("sid-2")).isNull();
+        assertThat(store.getSessionIdByUserId(USER)).isEqualTo("sid-1");
+        assertThat(store.currentEpochs(USER)).containsExactly(userEpoch, login.globalEpoch());
+    }
+
+    @Test
+    void rotationReplacesOnlyTheAccessToken() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.VALID);
+
+        assertThat(store.rotateAccessToken("sid-1", "wrong-rt", "at-2")).isFalse();
+        assertThat(store.rotateAccessToken("unknown-sid", "rt-1", "at-2")).isFalse();
+        assertThat(store.rotateAccessToken("sid-1", "rt-1", "at-2")).isTrue();
+        awaitPropagation();
+
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.MISSING);
+        assertThat(verifyAccess(login, "at-2")).isEqualTo(TokenVerdict.VALID);
+        assertThat(verifyRefresh(login, "rt-1")).isEqualTo(TokenVerdict.VALID);
+        assertThat(store.getSession("sid-1").getAccessTokenFingerprint()).isEqualTo("at-2");
+    }
+
+    @Test
+    void revokeUserInvalidatesOnlyThatUser() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        Login other = login(OTHER_USER, "sid-2", "at-2", "rt-2", TTL);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.VALID);
+
+        long epoch = store.revokeUser(USER);
+        awaitPropagation();
+
+        assertThat(epoch).isEqualTo(login.record().getUserEpoch() + 1);
+        assertThat(store.currentEpochs(USER)[0]).isEqualTo(epoch);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.REVOKED);
+        assertThat(verifyRefresh(login, "rt-1")).isEqualTo(TokenVerdict.REVOKED);
+        assertThat(verifyAccess(other, "at-2")).isEqualTo(TokenVerdict.VALID);
+    }
+
+    @Test
+    void revokeAllInvalidatesEveryUserUntilTheyLogInAgain() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        Login other = login(OTHER_USER, "sid-2", "at-2", "rt-2", TTL);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.VALID);
+
+        long epoch = store.revokeAll();
+        awaitPropagation();
+
+        assertThat(epoch).isEqualTo(login.globalEpoch() + 1);
+        assertThat(store.currentEpochs(USER)[1]).isEqualTo(epoch);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.REVOKED);
+        assertThat(verifyAccess(other, "at-2")).isEqualTo(TokenVerdict.REVOKED);
+
+        Login again = login(USER, "sid-3", "at-3", "rt-3", TTL);
+        assertThat(again.globalEpoch()).isEqualTo(epoch);
+        assertThat(verifyAccess(again, "at-3")).isEqualTo(TokenVerdict.VALID);
+    }
+
+    @Test
+    void goneUserIsRejectedBeforeEpochsAndSessions() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.VALID);
+
+        store.markUserGone(USER, TTL);
+        awaitPropagation();
+
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.USER_GONE);
+        assertThat(verifyRefresh(login, "rt-1")).isEqualTo(TokenVerdict.USER_GONE);
+        assertThat(verifyAccess(login, "unknown")).isEqualTo(TokenVerdict.USER_GONE);
+    }
+
+    @Test
+    void deletedSessionIsMissing() {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", TTL);
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.VALID);
+
+        store.deleteSessionByUserId(USER);
+        awaitPropagation();
+
+        assertThat(store.getSession("sid-1")).isNull();
+        assertThat(store.getSessionByUserId(USER)).isNull();
+        assertThat(store.getSessionIdByUserId(USER)).isNull();
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.MISSING);
+        assertThat(verifyRefresh(login, "rt-1")).isEqualTo(TokenVerdict.MISSING);
+    }
+
+    @Test
+    void sessionExpiresAfterItsTtl() throws InterruptedException {
+        Login login = login(USER, "sid-1", "at-1", "rt-1", 200L);
+
+        Thread.sleep(500L);
+
+        assertThat(store.getSession("sid-1")).isNull();
+        assertThat(store.getSessionIdByUserId(USER)).isNull();
+        assertThat(verifyAccess(login, "at-1")).isEqualTo(TokenVerdict.MISSING);
+        assertThat(verifyRefresh(login, "rt-1")).isEqualTo(TokenVerdict.MISSING);
+//      纪元不随会话过期,下一次登录仍然要比它大
+        assertThat(store.currentEpochs(USER)[0]).isEqualTo(login.record().getUserEpoch());
+    }
+
+    protected Login login(String userId, String sid, String at, String rt, long ttlMillis) {
+        long[] epochs = store.nextSessionEpochs(userId);
+        SessionRecord record = record(userId, at, rt, epochs[0]);
+        assertThat(store.saveSession(sid, record, ttlMillis, epochs[1])).isTrue();
+        awaitPropagation();
+        return new Login(sid, record, epochs[1]);
+    }
+
+    protected TokenVerdict verifyAccess(Login login, String fingerprint) {
+        return store.verify(login.record().getUserId(), login.sid(), false, fingerprint,
+                login.record().getUserEpoch(), login.globalEpoch());
+    }
+
+    protected TokenVerdict verifyRefresh(Login login, String fingerprint) {
+        return store.verify(login.record().getUserId(), login.sid(), true, fingerprint,
+                login.record().getUserEpoch(), login.globalEpoch());
+    }
+
+    private static SessionRecord record(String userId, String at, String rt, long userEpoch) {
+        return new SessionRecord(userId, at, rt, userEpoch, System.currentTimeMillis() + TTL);
+    }
+
+    protected record Login(String sid, SessionRecord record, long globalEpoch) {
+    }
+}